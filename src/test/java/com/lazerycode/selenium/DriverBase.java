@@ -1,49 +1,183 @@
 package com.lazerycode.selenium;
 
+import com.lazerycode.selenium.config.CommandLatency;
 import com.lazerycode.selenium.config.DriverFactory;
+import com.lazerycode.selenium.config.DriverPool;
+import com.lazerycode.selenium.config.DriverRegistry;
+import com.lazerycode.selenium.config.DriverTeardown;
+import com.lazerycode.selenium.config.DriverTimings;
+import com.lazerycode.selenium.config.PageTimings;
+import com.lazerycode.selenium.config.ResourceSampler;
+import com.lazerycode.selenium.config.RunConfig;
+import com.lazerycode.selenium.config.SessionReset;
+import com.lazerycode.selenium.config.WaitProfiler;
+import com.lazerycode.selenium.listeners.CurrentTestListener;
+import com.lazerycode.selenium.listeners.LongestFirstInterceptor;
+import com.lazerycode.selenium.listeners.PerfBudgetListener;
 import com.lazerycode.selenium.listeners.ScreenshotListener;
+import com.lazerycode.selenium.utils.ScreenshotStore;
 import org.openqa.selenium.remote.RemoteWebDriver;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Listeners;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-@Listeners(ScreenshotListener.class)
+@Listeners({ScreenshotListener.class, CurrentTestListener.class, PerfBudgetListener.class, LongestFirstInterceptor.class})
 public class DriverBase {
 
-    private static List<DriverFactory> webDriverThreadPool = Collections.synchronizedList(new ArrayList<DriverFactory>());
-    private static ThreadLocal<DriverFactory> driverFactoryThread;
+    private static final Map<Thread, DriverFactory> webDriverThreadPool = new ConcurrentHashMap<>();
+    private static final ThreadLocal<DriverFactory> driverFactoryThread = ThreadLocal.withInitial(() -> {
+        DriverFactory driverFactory = new DriverFactory(getRunConfig());
+        webDriverThreadPool.put(Thread.currentThread(), driverFactory);
+        return driverFactory;
+    });
+    private static final ThreadLocal<RunConfig> runConfigOverride = new ThreadLocal<>();
+
+    @BeforeSuite(alwaysRun = true)
+    public static void resolveRunConfig() {
+        ResourceSampler.start(RunConfig.resolveSuiteConfig());
+    }
 
     @BeforeTest(alwaysRun = true)
     public static void instantiateDriverObject() {
-        driverFactoryThread = ThreadLocal.withInitial(() -> {
-            DriverFactory driverFactory = new DriverFactory();
-            webDriverThreadPool.add(driverFactory);
-            return driverFactory;
-        });
+        int driverPoolSize = RunConfig.suiteConfig().getInt(RunConfig.DRIVER_POOL_SIZE, 0);
+        if (driverPoolSize > 0) {
+            DriverPool.start(RunConfig.suiteConfig(), driverPoolSize);
+        }
     }
 
     public static RemoteWebDriver getDriver() throws Exception {
-        return driverFactoryThread.get().getDriver();
+        return driverFactoryThread.get().getDriver(getRunConfig());
+    }
+
+    /**
+     * @return the browser already started by the current thread, or null if it has not started one.
+     */
+    public static RemoteWebDriver getStoredDriver() {
+        return driverFactoryThread.get().getStoredDriver();
+    }
+
+    /**
+     * Quit the browser started by the current thread now, instead of at the end of the test.
+     */
+    public static void quitDriver() {
+        driverFactoryThread.get().quitDriver();
+    }
+
+    /**
+     * @return the configuration for the current thread, the suite configuration unless it has been overridden.
+     */
+    public static RunConfig getRunConfig() {
+        RunConfig override = runConfigOverride.get();
+
+        return null == override ? RunConfig.suiteConfig() : override;
+    }
+
+    /**
+     * Override the configuration for the current thread until the end of the current test method, other threads
+     * are unaffected.  A browser already started with a different configuration is replaced on the next getDriver().
+     */
+    public static void overrideRunConfig(RunConfig runConfig) {
+        runConfigOverride.set(runConfig);
+    }
+
+    /**
+     * Set the locale for the browser used by the current thread, other threads are unaffected.
+     */
+    public static void setThreadLocale(String locale) {
+        overrideRunConfig(getRunConfig().withLocale(locale));
     }
 
+    /**
+     * Reset the browser for the next test, under the configuration the test ran with, and only then drop the thread's
+     * configuration override.
+     */
     @AfterMethod(alwaysRun = true)
     public static void clearCookies() {
         try {
-            driverFactoryThread.get().getStoredDriver().manage().deleteAllCookies();
-        } catch (Exception ignored) {
-            System.out.println("Unable to clear cookies, driver object is not viable...");
+            if (getRunConfig().getBoolean(RunConfig.SESSION_RESET)) {
+                driverFactoryThread.get().resetSession();
+                return;
+            }
+            try {
+                driverFactoryThread.get().getStoredDriver().manage().deleteAllCookies();
+            } catch (Exception ignored) {
+                System.out.println("Unable to clear cookies, driver object is not viable...");
+            }
+        } finally {
+            runConfigOverride.remove();
         }
     }
 
+    /**
+     * Quit every browser started during the test.  Factories that belong to threads which have finished are dropped,
+     * a thread that is still alive keeps its factory for the next test.
+     */
     @AfterTest(alwaysRun = true)
     public static void closeDriverObjects() {
-        for (DriverFactory driverFactory : webDriverThreadPool) {
-            driverFactory.quitDriver();
+        DriverPool.shutdown();
+        List<RemoteWebDriver> drivers = new ArrayList<>();
+        Iterator<Map.Entry<Thread, DriverFactory>> factories = webDriverThreadPool.entrySet().iterator();
+        while (factories.hasNext()) {
+            Map.Entry<Thread, DriverFactory> factory = factories.next();
+            RemoteWebDriver driver = factory.getValue().detachDriver();
+            if (null != driver) {
+                drivers.add(driver);
+            }
+            if (!factory.getKey().isAlive()) {
+                factories.remove();
+            }
+        }
+        DriverTeardown.quitAll(drivers);
+        System.out.println(DriverRegistry.getInstance());
+    }
+
+    /**
+     * Close the screenshot stores and write every report, in turn.  A reporter that fails is logged and does not stop
+     * the ones after it.
+     */
+    @AfterSuite(alwaysRun = true)
+    public static void writeReports() {
+        RunConfig runConfig = RunConfig.suiteConfig();
+        writeReport("close screenshot store manifest", ScreenshotStore::closeAll);
+        writeReport("print session reset summary", () -> {
+            String sessionResets = SessionReset.summary();
+            if (null != sessionResets) {
+                System.out.println(sessionResets);
+            }
+        });
+        writeReport("write driver timings",
+                () -> DriverTimings.writeReport(new File(runConfig.get(RunConfig.TIMING_REPORT, "target/driver-timings.json"))));
+        writeReport("write wait profile",
+                () -> WaitProfiler.writeReport(new File(runConfig.get(RunConfig.WAIT_REPORT, "target/wait-profile.json"))));
+        writeReport("write command latency report",
+                () -> CommandLatency.writeReport(new File(runConfig.get(RunConfig.COMMAND_REPORT, "target/command-latency.json"))));
+        writeReport("write page timings",
+                () -> PageTimings.writeReport(new File(runConfig.get(RunConfig.PAGE_TIMING_REPORT, "target/page-timings.json"))));
+        writeReport("write performance budget report",
+                () -> PerfBudgetListener.writeReport(new File(runConfig.get(RunConfig.PERF_BUDGET_REPORT, "target/perf-budgets.json"))));
+        writeReport("write browser resource report", ResourceSampler::stop);
+    }
+
+    private static void writeReport(String description, Reporter reporter) {
+        try {
+            reporter.run();
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Unable to " + description + ": " + ex.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private interface Reporter {
+        void run() throws IOException;
+    }
+}
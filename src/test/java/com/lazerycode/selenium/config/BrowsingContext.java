@@ -0,0 +1,28 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Tells callers whether the document a browser is showing may have changed, without asking the browser.
+ * <p>
+ * Browsers started by the {@link DriverFactory} count every navigation (get, back, forward, refresh) and every
+ * window or frame switch.  Element references resolved under one epoch can only be trusted without a round trip while
+ * the epoch is unchanged; a click that navigates is not counted, so callers still have to handle stale elements.
+ */
+public final class BrowsingContext {
+
+    public static final long UNTRACKED = -1;
+
+    private BrowsingContext() {
+    }
+
+    /**
+     * @return a number that changes whenever the driver navigates or switches window or frame, or {@link #UNTRACKED}
+     * for drivers that were not started by the DriverFactory.
+     */
+    public static long epoch(WebDriver driver) {
+        SessionRecorder recorder = SessionRecorder.of(driver);
+
+        return null == recorder ? UNTRACKED : recorder.getContextEpoch();
+    }
+}
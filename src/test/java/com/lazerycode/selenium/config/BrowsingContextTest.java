@@ -0,0 +1,80 @@
+package com.lazerycode.selenium.config;
+
+import com.lazerycode.selenium.page_objects.ElementCache;
+import org.openqa.selenium.By;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BrowsingContextTest {
+
+    @Test
+    public void navigationAndSwitchingChangeTheEpoch() {
+        TimedWebDriver driver = new TimedWebDriver(DriverType.CHROME, new StubBrowser(), new ImmutableCapabilities());
+        long start = BrowsingContext.epoch(driver);
+
+        driver.findElement(By.id("search"));
+        long afterFind = BrowsingContext.epoch(driver);
+        driver.get("about:blank");
+        long afterNavigation = BrowsingContext.epoch(driver);
+        driver.switchTo().defaultContent();
+
+        assertThat(afterFind).isEqualTo(start);
+        assertThat(afterNavigation).isNotEqualTo(start);
+        assertThat(BrowsingContext.epoch(driver)).isNotEqualTo(afterNavigation);
+    }
+
+    @Test
+    public void driversNotStartedByTheFactoryAreUntracked() {
+        assertThat(BrowsingContext.epoch(new RemoteWebDriver(new StubBrowser(), new ImmutableCapabilities()))).isEqualTo(BrowsingContext.UNTRACKED);
+    }
+
+    @Test
+    public void cachedElementsAreLookedUpAgainInANewEpoch() {
+        StubBrowser browser = new StubBrowser();
+        TimedWebDriver driver = new TimedWebDriver(DriverType.CHROME, browser, new ImmutableCapabilities());
+        WebElement search = new ElementCache(driver).find(By.id("search"));
+
+        search.click();
+        search.click();
+        driver.navigate().refresh();
+        search.click();
+
+        assertThat(Collections.frequency(browser.commands, DriverCommand.FIND_ELEMENT)).isEqualTo(2);
+    }
+
+    /**
+     * A browser that finds every element and accepts every other command.
+     */
+    private static class StubBrowser implements CommandExecutor {
+        private final List<String> commands = new ArrayList<>();
+
+        @Override
+        public Response execute(Command command) {
+            Response response = new Response();
+            response.setSessionId("session");
+            response.setStatus(0);
+            if (DriverCommand.NEW_SESSION.equals(command.getName())) {
+                response.setValue(Collections.singletonMap("browserName", "fake"));
+                return response;
+            }
+            commands.add(command.getName());
+            if (DriverCommand.FIND_ELEMENT.equals(command.getName())) {
+                response.setValue(Collections.singletonMap("ELEMENT", "search"));
+            }
+
+            return response;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.lazerycode.selenium.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How long each kind of WebDriver command takes, per command, per test and per browser session.
+ * <p>
+ * Every command sent by a browser started through the {@link DriverFactory} is timed by {@link SessionRecorder} and
+ * recorded in a {@link LatencyHistogram}, so a slow test can be traced to findElement, executeScript, screenshots or
+ * navigation.  Once a histogram exists for a command, recording does not allocate.  At the end of the suite the
+ * percentiles for each command are printed and everything is written as JSON to -DcommandReport
+ * (target/command-latency.json by default).
+ */
+public class CommandLatency {
+
+    private static final String NO_TEST = "(no test)";
+
+    private static final Map<String, LatencyHistogram> byCommand = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, LatencyHistogram>> byTest = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, LatencyHistogram>> bySession = new ConcurrentHashMap<>();
+
+    /**
+     * @return the histograms for a new browser session, to be passed to {@link #record(Map, String, long)}
+     */
+    static Map<String, LatencyHistogram> newSession(String session) {
+        Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+        bySession.put(session, histograms);
+
+        return histograms;
+    }
+
+    /**
+     * @param sessionHistograms the session's histograms, or null if the session has not started yet
+     */
+    static void record(Map<String, LatencyHistogram> sessionHistograms, String command, long elapsedNanos) {
+        histogram(byCommand, command).record(elapsedNanos);
+        String test = DriverRegistry.getCurrentTest();
+        if (null == test) {
+            test = NO_TEST;
+        }
+        Map<String, LatencyHistogram> testHistograms = byTest.get(test);
+        if (null == testHistograms) {
+            testHistograms = byTest.computeIfAbsent(test, unused -> new ConcurrentHashMap<>());
+        }
+        histogram(testHistograms, command).record(elapsedNanos);
+        if (null != sessionHistograms) {
+            histogram(sessionHistograms, command).record(elapsedNanos);
+        }
+    }
+
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String command) {
+        LatencyHistogram histogram = histograms.get(command);
+
+        return null == histogram ? histograms.computeIfAbsent(command, unused -> new LatencyHistogram()) : histogram;
+    }
+
+    /**
+     * @return command -&gt; statistics in milliseconds, busiest command first.
+     */
+    public static Map<String, Map<String, Object>> summary() {
+        return describe(byCommand);
+    }
+
+    /**
+     * Print the percentiles for every command and write the full breakdown as JSON, nothing is written if no
+     * command was sent.
+     */
+    public static void writeReport(File report) throws IOException {
+        Map<String, Map<String, Object>> commands = summary();
+        if (commands.isEmpty()) {
+            return;
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("commands", commands);
+        json.put("tests", describeAll(byTest));
+        json.put("sessions", describeAll(bySession));
+        JsonReport.write(report, json);
+        System.out.println("WebDriver command latency in ms (full breakdown in " + report.getPath() + "):");
+        for (Map.Entry<String, Map<String, Object>> command : commands.entrySet()) {
+            Map<String, Object> statistics = command.getValue();
+            System.out.println(String.format("  %-24s count=%s p50=%s p90=%s p99=%s max=%s total=%s", command.getKey(),
+                    statistics.get("count"), statistics.get("p50"), statistics.get("p90"), statistics.get("p99"),
+                    statistics.get("max"), statistics.get("total")));
+        }
+    }
+
+    private static Map<String, Map<String, Map<String, Object>>> describeAll(Map<String, Map<String, LatencyHistogram>> histogramsByName) {
+        Map<String, Map<String, Map<String, Object>>> described = new TreeMap<>();
+        for (Map.Entry<String, Map<String, LatencyHistogram>> entry : histogramsByName.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                described.put(entry.getKey(), describe(entry.getValue()));
+            }
+        }
+
+        return described;
+    }
+
+    private static Map<String, Map<String, Object>> describe(Map<String, LatencyHistogram> histograms) {
+        List<Map.Entry<String, LatencyHistogram>> sorted = new ArrayList<>(histograms.entrySet());
+        sorted.sort((first, second) -> Long.compare(second.getValue().getCount(), first.getValue().getCount()));
+        Map<String, Map<String, Object>> described = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : sorted) {
+            described.put(entry.getKey(), entry.getValue().statistics());
+        }
+
+        return described;
+    }
+}
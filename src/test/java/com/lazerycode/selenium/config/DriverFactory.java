@@ -1,77 +1,159 @@
 package com.lazerycode.selenium.config;
 
+import com.lazerycode.selenium.proxy.EmbeddedProxy;
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.Proxy;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.RemoteWebDriver;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.IOException;
 
-import static com.lazerycode.selenium.config.DriverType.FIREFOX;
-import static com.lazerycode.selenium.config.DriverType.valueOf;
+import static com.lazerycode.selenium.config.DriverTimings.Phase.CAPABILITIES;
+import static com.lazerycode.selenium.config.RunConfig.*;
 import static org.openqa.selenium.Proxy.ProxyType.MANUAL;
+import static org.openqa.selenium.remote.CapabilityType.PAGE_LOAD_STRATEGY;
 import static org.openqa.selenium.remote.CapabilityType.PROXY;
 
 public class DriverFactory {
 
+    private static final String OPERATING_SYSTEM = System.getProperty("os.name").toUpperCase();
+    private static final String SYSTEM_ARCHITECTURE = System.getProperty("os.arch");
+
     private RemoteWebDriver driver;
-    private DriverType selectedDriverType;
-
-    private final String operatingSystem = System.getProperty("os.name").toUpperCase();
-    private final String systemArchitecture = System.getProperty("os.arch");
-    private final boolean useRemoteWebDriver = Boolean.getBoolean("remoteDriver");
-    private final boolean proxyEnabled = Boolean.getBoolean("proxyEnabled");
-    private final String proxyHostname = System.getProperty("proxyHost");
-    private final Integer proxyPort = Integer.getInteger("proxyPort");
-    private final String proxyUsername = System.getProperty("proxyUsername");
-    private final String proxyPassword = System.getProperty("proxyPassword");
-    private final String proxyDetails = String.format("%s:%d", proxyHostname, proxyPort);
-
-    public DriverFactory() {
-        DriverType driverType = FIREFOX;
-        String browser = System.getProperty("browser", driverType.toString()).toUpperCase();
-        try {
-            driverType = valueOf(browser);
-        } catch (IllegalArgumentException ignored) {
-            System.err.println("Unknown driver specified, defaulting to '" + driverType + "'...");
-        } catch (NullPointerException ignored) {
-            System.err.println("No driver specified, defaulting to '" + driverType + "'...");
-        }
-        selectedDriverType = driverType;
+    private RunConfig runConfig;
+
+    public DriverFactory(RunConfig runConfig) {
+        this.runConfig = runConfig;
     }
 
     public RemoteWebDriver getDriver() throws Exception {
+        return getDriver(runConfig);
+    }
+
+    /**
+     * Get a browser that matches the supplied configuration.
+     * If the browser held by this factory was started with a different configuration it is shut down and replaced.
+     */
+    public RemoteWebDriver getDriver(RunConfig runConfig) throws Exception {
+        if (!this.runConfig.equals(runConfig)) {
+            quitDriver();
+            this.runConfig = runConfig;
+        }
+        DriverRegistry driverRegistry = DriverRegistry.getInstance();
+        if (null != driver && !driverRegistry.isLive(driver)) {
+            System.err.println("Browser was reaped as an orphan, starting a new one...");
+            driver = null;
+        }
         if (null == driver) {
-            instantiateWebDriver(selectedDriverType);
+            DriverPool driverPool = DriverPool.getActivePool();
+            driver = null == driverPool ? newWebDriver(runConfig) : driverPool.acquire(runConfig);
         }
+        driverRegistry.claim(driver);
 
         return driver;
     }
 
+    public RunConfig getRunConfig() {
+        return runConfig;
+    }
+
     public RemoteWebDriver getStoredDriver() {
         return driver;
     }
 
+    /**
+     * Clean the current browser session so that it can be reused, see {@link SessionReset}.
+     * A session that could not be fully cleaned is quit, the next call to getDriver() will start a new one.
+     *
+     * @return true if the session was reset and can be reused
+     */
+    public boolean resetSession() {
+        if (null == driver) {
+            return true;
+        }
+        SessionReset.Result result = SessionReset.reset(driver);
+        if (!result.isClean()) {
+            System.err.println("Session reset left " + result.getLeftovers() + " behind, recycling browser...");
+            quitDriver();
+        }
+
+        return result.isClean();
+    }
+
+    /**
+     * Hand the browser over to the caller, who becomes responsible for quitting it.
+     *
+     * @return the browser held by this factory, or null if it has not started one
+     */
+    public RemoteWebDriver detachDriver() {
+        RemoteWebDriver detachedDriver = driver;
+        driver = null;
+
+        return detachedDriver;
+    }
+
     public void quitDriver() {
         if (null != driver) {
-            driver.quit();
+            DriverPool driverPool = DriverPool.getActivePool();
+            if (null == driverPool) {
+                driver.quit();
+            } else {
+                driverPool.retire(runConfig, driver);
+            }
             driver = null;
         }
     }
 
-    private void instantiateWebDriver(DriverType driverType) throws MalformedURLException {
+    /**
+     * Start a new browser session for the supplied configuration, waiting for a slot if the number of live browsers
+     * is capped, see {@link DriverRegistry}.
+     */
+    static RemoteWebDriver newWebDriver(RunConfig runConfig) throws IOException {
+        DriverRegistry driverRegistry = DriverRegistry.getInstance();
+        driverRegistry.admit(runConfig);
+        RemoteWebDriver driver;
+        try {
+            driver = startWebDriver(runConfig);
+        } catch (IOException | RuntimeException unableToStartBrowser) {
+            driverRegistry.cancelAdmission();
+            throw unableToStartBrowser;
+        }
+        driverRegistry.register(driver);
+
+        return driver;
+    }
+
+    private static RemoteWebDriver startWebDriver(RunConfig runConfig) throws IOException {
+        DriverType selectedDriverType = runConfig.getDriverType();
+        boolean useRemoteWebDriver = runConfig.useRemoteWebDriver();
+
         //TODO add in a real logger instead of System.out
         System.out.println(" ");
-        System.out.println("Local Operating System: " + operatingSystem);
-        System.out.println("Local Architecture: " + systemArchitecture);
+        System.out.println("Local Operating System: " + OPERATING_SYSTEM);
+        System.out.println("Local Architecture: " + SYSTEM_ARCHITECTURE);
         System.out.println("Selected Browser: " + selectedDriverType);
+        System.out.println("Selected Locale: " + runConfig.getLocale());
         System.out.println("Connecting to Selenium Grid: " + useRemoteWebDriver);
         System.out.println(" ");
 
+        long capabilitiesStart = System.nanoTime();
         DesiredCapabilities desiredCapabilities = new DesiredCapabilities();
         desiredCapabilities.setAcceptInsecureCerts(true);
-        if (proxyEnabled) {
+        String pageLoadStrategy = runConfig.getPageLoadStrategy();
+        if (null != pageLoadStrategy) {
+            desiredCapabilities.setCapability(PAGE_LOAD_STRATEGY, pageLoadStrategy);
+        }
+        if (runConfig.useEmbeddedProxy() && !useRemoteWebDriver) {
+            String proxyDetails = EmbeddedProxy.start(runConfig).getAddress();
+            Proxy proxy = new Proxy();
+            proxy.setProxyType(MANUAL);
+            proxy.setHttpProxy(proxyDetails);
+            proxy.setSslProxy(proxyDetails);
+            desiredCapabilities.setCapability(PROXY, proxy);
+        } else if (runConfig.getBoolean(PROXY_ENABLED)) {
+            String proxyUsername = runConfig.get(PROXY_USERNAME, "");
+            String proxyPassword = runConfig.get(PROXY_PASSWORD, "");
+            String proxyDetails = String.format("%s:%d", runConfig.get(PROXY_HOST), runConfig.getInteger(PROXY_PORT));
             Proxy proxy = new Proxy();
             proxy.setProxyType(MANUAL);
             proxy.setHttpProxy(proxyDetails);
@@ -86,9 +168,8 @@ public class DriverFactory {
         }
 
         if (useRemoteWebDriver) {
-            URL seleniumGridURL = new URL(System.getProperty("gridURL"));
-            String desiredBrowserVersion = System.getProperty("desiredBrowserVersion");
-            String desiredPlatform = System.getProperty("desiredPlatform");
+            String desiredBrowserVersion = runConfig.get(DESIRED_BROWSER_VERSION);
+            String desiredPlatform = runConfig.get(DESIRED_PLATFORM);
 
             if (null != desiredPlatform && !desiredPlatform.isEmpty()) {
                 desiredCapabilities.setPlatform(Platform.valueOf(desiredPlatform.toUpperCase()));
@@ -99,10 +180,11 @@ public class DriverFactory {
             }
 
             desiredCapabilities.setBrowserName(selectedDriverType.toString());
-            driver = new RemoteWebDriver(seleniumGridURL, desiredCapabilities);
+            DriverTimings.record(selectedDriverType, CAPABILITIES, capabilitiesStart);
+
+            return GridScheduler.forRunConfig(runConfig).newSession(selectedDriverType, desiredCapabilities);
         } else {
-            driver = driverType.getWebDriverObject(desiredCapabilities);
+            return selectedDriverType.getWebDriverObject(desiredCapabilities, runConfig);
         }
     }
 }
-
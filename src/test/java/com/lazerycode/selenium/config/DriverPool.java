@@ -0,0 +1,314 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of browser sessions that are started in the background before the tests need them.
+ * <p>
+ * At suite start {@link #prewarm(RunConfig, int)} spawns a number of sessions for a configuration, a DriverFactory
+ * that needs a browser with that configuration then takes a ready one instead of paying the browser start up time on
+ * the test's critical path.  Sessions are keyed by the {@link RunConfig#browserSettings() browser settings} of their
+ * RunConfig, so browsers are only handed to threads that asked for the same browser, locale, capabilities etc. while
+ * settings that never reach the browser, such as report locations, may differ.  A test that overrides the suite
+ * configuration usually asks for other browser settings than the ones prewarmed, the first thread to ask for them
+ * moves the pool over: sessions are spawned for the new settings and the prewarmed sessions that no thread has taken
+ * are quit.  When a session is retired a replacement is started in the background, and idle sessions are health
+ * checked so that a dead browser is never handed out.
+ * <p>
+ * The pool is switched on with -DdriverPoolSize=&lt;sessions&gt;, usually set to the number of threads.  Sessions are
+ * started by a {@link SessionStarter}, tests can supply their own to run the pool without real browsers.
+ */
+public class DriverPool {
+
+    /**
+     * Starts the sessions that go into the pool, and the ones a thread starts itself when none is ready.
+     */
+    interface SessionStarter {
+        RemoteWebDriver start(RunConfig runConfig) throws Exception;
+    }
+
+    private static final long HEALTH_CHECK_INTERVAL_SECONDS = 30;
+    private static final long SPAWN_WAIT_SECONDS = 120;
+
+    private static volatile DriverPool activePool;
+
+    private final Map<RunConfig, Sessions> sessionsByBrowser = new ConcurrentHashMap<>();
+    private final int size;
+    private final SessionStarter sessionStarter;
+    private final ExecutorService spawner;
+    private final ScheduledExecutorService healthChecker;
+
+    DriverPool(int size, SessionStarter sessionStarter) {
+        this.size = size;
+        this.sessionStarter = sessionStarter;
+        spawner = Executors.newFixedThreadPool(size, daemonThreads("driver-pool-spawner"));
+        healthChecker = Executors.newSingleThreadScheduledExecutor(daemonThreads("driver-pool-health-check"));
+        healthChecker.scheduleWithFixedDelay(this::checkIdleSessions, HEALTH_CHECK_INTERVAL_SECONDS, HEALTH_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start the pool and begin spawning sessions for the supplied configuration.
+     *
+     * @param runConfig the configuration the sessions are started with
+     * @param sessions  the number of idle sessions to keep ready
+     */
+    public static synchronized DriverPool start(RunConfig runConfig, int sessions) {
+        if (null == activePool) {
+            activePool = new DriverPool(Math.max(1, sessions), DriverFactory::newWebDriver);
+        }
+        activePool.prewarm(runConfig, sessions);
+
+        return activePool;
+    }
+
+    /**
+     * @return the running pool, or null if sessions are not pooled.
+     */
+    public static DriverPool getActivePool() {
+        return activePool;
+    }
+
+    /**
+     * Quit every idle session and stop the pool, sessions still in use are left to their DriverFactory and are quit
+     * directly from now on.
+     */
+    public static synchronized void shutdown() {
+        if (null == activePool) {
+            return;
+        }
+        DriverPool pool = activePool;
+        activePool = null;
+        pool.stop();
+    }
+
+    void stop() {
+        healthChecker.shutdownNow();
+        spawner.shutdown();
+        try {
+            healthChecker.awaitTermination(SPAWN_WAIT_SECONDS, TimeUnit.SECONDS);
+            spawner.awaitTermination(SPAWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        List<RemoteWebDriver> idleDrivers = new ArrayList<>();
+        for (Sessions sessions : sessionsByBrowser.values()) {
+            sessions.idle.drainTo(idleDrivers);
+        }
+        DriverTeardown.quitAll(idleDrivers);
+    }
+
+    public void prewarm(RunConfig runConfig, int sessions) {
+        Sessions pooledSessions = sessionsFor(runConfig);
+        pooledSessions.target.set(sessions);
+        for (int i = 0; i < sessions; i++) {
+            spawn(pooledSessions);
+        }
+    }
+
+    /**
+     * Take a ready session for the configuration.  If none is idle but one is being started the caller waits for it,
+     * otherwise a session is started on the calling thread.
+     */
+    public RemoteWebDriver acquire(RunConfig runConfig) throws Exception {
+        Sessions sessions = sessionsFor(runConfig);
+        if (0 == sessions.target.get()) {
+            moveTo(sessions);
+        }
+        sessions.handedOut.incrementAndGet();
+        RemoteWebDriver driver = sessions.idle.poll();
+        if (null == driver && sessions.waiters.incrementAndGet() <= sessions.spawning.get()) {
+            try {
+                driver = sessions.idle.poll(SPAWN_WAIT_SECONDS, TimeUnit.SECONDS);
+            } finally {
+                sessions.waiters.decrementAndGet();
+            }
+        } else if (null == driver) {
+            sessions.waiters.decrementAndGet();
+        }
+        if (null == driver) {
+            driver = sessionStarter.start(runConfig);
+        }
+
+        return driver;
+    }
+
+    /**
+     * Quit a session that is no longer needed and start a replacement in the background.
+     */
+    public void retire(RunConfig runConfig, RemoteWebDriver driver) {
+        Sessions sessions = sessionsFor(runConfig);
+        quitInBackground(driver);
+        if (sessions.idle.size() + sessions.spawning.get() < sessions.target.get()) {
+            spawn(sessions);
+        }
+    }
+
+    /**
+     * Quit an idle session that was started for other browser settings, freeing its slot for a thread that needs a
+     * browser now, see {@link DriverRegistry}.  Fewer sessions are kept ready for those settings from now on.
+     *
+     * @param runConfig the configuration of the browser that needs the slot
+     * @return true if a session was quit
+     */
+    boolean evictIdleSession(RunConfig runConfig) {
+        RunConfig wanted = runConfig.browserSettings();
+        for (Map.Entry<RunConfig, Sessions> entry : sessionsByBrowser.entrySet()) {
+            if (entry.getKey().equals(wanted)) {
+                continue;
+            }
+            Sessions sessions = entry.getValue();
+            RemoteWebDriver driver = sessions.idle.pollLast();
+            if (null != driver) {
+                sessions.target.updateAndGet(target -> Math.max(0, target - 1));
+                System.out.println("Quitting an idle pooled browser to free a slot for " + wanted + "...");
+                quietlyQuit(driver);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public int getIdleSessionCount() {
+        int idle = 0;
+        for (Sessions sessions : sessionsByBrowser.values()) {
+            idle += sessions.idle.size();
+        }
+
+        return idle;
+    }
+
+    private Sessions sessionsFor(RunConfig runConfig) {
+        return sessionsByBrowser.computeIfAbsent(runConfig.browserSettings(), browserSettings -> new Sessions(runConfig));
+    }
+
+    /**
+     * Keep sessions ready for browser settings that were not prewarmed, instead of the prewarmed settings that no
+     * thread has asked for.
+     */
+    private synchronized void moveTo(Sessions wanted) {
+        if (!wanted.target.compareAndSet(0, size)) {
+            return;
+        }
+        List<RemoteWebDriver> unusedDrivers = new ArrayList<>();
+        for (Sessions sessions : sessionsByBrowser.values()) {
+            if (sessions != wanted && 0 == sessions.handedOut.get()) {
+                sessions.target.set(0);
+                sessions.idle.drainTo(unusedDrivers);
+            }
+        }
+        if (!unusedDrivers.isEmpty()) {
+            System.out.println("Browser pool moving to " + wanted.runConfig.browserSettings() + ", quitting " + unusedDrivers.size() + " unused browser(s)...");
+        }
+        for (RemoteWebDriver driver : unusedDrivers) {
+            quitInBackground(driver);
+        }
+        for (int i = 0; i < size; i++) {
+            spawn(wanted);
+        }
+    }
+
+    private void spawn(Sessions sessions) {
+        sessions.spawning.incrementAndGet();
+        try {
+            spawner.execute(() -> {
+                try {
+                    RemoteWebDriver driver = sessionStarter.start(sessions.runConfig);
+                    if (sessions.target.get() > 0) {
+                        sessions.idle.add(driver);
+                    } else {
+                        // The pool has moved to other browser settings while this one was starting
+                        quietlyQuit(driver);
+                    }
+                } catch (Exception unableToStartBrowser) {
+                    System.err.println("Unable to pre-spawn a browser: " + unableToStartBrowser.getMessage());
+                } finally {
+                    sessions.spawning.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException poolShuttingDown) {
+            sessions.spawning.decrementAndGet();
+        }
+    }
+
+    /**
+     * Ping every idle session, dead ones are discarded and replaced.  Each session is taken out of the pool while it
+     * is pinged, so it cannot be handed to a test at the same time, and is put back at the end of the queue if it
+     * answers.
+     */
+    void checkIdleSessions() {
+        for (Sessions sessions : sessionsByBrowser.values()) {
+            for (int remaining = sessions.idle.size(); remaining > 0; remaining--) {
+                RemoteWebDriver driver = sessions.idle.pollFirst();
+                if (null == driver) {
+                    break;
+                }
+                try {
+                    driver.getWindowHandle();
+                } catch (Exception deadSession) {
+                    System.err.println("Discarding idle browser that failed its health check...");
+                    quietlyQuit(driver);
+                    spawn(sessions);
+                    continue;
+                }
+                if (sessions.target.get() > 0 && !healthChecker.isShutdown()) {
+                    sessions.idle.addLast(driver);
+                } else {
+                    // The pool has moved to other browser settings, or is stopping, while this one was pinged
+                    quietlyQuit(driver);
+                }
+            }
+        }
+    }
+
+    private void quitInBackground(RemoteWebDriver driver) {
+        try {
+            spawner.execute(() -> quietlyQuit(driver));
+        } catch (RuntimeException poolShuttingDown) {
+            quietlyQuit(driver);
+        }
+    }
+
+    private static void quietlyQuit(RemoteWebDriver driver) {
+        try {
+            driver.quit();
+        } catch (Exception ignored) {
+            System.err.println("Unable to quit pooled browser, it may already be dead...");
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Sessions {
+        private final RunConfig runConfig;
+        private final BlockingDeque<RemoteWebDriver> idle = new LinkedBlockingDeque<>();
+        private final AtomicInteger spawning = new AtomicInteger();
+        private final AtomicInteger waiters = new AtomicInteger();
+        private final AtomicInteger target = new AtomicInteger();
+        private final AtomicInteger handedOut = new AtomicInteger();
+
+        private Sessions(RunConfig runConfig) {
+            this.runConfig = runConfig;
+        }
+    }
+}
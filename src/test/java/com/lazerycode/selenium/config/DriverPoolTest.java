@@ -0,0 +1,210 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DriverPoolTest {
+
+    private static final RunConfig SUITE_CONFIG = RunConfig.fromSystemProperties()
+            .with(RunConfig.BROWSER, null)
+            .with(RunConfig.LANGUAGE, null)
+            .withHeadless(true);
+
+    private final Map<RemoteWebDriver, RunConfig> startedWith = new ConcurrentHashMap<>();
+    private final Map<RemoteWebDriver, String> startedOn = new ConcurrentHashMap<>();
+    private final AtomicInteger quits = new AtomicInteger();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final Set<String> deadSessions = ConcurrentHashMap.newKeySet();
+    private volatile CountDownLatch pingStarted;
+    private volatile CountDownLatch pingMayAnswer;
+    private DriverPool pool;
+
+    @BeforeMethod
+    public void startPool() {
+        startedWith.clear();
+        startedOn.clear();
+        quits.set(0);
+        sessions.set(0);
+        deadSessions.clear();
+        pingStarted = new CountDownLatch(0);
+        pingMayAnswer = new CountDownLatch(0);
+        pool = new DriverPool(2, this::startStubBrowser);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stopPool() {
+        pool.stop();
+    }
+
+    @Test
+    public void settingsThatDoNotReachTheBrowserDoNotMatter() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 1);
+        await(() -> 1 == pool.getIdleSessionCount());
+
+        RemoteWebDriver driver = pool.acquire(SUITE_CONFIG.withBrowser("firefox").with(RunConfig.TIMING_REPORT, "target/other.json"));
+
+        assertThat(startedOn.get(driver)).startsWith("driver-pool-spawner");
+        assertThat(startedWith).hasSize(1);
+    }
+
+    @Test
+    public void overriddenBrowserSettingsAreServedFromThePool() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 2);
+        await(() -> 2 == pool.getIdleSessionCount());
+        RunConfig baseTestConfig = SUITE_CONFIG
+                .withBrowser("firefox")
+                .withHeadless(false)
+                .withLocale("fr")
+                .withLeanMode(false);
+
+        RemoteWebDriver first = pool.acquire(baseTestConfig);
+        RemoteWebDriver second = pool.acquire(baseTestConfig);
+
+        for (RemoteWebDriver driver : new RemoteWebDriver[]{first, second}) {
+            assertThat(startedOn.get(driver)).startsWith("driver-pool-spawner");
+            assertThat(startedWith.get(driver).browserSettings()).isEqualTo(baseTestConfig.browserSettings());
+        }
+        await(() -> 2 == quits.get());
+        assertThat(pool.getIdleSessionCount()).isZero();
+    }
+
+    @Test
+    public void prewarmedSettingsThatAreInUseAreKept() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 2);
+        await(() -> 2 == pool.getIdleSessionCount());
+
+        pool.acquire(SUITE_CONFIG);
+        pool.acquire(SUITE_CONFIG.withLocale("de"));
+        await(() -> 2 == pool.getIdleSessionCount());
+
+        assertThat(quits.get()).isZero();
+    }
+
+    @Test
+    public void onlyIdleSessionsForOtherBrowserSettingsAreEvicted() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 1);
+        await(() -> 1 == pool.getIdleSessionCount());
+
+        assertThat(pool.evictIdleSession(SUITE_CONFIG.with(RunConfig.TIMING_REPORT, "target/other.json"))).isFalse();
+        assertThat(pool.evictIdleSession(SUITE_CONFIG.withHeadless(false))).isTrue();
+        assertThat(pool.evictIdleSession(SUITE_CONFIG.withHeadless(false))).isFalse();
+
+        assertThat(quits.get()).isEqualTo(1);
+        assertThat(pool.getIdleSessionCount()).isZero();
+    }
+
+    @Test
+    public void evictedSessionsAreNotReplaced() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 1);
+        await(() -> 1 == pool.getIdleSessionCount());
+        RemoteWebDriver driver = pool.acquire(SUITE_CONFIG);
+        pool.prewarm(SUITE_CONFIG, 1);
+        await(() -> 1 == pool.getIdleSessionCount());
+
+        pool.evictIdleSession(SUITE_CONFIG.withHeadless(false));
+        pool.retire(SUITE_CONFIG, driver);
+        await(() -> 2 == quits.get());
+
+        assertThat(pool.getIdleSessionCount()).isZero();
+        assertThat(startedWith).hasSize(2);
+    }
+
+    @Test
+    public void deadIdleSessionsAreDiscardedAndReplaced() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 2);
+        await(() -> 2 == pool.getIdleSessionCount());
+        deadSessions.add("stub-0");
+
+        pool.checkIdleSessions();
+        await(() -> 2 == pool.getIdleSessionCount());
+
+        assertThat(quits.get()).isEqualTo(1);
+        assertThat(startedWith).hasSize(3);
+        assertThat(pool.acquire(SUITE_CONFIG).getSessionId().toString()).isNotEqualTo("stub-0");
+        assertThat(pool.acquire(SUITE_CONFIG).getSessionId().toString()).isNotEqualTo("stub-0");
+    }
+
+    @Test
+    public void aSessionBeingHealthCheckedIsNotHandedOut() throws Exception {
+        pool.prewarm(SUITE_CONFIG, 1);
+        await(() -> 1 == pool.getIdleSessionCount());
+        RemoteWebDriver checked = startedWith.keySet().iterator().next();
+        pingStarted = new CountDownLatch(1);
+        pingMayAnswer = new CountDownLatch(1);
+        ExecutorService healthCheck = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> check = healthCheck.submit(pool::checkIdleSessions);
+            assertThat(pingStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+            RemoteWebDriver acquired = pool.acquire(SUITE_CONFIG);
+            pingMayAnswer.countDown();
+            check.get(10, TimeUnit.SECONDS);
+
+            assertThat(acquired).isNotSameAs(checked);
+            assertThat(pool.getIdleSessionCount()).isEqualTo(1);
+            assertThat(pool.acquire(SUITE_CONFIG)).isSameAs(checked);
+            assertThat(quits.get()).isZero();
+        } finally {
+            pingMayAnswer.countDown();
+            healthCheck.shutdownNow();
+        }
+    }
+
+    private RemoteWebDriver startStubBrowser(RunConfig runConfig) {
+        String sessionId = "stub-" + sessions.getAndIncrement();
+        RemoteWebDriver driver = new RemoteWebDriver(command -> {
+            Response response = new Response();
+            response.setSessionId(sessionId);
+            response.setStatus(0);
+            if (DriverCommand.NEW_SESSION.equals(command.getName())) {
+                response.setValue(Collections.singletonMap("browserName", runConfig.getDriverType().toString()));
+            } else if (DriverCommand.QUIT.equals(command.getName())) {
+                quits.incrementAndGet();
+            } else if (DriverCommand.GET_CURRENT_WINDOW_HANDLE.equals(command.getName())) {
+                if (deadSessions.contains(sessionId)) {
+                    throw new IOException("Connection refused");
+                }
+                pingStarted.countDown();
+                try {
+                    pingMayAnswer.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                response.setValue("window");
+            }
+            return response;
+        }, new ImmutableCapabilities());
+        startedWith.put(driver, runConfig);
+        startedOn.put(driver, Thread.currentThread().getName());
+
+        return driver;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out waiting for the pool").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every browser session the suite has started and not yet quit, along with the thread and test that own it.
+ * <p>
+ * Starting a session takes a permit from a fair semaphore so that no more than -DmaxBrowsers sessions are alive at
+ * once, pooled sessions included; threads that ask for a browser beyond that wait in arrival order.  The cap is a
+ * number, "auto" to size it from the memory available when the suite starts and -DbrowserMemory (MB per browser), or
+ * 0 (the default) for no cap.  Idle sessions in a {@link DriverPool} hold permits too, so a thread that finds no free
+ * permit quits an idle pooled session that was started for other browser settings rather than wait for a permit that
+ * may never come back.  A thread that waits longer than -DadmissionTimeout seconds fails, and a permit is handed back
+ * when its session quits or is force stopped.
+ * <p>
+ * A session is an orphan when the thread that owns it has died, or when it has not been sent a command for
+ * -DorphanTimeout seconds.  A background reaper quits orphans so that their permits, and the memory their browsers
+ * hold, are not lost for the rest of the run.  Sessions waiting in a {@link DriverPool} have no owner and are never
+ * orphans.
+ */
+public class DriverRegistry {
+
+    private static final long REAPER_INTERVAL_SECONDS = 30;
+    private static final long EVICTION_INTERVAL_MILLIS = 1000;
+    private static final long MEMORY_RESERVE_MB = 1024;
+    private static final ThreadLocal<String> currentTest = new ThreadLocal<>();
+
+    private static volatile DriverRegistry registry;
+
+    private final Map<RemoteWebDriver, Session> sessions = new ConcurrentHashMap<>();
+    private final int maxSessions;
+    private final Semaphore permits;
+    private final long admissionTimeoutSeconds;
+    private final long orphanTimeoutNanos;
+    private final ScheduledExecutorService reaper;
+
+    DriverRegistry(int maxSessions, long admissionTimeoutSeconds, long orphanTimeoutSeconds) {
+        this.maxSessions = maxSessions;
+        this.permits = maxSessions > 0 ? new Semaphore(maxSessions, true) : null;
+        this.admissionTimeoutSeconds = admissionTimeoutSeconds;
+        this.orphanTimeoutNanos = TimeUnit.SECONDS.toNanos(orphanTimeoutSeconds);
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "driver-registry-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::reapOrphans, REAPER_INTERVAL_SECONDS, REAPER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the registry for this suite, created from the suite configuration on first use.
+     */
+    public static DriverRegistry getInstance() {
+        DriverRegistry instance = registry;
+        if (null == instance) {
+            synchronized (DriverRegistry.class) {
+                if (null == registry) {
+                    RunConfig runConfig = RunConfig.suiteConfig();
+                    registry = new DriverRegistry(
+                            maxSessionsFor(runConfig),
+                            runConfig.getInt(RunConfig.ADMISSION_TIMEOUT, 600),
+                            runConfig.getInt(RunConfig.ORPHAN_TIMEOUT, 1800));
+                    System.out.println("Browser sessions: " + (registry.maxSessions > 0 ? "at most " + registry.maxSessions : "uncapped"));
+                }
+                instance = registry;
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Name the test the current thread is running, sessions the thread owns are attributed to it.
+     *
+     * @param testName the test, or null once it has finished
+     */
+    public static void setCurrentTest(String testName) {
+        if (null == testName) {
+            currentTest.remove();
+        } else {
+            currentTest.set(testName);
+        }
+        DriverRegistry instance = registry;
+        if (null != instance) {
+            for (Session session : instance.sessions.values()) {
+                if (session.owner == Thread.currentThread()) {
+                    session.test = testName;
+                }
+            }
+        }
+    }
+
+    public static String getCurrentTest() {
+        return currentTest.get();
+    }
+
+    /**
+     * Wait for a free slot before starting a session, quitting idle pooled sessions for other browser settings while
+     * there is none.  Every successful call must be followed by either {@link #register(RemoteWebDriver)} or
+     * {@link #cancelAdmission()}.
+     *
+     * @param runConfig the configuration of the session about to be started
+     */
+    void admit(RunConfig runConfig) {
+        if (null == permits) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(admissionTimeoutSeconds);
+        try {
+            while (!permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                DriverPool driverPool = DriverPool.getActivePool();
+                if (null != driverPool && driverPool.evictIdleSession(runConfig)) {
+                    continue;
+                }
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    throw new WebDriverException("Waited " + admissionTimeoutSeconds + "s for a browser slot, " + this);
+                }
+                if (permits.tryAcquire(Math.min(EVICTION_INTERVAL_MILLIS, remainingMillis), TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting for a browser slot", interrupted);
+        }
+    }
+
+    /**
+     * Hand back a slot taken by {@link #admit(RunConfig)} when the session could not be started.
+     */
+    void cancelAdmission() {
+        if (null != permits) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Record a session that has just been started, it has no owner until a DriverFactory claims it.
+     */
+    void register(RemoteWebDriver driver) {
+        sessions.put(driver, new Session(driver));
+    }
+
+    /**
+     * Record that the current thread now owns the session.
+     */
+    void claim(RemoteWebDriver driver) {
+        Session session = sessions.get(driver);
+        if (null != session) {
+            session.owner = Thread.currentThread();
+            session.test = currentTest.get();
+        }
+    }
+
+    /**
+     * Forget a session that has quit, or been killed, and hand back its slot.  Safe to call more than once.
+     */
+    void unregister(RemoteWebDriver driver) {
+        if (null != sessions.remove(driver) && null != permits) {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return false if the session has quit or been reaped.
+     */
+    boolean isLive(RemoteWebDriver driver) {
+        return sessions.containsKey(driver);
+    }
+
+    public int getLiveSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the cap on live sessions, 0 if there is none.
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public int getAvailableSlots() {
+        return null == permits ? Integer.MAX_VALUE : permits.availablePermits();
+    }
+
+    public int getWaitingThreadCount() {
+        return null == permits ? 0 : permits.getQueueLength();
+    }
+
+    public int getOrphanCount() {
+        return findOrphans().size();
+    }
+
+    /**
+     * @return a snapshot of the live sessions.
+     */
+    public List<Session> getSessions() {
+        return Collections.unmodifiableList(new ArrayList<>(sessions.values()));
+    }
+
+    /**
+     * Quit every orphaned session now.
+     *
+     * @return the number of sessions reaped
+     */
+    public int reapOrphans() {
+        List<RemoteWebDriver> orphans = new ArrayList<>();
+        for (Session session : findOrphans()) {
+            System.err.println("Reaping orphaned " + session);
+            orphans.add(session.driver);
+        }
+        try {
+            DriverTeardown.quitAll(orphans);
+        } catch (RuntimeException reapFailed) {
+            System.err.println("Unable to reap orphaned sessions: " + reapFailed.getMessage());
+        }
+        for (RemoteWebDriver orphan : orphans) {
+            unregister(orphan);
+        }
+
+        return orphans.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DriverRegistry[%d live, %s, %d waiting]", getLiveSessionCount(),
+                null == permits ? "uncapped" : getAvailableSlots() + " of " + maxSessions + " slots free", getWaitingThreadCount());
+    }
+
+    private List<Session> findOrphans() {
+        long now = System.nanoTime();
+        List<Session> orphans = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            Thread owner = session.owner;
+            if (null != owner && (!owner.isAlive() || now - session.getLastCommandNanos() > orphanTimeoutNanos)) {
+                orphans.add(session);
+            }
+        }
+
+        return orphans;
+    }
+
+    static int maxSessionsFor(RunConfig runConfig) {
+        String maxBrowsers = runConfig.get(RunConfig.MAX_BROWSERS, "0");
+        if (!"auto".equalsIgnoreCase(maxBrowsers)) {
+            try {
+                return Math.max(0, Integer.parseInt(maxBrowsers.trim()));
+            } catch (NumberFormatException ignored) {
+                System.err.println("Unknown maxBrowsers '" + maxBrowsers + "', browser sessions will not be capped...");
+                return 0;
+            }
+        }
+        long availableMB = availableMemoryMB();
+        if (availableMB <= 0) {
+            System.err.println("Unable to read available memory, browser sessions will not be capped...");
+            return 0;
+        }
+
+        return (int) Math.max(1, (availableMB - MEMORY_RESERVE_MB) / Math.max(1, runConfig.getInt(RunConfig.BROWSER_MEMORY, 512)));
+    }
+
+    /**
+     * MemAvailable on Linux counts reclaimable page cache, which is what a new browser can actually use; elsewhere the
+     * free physical memory reported by the JVM is the best estimate.  getFreePhysicalMemorySize() is deprecated from
+     * Java 14 in favour of getFreeMemorySize(), which Java 8 does not have.
+     */
+    @SuppressWarnings("deprecation")
+    private static long availableMemoryMB() {
+        File meminfo = new File("/proc/meminfo");
+        if (meminfo.canRead()) {
+            try {
+                for (String line : Files.readAllLines(meminfo.toPath(), StandardCharsets.US_ASCII)) {
+                    if (line.startsWith("MemAvailable:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                    }
+                }
+            } catch (IOException | NumberFormatException ignored) {
+                // Fall back to the JVM's view
+            }
+        }
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getFreePhysicalMemorySize() / (1024 * 1024);
+        }
+
+        return -1;
+    }
+
+    public static class Session {
+        private final RemoteWebDriver driver;
+        private final long startNanos = System.nanoTime();
+        private volatile Thread owner;
+        private volatile String test;
+
+        private Session(RemoteWebDriver driver) {
+            this.driver = driver;
+        }
+
+        public RemoteWebDriver getDriver() {
+            return driver;
+        }
+
+        /**
+         * @return the thread that owns the session, or null while it waits in a pool.
+         */
+        public Thread getOwner() {
+            return owner;
+        }
+
+        /**
+         * @return the test the owner is running, or null between tests.
+         */
+        public String getTest() {
+            return test;
+        }
+
+        public long getAgeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        long getLastCommandNanos() {
+            SessionRecorder recorder = SessionRecorder.of(driver);
+
+            return null == recorder ? startNanos : recorder.getLastCommandNanos();
+        }
+
+        @Override
+        public String toString() {
+            Thread currentOwner = owner;
+            return String.format("session %s owned by %s%s, %ds old", driver.getSessionId(),
+                    null == currentOwner ? "the pool" : currentOwner.getName() + (currentOwner.isAlive() ? "" : " (dead)"),
+                    null == test ? "" : " running " + test, TimeUnit.MILLISECONDS.toSeconds(getAgeMillis()));
+        }
+    }
+}
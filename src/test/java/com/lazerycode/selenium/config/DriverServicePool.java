@@ -0,0 +1,139 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import static com.lazerycode.selenium.config.DriverTimings.Phase.SERVICE_START;
+
+/**
+ * Long lived driver services (geckodriver, chromedriver etc.), one pool per browser type.
+ * <p>
+ * Starting a driver service means spawning a process and probing for a free port, so instead of doing that for every
+ * session the services are started once and reused.  Drivers that can run several sessions at once (chromedriver,
+ * operadriver) share a single service.  The others only run one session at a time, so each session leases a service
+ * of its own and hands it back when it quits, the pool only grows to the number of browsers that are open at the same
+ * time.  Every service is stopped when the JVM shuts down.
+ */
+class DriverServicePool {
+
+    private static final Map<DriverType, DriverServicePool> pools = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DriverServicePool::stopAll, "driver-service-shutdown"));
+    }
+
+    private final DriverType driverType;
+    private final BlockingDeque<DriverService> idle = new LinkedBlockingDeque<>();
+    private final Set<DriverService> running = ConcurrentHashMap.newKeySet();
+    private DriverService sharedService;
+
+    private DriverServicePool(DriverType driverType) {
+        this.driverType = driverType;
+    }
+
+    static DriverServicePool forDriverType(DriverType driverType) {
+        return pools.computeIfAbsent(driverType, DriverServicePool::new);
+    }
+
+    /**
+     * Stop every driver service, any session still using one dies with it.
+     */
+    static void stopAll() {
+        for (DriverServicePool pool : pools.values()) {
+            for (DriverService driverService : pool.running) {
+                pool.stop(driverService);
+            }
+        }
+    }
+
+    boolean isShared() {
+        return driverType.supportsConcurrentSessions();
+    }
+
+    /**
+     * @return a running driver service for a new session
+     */
+    DriverService lease() {
+        if (isShared()) {
+            return sharedService();
+        }
+        DriverService driverService;
+        while (null != (driverService = idle.poll())) {
+            if (driverService.isRunning()) {
+                return driverService;
+            }
+            stop(driverService);
+        }
+
+        return start(driverType.createDriverService());
+    }
+
+    /**
+     * Return a service once its session has quit.
+     *
+     * @param reusable false if the session did not quit cleanly and the service should not be trusted with another one
+     */
+    void release(DriverService driverService, boolean reusable) {
+        if (isShared()) {
+            return;
+        }
+        if (reusable && driverService.isRunning()) {
+            idle.push(driverService);
+        } else {
+            stop(driverService);
+        }
+    }
+
+    /**
+     * Forget about a service that has been killed.
+     */
+    void discard(DriverService driverService) {
+        running.remove(driverService);
+        idle.remove(driverService);
+        synchronized (this) {
+            if (sharedService == driverService) {
+                sharedService = null;
+            }
+        }
+    }
+
+    private synchronized DriverService sharedService() {
+        if (null == sharedService || !sharedService.isRunning()) {
+            if (null != sharedService) {
+                stop(sharedService);
+            }
+            sharedService = start(driverType.createDriverService());
+        }
+
+        return sharedService;
+    }
+
+    private DriverService start(DriverService driverService) {
+        long start = System.nanoTime();
+        try {
+            driverService.start();
+        } catch (IOException unableToStart) {
+            throw new WebDriverException("Unable to start the " + driverType + " driver service", unableToStart);
+        }
+        DriverTimings.record(driverType, SERVICE_START, start);
+        running.add(driverService);
+
+        return driverService;
+    }
+
+    private void stop(DriverService driverService) {
+        running.remove(driverService);
+        try {
+            driverService.stop();
+        } catch (Exception ignored) {
+            System.err.println("Unable to stop " + driverType + " driver service at " + driverService.getUrl() + "...");
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.lazerycode.selenium.config;
 
+import org.openqa.selenium.MutableCapabilities;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.service.DriverService;
 
 public interface DriverSetup {
-    RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities);
-}
\ No newline at end of file
+    MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig);
+
+    DriverService createDriverService();
+
+    RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities, RunConfig runConfig);
+}
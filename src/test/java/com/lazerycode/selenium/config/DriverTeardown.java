@@ -0,0 +1,110 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Quit a batch of browsers concurrently, so that shutting down sixteen browsers takes about as long as shutting down
+ * the slowest one.
+ * <p>
+ * Every quit shares one deadline (-DquitTimeout, in seconds).  A local browser that has not quit by then has its driver
+ * service process tree killed, a grid session is abandoned to the grid's own timeout.  Quits that take longer than
+ * -DslowQuitThreshold seconds are reported.
+ */
+public class DriverTeardown {
+
+    private static final AtomicInteger teardowns = new AtomicInteger();
+
+    public static void quitAll(Collection<RemoteWebDriver> drivers) {
+        RunConfig runConfig = RunConfig.suiteConfig();
+        quitAll(drivers, runConfig.getInt(RunConfig.QUIT_TIMEOUT, 30), runConfig.getInt(RunConfig.SLOW_QUIT_THRESHOLD, 5));
+    }
+
+    public static void quitAll(Collection<RemoteWebDriver> drivers, long quitTimeoutSeconds, long slowQuitSeconds) {
+        if (drivers.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(quitTimeoutSeconds);
+        ExecutorService quitters = Executors.newFixedThreadPool(drivers.size(), daemonThreads());
+        Map<RemoteWebDriver, Future<Long>> quits = new LinkedHashMap<>();
+        for (RemoteWebDriver driver : drivers) {
+            quits.put(driver, quitters.submit(() -> timedQuit(driver)));
+        }
+        quitters.shutdown();
+
+        int slow = 0;
+        int forced = 0;
+        for (Map.Entry<RemoteWebDriver, Future<Long>> quit : quits.entrySet()) {
+            RemoteWebDriver driver = quit.getKey();
+            try {
+                long quitMillis = quit.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (quitMillis >= TimeUnit.SECONDS.toMillis(slowQuitSeconds)) {
+                    slow++;
+                    System.err.println("Slow quit: " + describe(driver) + " took " + quitMillis + "ms");
+                }
+            } catch (TimeoutException quitHung) {
+                forced++;
+                quit.getValue().cancel(true);
+                System.err.println(describe(driver) + " did not quit within " + quitTimeoutSeconds + "s, force stopping...");
+                forceStop(driver);
+            } catch (ExecutionException quitFailed) {
+                forced++;
+                System.err.println("Unable to quit " + describe(driver) + " (" + quitFailed.getCause().getMessage() + "), force stopping...");
+                forceStop(driver);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                forceStop(driver);
+            }
+        }
+
+        System.out.println(String.format("Quit %d browser(s) in %dms, %d slow, %d force stopped",
+                drivers.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), slow, forced));
+    }
+
+    private static long timedQuit(RemoteWebDriver driver) {
+        long start = System.nanoTime();
+        driver.quit();
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void forceStop(RemoteWebDriver driver) {
+        LocalSession session = LocalSession.of(driver);
+        if (null != session) {
+            session.forceStop();
+        } else {
+            System.err.println("Unable to force stop " + describe(driver) + ", it is not running locally...");
+        }
+        DriverRegistry.getInstance().unregister(driver);
+    }
+
+    private static String describe(RemoteWebDriver driver) {
+        try {
+            return driver.getCapabilities().getBrowserName() + " session " + driver.getSessionId();
+        } catch (Exception ignored) {
+            return "browser session " + driver.getSessionId();
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        int teardown = teardowns.incrementAndGet();
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "driver-teardown-" + teardown + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
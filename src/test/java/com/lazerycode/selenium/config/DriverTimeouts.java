@@ -0,0 +1,41 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.util.Map;
+
+/**
+ * Tells callers which script timeout a browser is using, WebDriver has no command to read it back.
+ * <p>
+ * Browsers started by the {@link DriverFactory} remember the timeout their session started with and every timeout
+ * set since, other drivers are assumed to use the W3C default of 30 seconds.
+ */
+public final class DriverTimeouts {
+
+    public static final long DEFAULT_SCRIPT_TIMEOUT_MILLIS = 30000;
+
+    private DriverTimeouts() {
+    }
+
+    /**
+     * @return the timeout executeScript and executeAsyncScript are subject to
+     */
+    public static long scriptTimeoutMillis(WebDriver driver) {
+        SessionRecorder recorder = SessionRecorder.of(driver);
+
+        return null == recorder ? DEFAULT_SCRIPT_TIMEOUT_MILLIS : recorder.getScriptTimeoutMillis();
+    }
+
+    /**
+     * @return the script timeout a new session reported in its "timeouts" capability, or the W3C default
+     */
+    static long scriptTimeoutMillis(Capabilities capabilities) {
+        Object timeouts = capabilities.getCapability("timeouts");
+        if (timeouts instanceof Map && ((Map<?, ?>) timeouts).get("script") instanceof Number) {
+            return ((Number) ((Map<?, ?>) timeouts).get("script")).longValue();
+        }
+
+        return DEFAULT_SCRIPT_TIMEOUT_MILLIS;
+    }
+}
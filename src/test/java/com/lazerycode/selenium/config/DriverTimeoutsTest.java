@@ -0,0 +1,98 @@
+package com.lazerycode.selenium.config;
+
+import com.lazerycode.selenium.utils.DomWait;
+import org.openqa.selenium.By;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DriverTimeoutsTest {
+
+    @Test
+    public void theScriptTimeoutTheSessionStartedWithIsKnown() {
+        StubBrowser browser = new StubBrowser(5000L);
+
+        assertThat(DriverTimeouts.scriptTimeoutMillis(new TimedWebDriver(DriverType.CHROME, browser, new ImmutableCapabilities()))).isEqualTo(5000);
+        assertThat(DriverTimeouts.scriptTimeoutMillis(new TimedWebDriver(DriverType.CHROME, new StubBrowser(null), new ImmutableCapabilities())))
+                .isEqualTo(DriverTimeouts.DEFAULT_SCRIPT_TIMEOUT_MILLIS);
+        assertThat(DriverTimeouts.scriptTimeoutMillis(new RemoteWebDriver(browser, new ImmutableCapabilities())))
+                .isEqualTo(DriverTimeouts.DEFAULT_SCRIPT_TIMEOUT_MILLIS);
+    }
+
+    @Test
+    public void scriptTimeoutsSetByTheTestAreTracked() {
+        TimedWebDriver driver = new TimedWebDriver(DriverType.CHROME, new StubBrowser(null), new ImmutableCapabilities());
+
+        driver.manage().timeouts().setScriptTimeout(3, TimeUnit.SECONDS);
+
+        assertThat(DriverTimeouts.scriptTimeoutMillis(driver)).isEqualTo(3000);
+    }
+
+    @Test
+    public void domWaitsRaiseAShortScriptTimeoutForTheWaitAndPutItBack() {
+        StubBrowser browser = new StubBrowser(null);
+        TimedWebDriver driver = new TimedWebDriver(DriverType.CHROME, browser, new ImmutableCapabilities());
+        driver.manage().timeouts().setScriptTimeout(5, TimeUnit.SECONDS);
+
+        DomWait.untilPresent(driver, By.id("banner"), 5);
+
+        assertThat(browser.scriptTimeouts).containsExactly(5000L, 30000L, 5000L);
+        assertThat(DriverTimeouts.scriptTimeoutMillis(driver)).isEqualTo(5000);
+    }
+
+    @Test
+    public void domWaitsLeaveALongEnoughScriptTimeoutAlone() {
+        StubBrowser browser = new StubBrowser(null);
+        TimedWebDriver driver = new TimedWebDriver(DriverType.CHROME, browser, new ImmutableCapabilities());
+
+        DomWait.untilPresent(driver, By.id("banner"), 5);
+
+        assertThat(browser.scriptTimeouts).isEmpty();
+    }
+
+    /**
+     * A browser that finds every element straight away and remembers the script timeouts it is sent.
+     */
+    private static class StubBrowser implements CommandExecutor {
+        private final Long sessionScriptTimeout;
+        private final List<Object> scriptTimeouts = new ArrayList<>();
+
+        private StubBrowser(Long sessionScriptTimeout) {
+            this.sessionScriptTimeout = sessionScriptTimeout;
+        }
+
+        @Override
+        public Response execute(Command command) {
+            Response response = new Response();
+            response.setSessionId("session");
+            response.setStatus(0);
+            if (DriverCommand.NEW_SESSION.equals(command.getName())) {
+                Map<String, Object> capabilities = new HashMap<>();
+                capabilities.put("browserName", "fake");
+                if (null != sessionScriptTimeout) {
+                    capabilities.put("timeouts", Collections.singletonMap("script", sessionScriptTimeout));
+                }
+                response.setValue(capabilities);
+            } else if (DriverCommand.SET_TIMEOUT.equals(command.getName()) && command.getParameters().containsKey("script")) {
+                scriptTimeouts.add(command.getParameters().get("script"));
+            } else if (DriverCommand.EXECUTE_ASYNC_SCRIPT.equals(command.getName())) {
+                response.setValue(Collections.singletonMap("ELEMENT", "banner"));
+            }
+
+            return response;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.lazerycode.selenium.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent in each phase of a browser's life, collected per DriverType across the whole suite.
+ * <p>
+ * Profile creation is part of building the capabilities, so a PROFILE sample is also included in the CAPABILITIES
+ * sample for the same session.  SERVICE_START is only recorded when a driver service is actually started, sessions
+ * that reuse a running service do not pay for it.  At the end of the suite the samples are summarised as
+ * percentiles and written as JSON to -DtimingReport (target/driver-timings.json by default).
+ */
+public class DriverTimings {
+
+    public enum Phase {
+        CAPABILITIES,
+        PROFILE,
+        SERVICE_START,
+        NEW_SESSION,
+        FIRST_NAVIGATION,
+        SESSION_RESET,
+        QUIT
+    }
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+    private static final Map<DriverType, Map<Phase, Samples>> samples = new EnumMap<>(DriverType.class);
+
+    /**
+     * Record the time elapsed since startNanos, a value previously returned by System.nanoTime().
+     */
+    public static void record(DriverType driverType, Phase phase, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Samples phaseSamples;
+        synchronized (samples) {
+            phaseSamples = samples.computeIfAbsent(driverType, type -> new EnumMap<>(Phase.class))
+                    .computeIfAbsent(phase, unused -> new Samples());
+        }
+        phaseSamples.add(elapsedNanos);
+    }
+
+    /**
+     * @return browser -&gt; phase -&gt; statistics in milliseconds, for every phase that has been recorded.
+     */
+    public static Map<String, Map<String, Map<String, Object>>> summary() {
+        Map<String, Map<String, Map<String, Object>>> summary = new LinkedHashMap<>();
+        synchronized (samples) {
+            for (Map.Entry<DriverType, Map<Phase, Samples>> browser : samples.entrySet()) {
+                Map<String, Map<String, Object>> phases = new LinkedHashMap<>();
+                for (Map.Entry<Phase, Samples> phase : browser.getValue().entrySet()) {
+                    phases.put(phase.getKey().name(), phase.getValue().statistics());
+                }
+                summary.put(browser.getKey().toString(), phases);
+            }
+        }
+
+        return summary;
+    }
+
+    /**
+     * Write the summary as JSON, nothing is written if no browser was started.
+     */
+    public static void writeReport(File report) throws IOException {
+        Map<String, Map<String, Map<String, Object>>> summary = summary();
+        if (summary.isEmpty()) {
+            return;
+        }
+        JsonReport.write(report, summary);
+        for (Map.Entry<String, Map<String, Map<String, Object>>> browser : summary.entrySet()) {
+            for (Map.Entry<String, Map<String, Object>> phase : browser.getValue().entrySet()) {
+                Map<String, Object> statistics = phase.getValue();
+                System.out.println(String.format("%s %s: count=%s p50=%sms p95=%sms max=%sms", browser.getKey(), phase.getKey(),
+                        statistics.get("count"), statistics.get("p50"), statistics.get("p95"), statistics.get("max")));
+            }
+        }
+        System.out.println("Driver timings written to " + report.getPath());
+    }
+
+    private static class Samples {
+        private long[] nanos = new long[16];
+        private int count;
+
+        synchronized void add(long elapsedNanos) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = elapsedNanos;
+        }
+
+        synchronized Map<String, Object> statistics() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long sample : sorted) {
+                total += sample;
+            }
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("count", count);
+            statistics.put("min", millis(sorted[0]));
+            for (double percentile : PERCENTILES) {
+                int rank = (int) Math.ceil(percentile / 100 * count);
+                statistics.put("p" + (int) percentile, millis(sorted[Math.max(0, rank - 1)]));
+            }
+            statistics.put("max", millis(sorted[count - 1]));
+            statistics.put("mean", millis(total / count));
+            statistics.put("total", millis(total));
+
+            return statistics;
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1) * 10) / 10.0;
+        }
+    }
+}
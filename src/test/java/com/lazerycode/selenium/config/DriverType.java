@@ -1,69 +1,164 @@
 package com.lazerycode.selenium.config;
 
-import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
 import org.openqa.selenium.edge.EdgeOptions;
-import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
 import org.openqa.selenium.firefox.FirefoxProfile;
+import org.openqa.selenium.firefox.GeckoDriverService;
 import org.openqa.selenium.ie.InternetExplorerDriver;
+import org.openqa.selenium.ie.InternetExplorerDriverService;
 import org.openqa.selenium.ie.InternetExplorerOptions;
-import org.openqa.selenium.opera.OperaDriver;
+import org.openqa.selenium.opera.OperaDriverService;
 import org.openqa.selenium.opera.OperaOptions;
 import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.RemoteWebDriver;
-import org.openqa.selenium.safari.SafariDriver;
+import org.openqa.selenium.remote.service.DriverService;
+import org.openqa.selenium.safari.SafariDriverService;
 import org.openqa.selenium.safari.SafariOptions;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 
+import static com.lazerycode.selenium.config.DriverTimings.Phase.CAPABILITIES;
+import static com.lazerycode.selenium.config.DriverTimings.Phase.PROFILE;
+
 public enum DriverType implements DriverSetup {
 
     FIREFOX {
-        public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities) {
+        public MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig) {
             FirefoxOptions options = new FirefoxOptions();
             options.merge(capabilities);
-            options.setHeadless(HEADLESS);
+            options.setHeadless(runConfig.isHeadless());
             
+            if (ProfileTemplates.isEnabled(runConfig)) {
+                return options;
+            }
+
+            long profileStart = System.nanoTime();
             FirefoxProfile fp = new FirefoxProfile();
-            String locale = System.getProperty("language");
+            String locale = runConfig.getLocale();
 			if(locale != null){
 				fp.setPreference("intl.accept_languages", locale);
 			}
             options.setProfile(fp);
+            DriverTimings.record(this, PROFILE, profileStart);
+
+            return options;
+        }
+
+        @Override
+        public void applyLeanMode(MutableCapabilities options) {
+            FirefoxOptions firefoxOptions = (FirefoxOptions) options;
+            firefoxOptions.addPreference("permissions.default.image", 2);
+            firefoxOptions.addPreference("media.autoplay.default", 5);
+            firefoxOptions.addPreference("media.autoplay.enabled", false);
+            firefoxOptions.addPreference("gfx.downloadable_fonts.enabled", false);
+            firefoxOptions.addPreference("browser.display.use_document_fonts", 0);
+            firefoxOptions.addPreference("toolkit.cosmeticAnimations.enabled", false);
+            firefoxOptions.addPreference("ui.prefersReducedMotion", 1);
+            firefoxOptions.addPreference("image.animation_mode", "none");
+            firefoxOptions.addPreference("xpinstall.enabled", false);
+            firefoxOptions.addPreference("extensions.pocket.enabled", false);
+            firefoxOptions.addPreference("network.prefetch-next", false);
+            firefoxOptions.addPreference("network.dns.disablePrefetch", true);
+            firefoxOptions.addPreference("network.http.speculative-parallel-limit", 0);
+            firefoxOptions.addPreference("browser.safebrowsing.malware.enabled", false);
+            firefoxOptions.addPreference("browser.safebrowsing.phishing.enabled", false);
+            firefoxOptions.addPreference("app.update.enabled", false);
+            firefoxOptions.addPreference("datareporting.healthreport.uploadEnabled", false);
+            firefoxOptions.addPreference("toolkit.telemetry.enabled", false);
+            firefoxOptions.addPreference("browser.newtabpage.enabled", false);
+        }
+
+        @Override
+        public File applyProfileTemplate(MutableCapabilities options, RunConfig runConfig) throws IOException {
+            File profile = ProfileTemplates.newFirefoxProfile(runConfig);
+            ((FirefoxOptions) options).addArguments("-profile", profile.getAbsolutePath());
+
+            return profile;
+        }
 
-            return new FirefoxDriver(options);
+        public DriverService createDriverService() {
+            return GeckoDriverService.createDefaultService();
         }
     },
     CHROME {
-        public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities) {
+        public MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig) {
             HashMap<String, Object> chromePreferences = new HashMap<>();
             chromePreferences.put("profile.password_manager_enabled", false);
 
             ChromeOptions options = new ChromeOptions();
             options.merge(capabilities);
-            options.setHeadless(HEADLESS);
+            options.setHeadless(runConfig.isHeadless());
             options.addArguments("--no-default-browser-check");
             options.setExperimentalOption("prefs", chromePreferences);
             
-            String locale = System.getProperty("language");
+            String locale = runConfig.getLocale();
     		if(locale !=null){
     			options.addArguments("--lang=" + locale);
     		}
-            return new ChromeDriver(options);
+            return options;
+        }
+
+        public DriverService createDriverService() {
+            return ChromeDriverService.createDefaultService();
+        }
+
+        @Override
+        public void applyLeanMode(MutableCapabilities options) {
+            ((ChromeOptions) options).addArguments(
+                    "--blink-settings=imagesEnabled=false",
+                    "--autoplay-policy=user-gesture-required",
+                    "--mute-audio",
+                    "--disable-remote-fonts",
+                    "--disable-extensions",
+                    "--disable-component-extensions-with-background-pages",
+                    "--disable-background-networking",
+                    "--disable-component-update",
+                    "--disable-default-apps",
+                    "--disable-sync",
+                    "--disable-translate",
+                    "--no-pings",
+                    "--metrics-recording-only"
+            );
+        }
+
+        @Override
+        public File applyProfileTemplate(MutableCapabilities options, RunConfig runConfig) throws IOException {
+            File profile = ProfileTemplates.newChromeProfile(runConfig);
+            ((ChromeOptions) options).addArguments("--user-data-dir=" + profile.getAbsolutePath());
+            File cache = ProfileTemplates.sharedCache(runConfig, "chrome");
+            if (null != cache) {
+                ((ChromeOptions) options).addArguments("--disk-cache-dir=" + cache.getAbsolutePath());
+            }
+
+            return profile;
+        }
+
+        @Override
+        public boolean supportsConcurrentSessions() {
+            return true;
         }
     },
     IE {
-        public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities) {
+        public MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig) {
             InternetExplorerOptions options = new InternetExplorerOptions();
             options.merge(capabilities);
             options.setCapability(CapabilityType.ForSeleniumServer.ENSURING_CLEAN_SESSION, true);
             options.setCapability(InternetExplorerDriver.ENABLE_PERSISTENT_HOVERING, true);
             options.setCapability(InternetExplorerDriver.REQUIRE_WINDOW_FOCUS, true);
 
-            return new InternetExplorerDriver(options);
+            return options;
+        }
+
+        public DriverService createDriverService() {
+            return InternetExplorerDriverService.createDefaultService();
         }
 
         @Override
@@ -72,31 +167,95 @@ public enum DriverType implements DriverSetup {
         }
     },
     EDGE {
-        public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities) {
+        public MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig) {
             EdgeOptions options = new EdgeOptions();
             options.merge(capabilities);
 
-            return new EdgeDriver(options);
+            return options;
+        }
+
+        public DriverService createDriverService() {
+            return EdgeDriverService.createDefaultService();
         }
     },
     SAFARI {
-        public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities) {
+        public MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig) {
             SafariOptions options = new SafariOptions();
             options.merge(capabilities);
 
-            return new SafariDriver(options);
+            return options;
+        }
+
+        public DriverService createDriverService() {
+            return SafariDriverService.createDefaultService();
         }
     },
     OPERA {
-        public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities) {
+        public MutableCapabilities getOptions(DesiredCapabilities capabilities, RunConfig runConfig) {
             OperaOptions options = new OperaOptions();
             options.merge(capabilities);
 
-            return new OperaDriver(options);
+            return options;
+        }
+
+        public DriverService createDriverService() {
+            return OperaDriverService.createDefaultService();
+        }
+
+        @Override
+        public boolean supportsConcurrentSessions() {
+            return true;
         }
     };
 
-    public final static boolean HEADLESS = Boolean.getBoolean("headless");
+    /**
+     * Start a local browser on a driver service from {@link DriverServicePool}, so that the driver binary is not
+     * spawned again for every session.
+     */
+    public RemoteWebDriver getWebDriverObject(DesiredCapabilities capabilities, RunConfig runConfig) {
+        long start = System.nanoTime();
+        MutableCapabilities options = getOptions(capabilities, runConfig);
+        if (runConfig.isLeanMode()) {
+            applyLeanMode(options);
+        }
+        File sessionProfile = null;
+        if (ProfileTemplates.isEnabled(runConfig)) {
+            long profileStart = System.nanoTime();
+            try {
+                sessionProfile = applyProfileTemplate(options, runConfig);
+            } catch (IOException unableToCopyTemplate) {
+                throw new WebDriverException("Unable to create a " + this + " profile from its template", unableToCopyTemplate);
+            }
+            DriverTimings.record(this, PROFILE, profileStart);
+        }
+        DriverTimings.record(this, CAPABILITIES, start);
+
+        return LocalSession.start(this, DriverServicePool.forDriverType(this), options, sessionProfile);
+    }
+
+    /**
+     * Configure the options for lean mode, see {@link RunConfig#isLeanMode()}.  Browsers without a lean configuration
+     * are left as they are.
+     */
+    public void applyLeanMode(MutableCapabilities options) {
+    }
+
+    /**
+     * Point the options at a new copy of this browser's profile template, see {@link ProfileTemplates}.
+     *
+     * @return the session's profile directory, deleted when the session quits, or null if this browser has no template
+     */
+    public File applyProfileTemplate(MutableCapabilities options, RunConfig runConfig) throws IOException {
+        return null;
+    }
+
+    /**
+     * @return true if one driver service can run several sessions at once, geckodriver, IEDriverServer, safaridriver
+     * and the legacy Edge driver only run one session at a time.
+     */
+    public boolean supportsConcurrentSessions() {
+        return false;
+    }
 
     @Override
     public String toString() {
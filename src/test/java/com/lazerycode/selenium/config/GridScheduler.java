@@ -0,0 +1,275 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.lazerycode.selenium.config.DriverTimings.Phase.NEW_SESSION;
+import static com.lazerycode.selenium.config.RunConfig.*;
+
+/**
+ * Spread remote sessions over one or more Selenium Grids.
+ * <p>
+ * -DgridURL takes a comma separated list of grids and -DgridMaxSessions the number of sessions each of them may run
+ * at once (one number for all of them, a list in the same order, or 0 for no limit).  A new session goes to the grid
+ * with a free slot that is running the fewest sessions, and when that is a tie, to the one with the most free slots.
+ * When every grid is full the request waits for a slot, for up to
+ * -DgridQueueTimeout seconds, instead of failing.  A grid that fails to create a session is backed off for a while,
+ * doubling with every consecutive failure, and the session is retried on another grid up to -DgridSessionRetries
+ * times.
+ * <p>
+ * Sessions are started by a {@link SessionFactory}, tests can supply their own to run the scheduler against stand-in
+ * endpoints.
+ */
+public class GridScheduler {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAXIMUM_BACKOFF_MILLIS = 60000;
+    private static final Map<String, GridScheduler> schedulers = new ConcurrentHashMap<>();
+
+    public interface SessionFactory {
+        /**
+         * Start a session on a grid.
+         *
+         * @param onQuit must be run once the session has quit, to free its slot
+         */
+        RemoteWebDriver start(DriverType driverType, URL gridURL, Capabilities capabilities, Runnable onQuit);
+    }
+
+    private final List<Grid> grids = new ArrayList<>();
+    private final long queueTimeoutMillis;
+    private final int retries;
+    private final SessionFactory sessionFactory;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotFreed = lock.newCondition();
+    private int queued;
+
+    public GridScheduler(List<URL> gridURLs, List<Integer> maximumSessions, long queueTimeoutMillis, int retries, SessionFactory sessionFactory) {
+        for (int i = 0; i < gridURLs.size(); i++) {
+            int limit = maximumSessions.isEmpty() ? 0 : maximumSessions.get(Math.min(i, maximumSessions.size() - 1));
+            grids.add(new Grid(gridURLs.get(i), limit));
+        }
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retries = retries;
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * @return the scheduler shared by every thread that uses the same grid settings
+     */
+    public static GridScheduler forRunConfig(RunConfig runConfig) throws MalformedURLException {
+        String gridURLs = runConfig.get(GRID_URL, "");
+        String maximumSessions = runConfig.get(GRID_MAX_SESSIONS, "0");
+        String key = gridURLs + "|" + maximumSessions + "|" + runConfig.get(GRID_QUEUE_TIMEOUT) + "|" + runConfig.get(GRID_SESSION_RETRIES);
+        GridScheduler scheduler = schedulers.get(key);
+        if (null == scheduler) {
+            List<URL> urls = new ArrayList<>();
+            for (String gridURL : gridURLs.split(",")) {
+                if (!gridURL.trim().isEmpty()) {
+                    urls.add(new URL(gridURL.trim()));
+                }
+            }
+            if (urls.isEmpty()) {
+                throw new MalformedURLException("No Selenium Grid URL specified, set -DseleniumGridURL");
+            }
+            List<Integer> limits = new ArrayList<>();
+            for (String limit : maximumSessions.split(",")) {
+                limits.add(Integer.parseInt(limit.trim()));
+            }
+            scheduler = new GridScheduler(urls, limits, TimeUnit.SECONDS.toMillis(runConfig.getInt(GRID_QUEUE_TIMEOUT, 600)),
+                    runConfig.getInt(GRID_SESSION_RETRIES, 3), GridWebDriver::new);
+            GridScheduler existing = schedulers.putIfAbsent(key, scheduler);
+            scheduler = null == existing ? scheduler : existing;
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Start a session on the least loaded grid, waiting for a free slot and retrying on other grids as needed.
+     */
+    public RemoteWebDriver newSession(DriverType driverType, Capabilities capabilities) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        Set<Grid> failedGrids = new HashSet<>();
+        RuntimeException lastFailure = null;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            Grid grid = reserveSlot(failedGrids, deadline);
+            long start = System.nanoTime();
+            try {
+                RemoteWebDriver driver = sessionFactory.start(driverType, grid.url, capabilities, () -> releaseSlot(grid));
+                sessionStarted(grid);
+                DriverTimings.record(driverType, NEW_SESSION, start);
+                return driver;
+            } catch (RuntimeException sessionNotCreated) {
+                lastFailure = sessionNotCreated;
+                failedGrids.add(grid);
+                long backoff = sessionFailed(grid);
+                System.err.println("Unable to start a session on " + grid.url + ", backing it off for " + backoff + "ms: " + String.valueOf(sessionNotCreated.getMessage()).split("\n")[0]);
+            }
+        }
+
+        throw new WebDriverException("Unable to start a session after " + (retries + 1) + " attempts on " + grids.size() + " grid(s)", lastFailure);
+    }
+
+    public int getActiveSessionCount() {
+        lock.lock();
+        try {
+            int active = 0;
+            for (Grid grid : grids) {
+                active += grid.active;
+            }
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedRequestCount() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "GridScheduler" + grids + ", " + queued + " queued";
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Grid reserveSlot(Set<Grid> failedGrids, long deadline) {
+        lock.lock();
+        queued++;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                Grid grid = leastLoaded(failedGrids, now);
+                if (null == grid) {
+                    grid = leastLoaded(new HashSet<>(), now);
+                }
+                if (null != grid) {
+                    grid.active++;
+                    return grid;
+                }
+                long wait = deadline - now;
+                if (wait <= 0) {
+                    throw new WebDriverException("No Selenium Grid slot became free within " + queueTimeoutMillis + "ms: " + grids);
+                }
+                for (Grid backedOff : grids) {
+                    if (backedOff.availableFrom > now) {
+                        wait = Math.min(wait, backedOff.availableFrom - now);
+                    }
+                }
+                slotFreed.awaitNanos(wait);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting for a Selenium Grid slot", ex);
+        } finally {
+            queued--;
+            lock.unlock();
+        }
+    }
+
+    private Grid leastLoaded(Set<Grid> excluded, long now) {
+        Grid leastLoaded = null;
+        for (Grid grid : grids) {
+            if (!excluded.contains(grid) && grid.hasFreeSlot() && grid.availableFrom <= now
+                    && (null == leastLoaded || grid.isLessLoadedThan(leastLoaded))) {
+                leastLoaded = grid;
+            }
+        }
+
+        return leastLoaded;
+    }
+
+    private void sessionStarted(Grid grid) {
+        lock.lock();
+        try {
+            grid.consecutiveFailures = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long sessionFailed(Grid grid) {
+        lock.lock();
+        try {
+            grid.active--;
+            long backoff = Math.min(MAXIMUM_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(grid.consecutiveFailures, 16));
+            grid.consecutiveFailures++;
+            grid.availableFrom = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+            slotFreed.signalAll();
+            return backoff;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot(Grid grid) {
+        lock.lock();
+        try {
+            grid.active--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Grid {
+        private final URL url;
+        private final int maximumSessions;
+        private int active;
+        private int consecutiveFailures;
+        private long availableFrom = Long.MIN_VALUE;
+
+        private Grid(URL url, int maximumSessions) {
+            this.url = url;
+            this.maximumSessions = maximumSessions;
+        }
+
+        private boolean hasFreeSlot() {
+            return maximumSessions <= 0 || active < maximumSessions;
+        }
+
+        /**
+         * Grids are compared on the number of sessions they are running, whether they have a session limit or not.  Of
+         * two grids running as many sessions the one with more free slots is less loaded, a grid without a limit has
+         * the most.
+         */
+        private boolean isLessLoadedThan(Grid other) {
+            if (active != other.active) {
+                return active < other.active;
+            }
+
+            return freeSlots() > other.freeSlots();
+        }
+
+        private long freeSlots() {
+            return maximumSessions <= 0 ? Long.MAX_VALUE : maximumSessions - active;
+        }
+
+        @Override
+        public String toString() {
+            return url + " " + active + "/" + (maximumSessions <= 0 ? "unlimited" : maximumSessions);
+        }
+    }
+}
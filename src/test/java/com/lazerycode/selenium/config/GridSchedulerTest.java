@@ -0,0 +1,196 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.testng.annotations.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.lazerycode.selenium.config.DriverType.CHROME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GridSchedulerTest {
+
+    private static final Capabilities CAPABILITIES = new ImmutableCapabilities();
+    private static final URL FIRST_GRID = url("http://127.0.0.1:4444/wd/hub");
+    private static final URL SECOND_GRID = url("http://127.0.0.1:4445/wd/hub");
+
+    @Test
+    public void sessionsGoToTheLeastLoadedGrid() {
+        StubGrids stubGrids = new StubGrids();
+        GridScheduler scheduler = new GridScheduler(Arrays.asList(FIRST_GRID, SECOND_GRID), Collections.singletonList(0), 1000, 0, stubGrids);
+
+        for (int i = 0; i < 4; i++) {
+            scheduler.newSession(CHROME, CAPABILITIES);
+        }
+
+        assertThat(stubGrids.sessionsOn(FIRST_GRID)).isEqualTo(2);
+        assertThat(stubGrids.sessionsOn(SECOND_GRID)).isEqualTo(2);
+    }
+
+    @Test
+    public void gridsWithALimitAreComparedOnTheirSessionsAndTiesGoToTheGridWithMoreFreeSlots() {
+        StubGrids stubGrids = new StubGrids();
+        GridScheduler scheduler = new GridScheduler(Arrays.asList(FIRST_GRID, SECOND_GRID), Arrays.asList(2, 6), 1000, 0, stubGrids);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.newSession(CHROME, CAPABILITIES);
+        }
+
+        assertThat(stubGrids.attempts).containsExactly(SECOND_GRID, FIRST_GRID, SECOND_GRID, FIRST_GRID, SECOND_GRID);
+        assertThat(stubGrids.sessionsOn(FIRST_GRID)).isEqualTo(2);
+        assertThat(stubGrids.sessionsOn(SECOND_GRID)).isEqualTo(3);
+    }
+
+    @Test
+    public void gridsWithAndWithoutALimitAreComparedOnTheirSessions() {
+        StubGrids stubGrids = new StubGrids();
+        GridScheduler scheduler = new GridScheduler(Arrays.asList(FIRST_GRID, SECOND_GRID), Arrays.asList(4, 0), 1000, 0, stubGrids);
+
+        for (int i = 0; i < 6; i++) {
+            scheduler.newSession(CHROME, CAPABILITIES);
+        }
+
+        assertThat(stubGrids.attempts.get(0)).isEqualTo(SECOND_GRID);
+        assertThat(stubGrids.sessionsOn(FIRST_GRID)).isEqualTo(3);
+        assertThat(stubGrids.sessionsOn(SECOND_GRID)).isEqualTo(3);
+
+        for (int i = 0; i < 4; i++) {
+            scheduler.newSession(CHROME, CAPABILITIES);
+        }
+
+        assertThat(stubGrids.sessionsOn(FIRST_GRID)).isEqualTo(4);
+        assertThat(stubGrids.sessionsOn(SECOND_GRID)).isEqualTo(6);
+    }
+
+    @Test
+    public void noGridRunsMoreSessionsThanItsLimit() {
+        StubGrids stubGrids = new StubGrids();
+        GridScheduler scheduler = new GridScheduler(Arrays.asList(FIRST_GRID, SECOND_GRID), Arrays.asList(1, 2), 100, 0, stubGrids);
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.newSession(CHROME, CAPABILITIES);
+        }
+
+        assertThatThrownBy(() -> scheduler.newSession(CHROME, CAPABILITIES))
+                .isInstanceOf(WebDriverException.class)
+                .hasMessageContaining("No Selenium Grid slot became free");
+        assertThat(stubGrids.sessionsOn(FIRST_GRID)).isEqualTo(1);
+        assertThat(stubGrids.sessionsOn(SECOND_GRID)).isEqualTo(2);
+        assertThat(scheduler.getActiveSessionCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void requestsQueueUntilASessionQuits() throws Exception {
+        StubGrids stubGrids = new StubGrids();
+        GridScheduler scheduler = new GridScheduler(Collections.singletonList(FIRST_GRID), Collections.singletonList(1), 10000, 0, stubGrids);
+        RemoteWebDriver first = scheduler.newSession(CHROME, CAPABILITIES);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<RemoteWebDriver> second = executor.submit(() -> scheduler.newSession(CHROME, CAPABILITIES));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (0 == scheduler.getQueuedRequestCount() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(scheduler.getQueuedRequestCount()).isEqualTo(1);
+            assertThat(second.isDone()).isFalse();
+
+            stubGrids.quit(first);
+
+            assertThat(second.get(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(scheduler.getQueuedRequestCount()).isZero();
+            assertThat(scheduler.getActiveSessionCount()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aFailedSessionIsRetriedOnAnotherGridAndTheFailingGridIsBackedOff() {
+        StubGrids stubGrids = new StubGrids();
+        stubGrids.failing.add(FIRST_GRID);
+        GridScheduler scheduler = new GridScheduler(Arrays.asList(FIRST_GRID, SECOND_GRID), Collections.singletonList(0), 1000, 1, stubGrids);
+
+        scheduler.newSession(CHROME, CAPABILITIES);
+        scheduler.newSession(CHROME, CAPABILITIES);
+
+        assertThat(stubGrids.attempts).containsExactly(FIRST_GRID, SECOND_GRID, SECOND_GRID);
+        assertThat(stubGrids.sessionsOn(SECOND_GRID)).isEqualTo(2);
+        assertThat(scheduler.getActiveSessionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void retriesAreLimited() {
+        StubGrids stubGrids = new StubGrids();
+        stubGrids.failing.addAll(Arrays.asList(FIRST_GRID, SECOND_GRID));
+        GridScheduler scheduler = new GridScheduler(Arrays.asList(FIRST_GRID, SECOND_GRID), Collections.singletonList(0), 100, 1, stubGrids);
+
+        assertThatThrownBy(() -> scheduler.newSession(CHROME, CAPABILITIES))
+                .isInstanceOf(WebDriverException.class)
+                .hasMessageContaining("after 2 attempts");
+        assertThat(stubGrids.attempts).containsExactlyInAnyOrder(FIRST_GRID, SECOND_GRID);
+        assertThat(scheduler.getActiveSessionCount()).isZero();
+    }
+
+    private static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    /**
+     * Stand-in grids that hand out sessions without a browser, or refuse them if they are failing.
+     */
+    private static class StubGrids implements GridScheduler.SessionFactory {
+        private final Set<URL> failing = new HashSet<>();
+        private final List<URL> attempts = new CopyOnWriteArrayList<>();
+        private final Map<RemoteWebDriver, URL> sessions = new ConcurrentHashMap<>();
+        private final Map<RemoteWebDriver, Runnable> quitActions = new ConcurrentHashMap<>();
+
+        @Override
+        public RemoteWebDriver start(DriverType driverType, URL gridURL, Capabilities capabilities, Runnable onQuit) {
+            attempts.add(gridURL);
+            if (failing.contains(gridURL)) {
+                throw new SessionNotCreatedException("Grid is down");
+            }
+            RemoteWebDriver driver = new RemoteWebDriver() {
+            };
+            sessions.put(driver, gridURL);
+            quitActions.put(driver, onQuit);
+
+            return driver;
+        }
+
+        private void quit(RemoteWebDriver driver) {
+            sessions.remove(driver);
+            quitActions.remove(driver).run();
+        }
+
+        private int sessionsOn(URL gridURL) {
+            List<URL> grids = new ArrayList<>(sessions.values());
+            grids.retainAll(Collections.singleton(gridURL));
+
+            return grids.size();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A browser running on a Selenium Grid that hands its slot back to the {@link GridScheduler} when it quits.
+ */
+class GridWebDriver extends TimedWebDriver {
+
+    private final URL gridURL;
+    private final Runnable onQuit;
+    private final AtomicBoolean slotReleased = new AtomicBoolean();
+
+    GridWebDriver(DriverType driverType, URL gridURL, Capabilities capabilities, Runnable onQuit) {
+        super(driverType, new HttpCommandExecutor(gridURL), capabilities);
+        this.gridURL = gridURL;
+        this.onQuit = onQuit;
+    }
+
+    URL getGridURL() {
+        return gridURL;
+    }
+
+    @Override
+    public void quit() {
+        try {
+            super.quit();
+        } finally {
+            if (slotReleased.compareAndSet(false, true)) {
+                onQuit.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the JSON reports produced at the end of a run, and other JSON files such as browser preferences, creating the
+ * directory they go in if necessary.
+ */
+public final class JsonReport {
+
+    private JsonReport() {
+    }
+
+    /**
+     * Write the maps, lists, strings and numbers in json to the file as UTF-8, replacing anything already there.
+     */
+    public static void write(File file, Object json) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(new Json().toJson(json));
+        }
+    }
+}
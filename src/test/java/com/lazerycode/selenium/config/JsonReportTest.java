@@ -0,0 +1,46 @@
+package com.lazerycode.selenium.config;
+
+import org.apache.commons.io.FileUtils;
+import org.openqa.selenium.json.Json;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonReportTest {
+
+    @Test
+    public void theReportIsWrittenIntoDirectoriesThatDoNotExistYet() throws IOException {
+        File directory = Files.createTempDirectory("json-report").toFile();
+        try {
+            File report = new File(directory, "reports/nested/timings.json");
+
+            JsonReport.write(report, Collections.singletonMap("ünïcode", 42));
+
+            Map<String, Object> json = new Json().toType(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8), Json.MAP_TYPE);
+            assertThat(json).containsEntry("ünïcode", 42L);
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void aPreviousReportIsReplaced() throws IOException {
+        File report = File.createTempFile("json-report", ".json");
+        try {
+            JsonReport.write(report, Collections.singletonList("a much longer report than the one that replaces it"));
+            JsonReport.write(report, Collections.singletonList("short"));
+
+            assertThat(new Json().<Object>toType(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8), Json.OBJECT_TYPE))
+                    .isEqualTo(Collections.singletonList("short"));
+        } finally {
+            report.delete();
+        }
+    }
+}
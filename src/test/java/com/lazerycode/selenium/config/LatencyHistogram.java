@@ -0,0 +1,115 @@
+package com.lazerycode.selenium.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, thread safe latency histogram that does not allocate when recording.
+ * <p>
+ * Latencies are counted in microsecond buckets: one bucket per microsecond below 8µs, then four buckets per power of
+ * two up to about 35 minutes, so a reported percentile is within 12.5% of the true value.  Recording is a few
+ * atomic increments, which makes it cheap enough to run on every WebDriver command of every build.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+    private static final double[] PERCENTILES = {50, 90, 95, 99};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long elapsedNanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        buckets.incrementAndGet(bucketFor(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // Another thread recorded a new maximum, try again
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the latency below which the supplied percentage of samples fall, in microseconds
+     */
+    public long percentileMicros(double percentile) {
+        long samples = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            samples += snapshot[i];
+        }
+        if (0 == samples) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * samples));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(maxMicros.get(), midpointOf(i));
+            }
+        }
+
+        return maxMicros.get();
+    }
+
+    /**
+     * @return count, mean, p50, p90, p95, p99 and max, in milliseconds
+     */
+    public Map<String, Object> statistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        long samples = count.get();
+        statistics.put("count", samples);
+        statistics.put("mean", 0 == samples ? 0 : millis(totalMicros.get() / samples));
+        for (double percentile : PERCENTILES) {
+            statistics.put("p" + (int) percentile, millis(percentileMicros(percentile)));
+        }
+        statistics.put("max", millis(maxMicros.get()));
+        statistics.put("total", millis(totalMicros.get()));
+
+        return statistics;
+    }
+
+    static int bucketFor(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long midpointOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (SUB_BUCKETS + subBucket) * width;
+
+        return lowerBound + width / 2;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,77 @@
+package com.lazerycode.selenium.config;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shortLatenciesGetABucketPerMicrosecond() {
+        for (int micros = 0; micros < 8; micros++) {
+            assertThat(LatencyHistogram.bucketFor(micros)).isEqualTo(micros);
+            assertThat(LatencyHistogram.midpointOf(micros)).isEqualTo(micros);
+        }
+    }
+
+    @Test
+    public void longerLatenciesGetFourBucketsPerPowerOfTwo() {
+        assertThat(LatencyHistogram.bucketFor(8)).isEqualTo(8);
+        assertThat(LatencyHistogram.bucketFor(9)).isEqualTo(8);
+        assertThat(LatencyHistogram.bucketFor(10)).isEqualTo(9);
+        assertThat(LatencyHistogram.bucketFor(15)).isEqualTo(11);
+        assertThat(LatencyHistogram.bucketFor(16)).isEqualTo(12);
+        assertThat(LatencyHistogram.bucketFor(31)).isEqualTo(15);
+        assertThat(LatencyHistogram.bucketFor(32)).isEqualTo(16);
+    }
+
+    @Test
+    public void bucketsAreOrderedAndTheirMidpointsAreWithinAnEighth() {
+        int previousBucket = 0;
+        for (long micros = 1; micros < 1L << 24; micros += 1 + micros / 64) {
+            int bucket = LatencyHistogram.bucketFor(micros);
+            assertThat(bucket).isGreaterThanOrEqualTo(previousBucket);
+            assertThat(LatencyHistogram.midpointOf(bucket)).isCloseTo(micros, within(micros / 8));
+            assertThat(LatencyHistogram.bucketFor(LatencyHistogram.midpointOf(bucket))).isEqualTo(bucket);
+            previousBucket = bucket;
+        }
+    }
+
+    @Test
+    public void latenciesBeyondTheRangeShareTheLastBucket() {
+        assertThat(LatencyHistogram.bucketFor(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.bucketFor(1L << 40));
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketResolution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.percentileMicros(50)).isCloseTo(50000L, within(50000L / 8));
+        assertThat(histogram.percentileMicros(90)).isCloseTo(90000L, within(90000L / 8));
+        assertThat(histogram.percentileMicros(99)).isCloseTo(99000L, within(99000L / 8));
+    }
+
+    @Test
+    public void percentilesNeverExceedTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 900µs falls in the 896-1023µs bucket, whose midpoint is 960µs
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(900));
+
+        assertThat(histogram.percentileMicros(99)).isEqualTo(900);
+    }
+
+    @Test
+    public void anEmptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.percentileMicros(50)).isZero();
+        assertThat(histogram.statistics()).containsEntry("count", 0L).containsEntry("mean", 0.0);
+    }
+}
@@ -0,0 +1,539 @@
+package com.lazerycode.selenium.config;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.lazerycode.selenium.utils.ProcessTree;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.ie.InternetExplorerDriver;
+import org.openqa.selenium.ie.InternetExplorerDriverService;
+import org.openqa.selenium.ie.InternetExplorerOptions;
+import org.openqa.selenium.opera.OperaDriver;
+import org.openqa.selenium.opera.OperaDriverService;
+import org.openqa.selenium.opera.OperaOptions;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.service.DriverService;
+import org.openqa.selenium.safari.SafariDriver;
+import org.openqa.selenium.safari.SafariDriverService;
+import org.openqa.selenium.safari.SafariOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.lazerycode.selenium.config.DriverTimings.Phase.NEW_SESSION;
+
+/**
+ * A browser driven through a driver service (geckodriver, chromedriver etc.) running on this machine.
+ * <p>
+ * The service is leased from a {@link DriverServicePool} and handed back when the session quits.  Holding on to the
+ * service means that a browser that will not quit can be killed, along with the driver service if nothing else is
+ * using it.
+ * <p>
+ * The browser itself is the browser's own driver class (ChromeDriver, FirefoxDriver etc.), so its HTML5 interfaces and
+ * the methods that only exist on that class keep working and it can be cast to it.  Those classes start their service
+ * when the session starts and stop it when it quits, so they are given a view of the leased service that leaves
+ * starting and stopping it to the pool.  InternetExplorerDriverService cannot be subclassed, an Internet Explorer
+ * session stops its service when it quits and the pool starts a new one for the next session.
+ */
+class LocalSession {
+
+    /**
+     * A local browser, see {@link LocalSession}.
+     */
+    interface Driver extends SessionRecorder.Recorded {
+        LocalSession getLocalSession();
+    }
+
+    private static final String FIREFOX_PROCESS_ID = "moz:processID";
+    private static final String CHROME_USER_DATA_DIR = "userDataDir";
+    private static final File POOLED_EXECUTABLE = new File("pooled-driver-service");
+
+    private final DriverType driverType;
+    private final DriverServicePool driverServicePool;
+    private final DriverService driverService;
+    private final File sessionProfile;
+    private volatile RemoteWebDriver driver;
+
+    private LocalSession(DriverType driverType, DriverServicePool driverServicePool, DriverService driverService, File sessionProfile) {
+        this.driverType = driverType;
+        this.driverServicePool = driverServicePool;
+        this.driverService = driverService;
+        this.sessionProfile = sessionProfile;
+    }
+
+    /**
+     * @param capabilities   the browser's options, e.g. ChromeOptions for Chrome
+     * @param sessionProfile a profile directory that belongs to this session alone and is deleted when it quits, or null
+     */
+    static RemoteWebDriver start(DriverType driverType, DriverServicePool driverServicePool, Capabilities capabilities, File sessionProfile) {
+        LocalSession session = new LocalSession(driverType, driverServicePool, driverServicePool.lease(), sessionProfile);
+        try {
+            long start = System.nanoTime();
+            session.driver = session.newDriver(capabilities);
+            DriverTimings.record(driverType, NEW_SESSION, start);
+
+            return session.driver;
+        } catch (RuntimeException unableToStartSession) {
+            driverServicePool.release(session.driverService, false);
+            ProfileTemplates.deleteSessionProfile(sessionProfile);
+            throw unableToStartSession;
+        }
+    }
+
+    /**
+     * @return the driver's session, or null if it is not a local browser
+     */
+    static LocalSession of(WebDriver driver) {
+        return driver instanceof Driver ? ((Driver) driver).getLocalSession() : null;
+    }
+
+    private RemoteWebDriver newDriver(Capabilities capabilities) {
+        switch (driverType) {
+            case FIREFOX:
+                return new Firefox(this, (FirefoxOptions) capabilities);
+            case CHROME:
+                return new Chrome(this, (ChromeOptions) capabilities);
+            case IE:
+                return new InternetExplorer(this, (InternetExplorerOptions) capabilities);
+            case EDGE:
+                return new Edge(this, (EdgeOptions) capabilities);
+            case SAFARI:
+                return new Safari(this, (SafariOptions) capabilities);
+            case OPERA:
+                return new Opera(this, (OperaOptions) capabilities);
+            default:
+                throw new WebDriverException("Unable to start a local " + driverType + " session");
+        }
+    }
+
+    DriverType getDriverType() {
+        return driverType;
+    }
+
+    RemoteWebDriver getDriver() {
+        return driver;
+    }
+
+    DriverService getDriverService() {
+        return driverService;
+    }
+
+    /**
+     * Quit the browser and hand the service back to the pool.
+     *
+     * @param quit the driver's own quit
+     */
+    void quit(Runnable quit) {
+        boolean quitCleanly = false;
+        try {
+            quit.run();
+            quitCleanly = true;
+        } finally {
+            driverServicePool.release(driverService, quitCleanly);
+            ProfileTemplates.deleteSessionProfile(sessionProfile);
+        }
+    }
+
+    /**
+     * Kill the browser without talking to it, used when quit() does not return in time.  A service that is not
+     * shared with other sessions is killed along with everything it started.
+     */
+    void forceStop() {
+        for (String argument : getProcessArguments()) {
+            ProcessTree.killCommandLineArgument(argument);
+        }
+        Long browserProcessId = getBrowserProcessId();
+        if (null != browserProcessId) {
+            ProcessTree.kill(browserProcessId);
+        }
+        if (!driverServicePool.isShared()) {
+            driverServicePool.discard(driverService);
+            try {
+                driverService.stop();
+            } catch (Exception ignored) {
+                System.err.println("Unable to stop driver service at " + driverService.getUrl() + ", it has probably been killed already...");
+            }
+        }
+        ProfileTemplates.deleteSessionProfile(sessionProfile);
+    }
+
+    /**
+     * @return command line arguments that only the processes belonging to this session were started with: the driver
+     * service port if the service is not shared and Chrome's user data directory.
+     */
+    List<String> getProcessArguments() {
+        List<String> arguments = new ArrayList<>();
+        if (!driverServicePool.isShared()) {
+            arguments.add("--port=" + driverService.getUrl().getPort());
+        }
+        Object chromeCapabilities = driver.getCapabilities().getCapability("chrome");
+        if (chromeCapabilities instanceof Map && ((Map<?, ?>) chromeCapabilities).get(CHROME_USER_DATA_DIR) != null) {
+            arguments.add("--user-data-dir=" + ((Map<?, ?>) chromeCapabilities).get(CHROME_USER_DATA_DIR));
+        }
+
+        return arguments;
+    }
+
+    /**
+     * @return the browser's process id if the driver reports it (geckodriver does), otherwise null.
+     */
+    Long getBrowserProcessId() {
+        Object browserProcessId = driver.getCapabilities().getCapability(FIREFOX_PROCESS_ID);
+
+        return browserProcessId instanceof Number ? ((Number) browserProcessId).longValue() : null;
+    }
+
+    /**
+     * @return the leased service as the driver class sees it: running for as long as the leased service is, but
+     * neither started nor stopped by the session.
+     */
+    static ChromeDriverService chromeService(DriverService leased) {
+        try {
+            return new ChromeDriverService(POOLED_EXECUTABLE, leased.getUrl().getPort(), ImmutableList.of(), ImmutableMap.of()) {
+                @Override
+                public void start() {
+                }
+
+                @Override
+                public void stop() {
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return leased.isRunning();
+                }
+            };
+        } catch (IOException unableToCreateView) {
+            throw new WebDriverException(unableToCreateView);
+        }
+    }
+
+    /**
+     * @see #chromeService(DriverService)
+     */
+    static GeckoDriverService geckoService(DriverService leased) {
+        try {
+            return new GeckoDriverService(POOLED_EXECUTABLE, leased.getUrl().getPort(), ImmutableList.of(), ImmutableMap.of()) {
+                @Override
+                public void start() {
+                }
+
+                @Override
+                public void stop() {
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return leased.isRunning();
+                }
+            };
+        } catch (IOException unableToCreateView) {
+            throw new WebDriverException(unableToCreateView);
+        }
+    }
+
+    /**
+     * @see #chromeService(DriverService)
+     */
+    static EdgeDriverService edgeService(DriverService leased) {
+        try {
+            return new EdgeDriverService(POOLED_EXECUTABLE, leased.getUrl().getPort(), ImmutableList.of(), ImmutableMap.of()) {
+                @Override
+                public void start() {
+                }
+
+                @Override
+                public void stop() {
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return leased.isRunning();
+                }
+            };
+        } catch (IOException unableToCreateView) {
+            throw new WebDriverException(unableToCreateView);
+        }
+    }
+
+    /**
+     * @see #chromeService(DriverService)
+     */
+    static SafariDriverService safariService(DriverService leased) {
+        try {
+            return new SafariDriverService(POOLED_EXECUTABLE, leased.getUrl().getPort(), ImmutableList.of(), ImmutableMap.of()) {
+                @Override
+                public void start() {
+                }
+
+                @Override
+                public void stop() {
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return leased.isRunning();
+                }
+            };
+        } catch (IOException unableToCreateView) {
+            throw new WebDriverException(unableToCreateView);
+        }
+    }
+
+    /**
+     * @see #chromeService(DriverService)
+     */
+    static OperaDriverService operaService(DriverService leased) {
+        try {
+            return new OperaDriverService(POOLED_EXECUTABLE, leased.getUrl().getPort(), ImmutableList.of(), ImmutableMap.of()) {
+                @Override
+                public void start() {
+                }
+
+                @Override
+                public void stop() {
+                }
+
+                @Override
+                public boolean isRunning() {
+                    return leased.isRunning();
+                }
+            };
+        } catch (IOException unableToCreateView) {
+            throw new WebDriverException(unableToCreateView);
+        }
+    }
+
+    static class Chrome extends ChromeDriver implements Driver {
+        private final LocalSession session;
+        private final SessionRecorder recorder;
+
+        private Chrome(LocalSession session, ChromeOptions options) {
+            super(chromeService(session.driverService), options);
+            this.session = session;
+            this.recorder = new SessionRecorder(session.driverType, this);
+        }
+
+        @Override
+        public LocalSession getLocalSession() {
+            return session;
+        }
+
+        @Override
+        public SessionRecorder getSessionRecorder() {
+            return recorder;
+        }
+
+        @Override
+        protected Response execute(String driverCommand, Map<String, ?> parameters) {
+            return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+        }
+
+        @Override
+        public void get(String url) {
+            recorder.get(url, super::get);
+        }
+
+        @Override
+        public void quit() {
+            session.quit(() -> recorder.quit(super::quit));
+        }
+    }
+
+    static class Firefox extends FirefoxDriver implements Driver {
+        private final LocalSession session;
+        private final SessionRecorder recorder;
+
+        private Firefox(LocalSession session, FirefoxOptions options) {
+            super(geckoService(session.driverService), options);
+            this.session = session;
+            this.recorder = new SessionRecorder(session.driverType, this);
+        }
+
+        @Override
+        public LocalSession getLocalSession() {
+            return session;
+        }
+
+        @Override
+        public SessionRecorder getSessionRecorder() {
+            return recorder;
+        }
+
+        @Override
+        protected Response execute(String driverCommand, Map<String, ?> parameters) {
+            return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+        }
+
+        @Override
+        public void get(String url) {
+            recorder.get(url, super::get);
+        }
+
+        @Override
+        public void quit() {
+            session.quit(() -> recorder.quit(super::quit));
+        }
+    }
+
+    static class Edge extends EdgeDriver implements Driver {
+        private final LocalSession session;
+        private final SessionRecorder recorder;
+
+        private Edge(LocalSession session, EdgeOptions options) {
+            super(edgeService(session.driverService), options);
+            this.session = session;
+            this.recorder = new SessionRecorder(session.driverType, this);
+        }
+
+        @Override
+        public LocalSession getLocalSession() {
+            return session;
+        }
+
+        @Override
+        public SessionRecorder getSessionRecorder() {
+            return recorder;
+        }
+
+        @Override
+        protected Response execute(String driverCommand, Map<String, ?> parameters) {
+            return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+        }
+
+        @Override
+        public void get(String url) {
+            recorder.get(url, super::get);
+        }
+
+        @Override
+        public void quit() {
+            session.quit(() -> recorder.quit(super::quit));
+        }
+    }
+
+    static class Safari extends SafariDriver implements Driver {
+        private final LocalSession session;
+        private final SessionRecorder recorder;
+
+        private Safari(LocalSession session, SafariOptions options) {
+            super(safariService(session.driverService), options);
+            this.session = session;
+            this.recorder = new SessionRecorder(session.driverType, this);
+        }
+
+        @Override
+        public LocalSession getLocalSession() {
+            return session;
+        }
+
+        @Override
+        public SessionRecorder getSessionRecorder() {
+            return recorder;
+        }
+
+        @Override
+        protected Response execute(String driverCommand, Map<String, ?> parameters) {
+            return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+        }
+
+        @Override
+        public void get(String url) {
+            recorder.get(url, super::get);
+        }
+
+        @Override
+        public void quit() {
+            session.quit(() -> recorder.quit(super::quit));
+        }
+    }
+
+    static class Opera extends OperaDriver implements Driver {
+        private final LocalSession session;
+        private final SessionRecorder recorder;
+
+        private Opera(LocalSession session, OperaOptions options) {
+            super(operaService(session.driverService), options);
+            this.session = session;
+            this.recorder = new SessionRecorder(session.driverType, this);
+        }
+
+        @Override
+        public LocalSession getLocalSession() {
+            return session;
+        }
+
+        @Override
+        public SessionRecorder getSessionRecorder() {
+            return recorder;
+        }
+
+        @Override
+        protected Response execute(String driverCommand, Map<String, ?> parameters) {
+            return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+        }
+
+        @Override
+        public void get(String url) {
+            recorder.get(url, super::get);
+        }
+
+        @Override
+        public void quit() {
+            session.quit(() -> recorder.quit(super::quit));
+        }
+    }
+
+    /**
+     * Runs on the leased service itself, which is stopped when the session quits, see {@link LocalSession}.
+     */
+    static class InternetExplorer extends InternetExplorerDriver implements Driver {
+        private final LocalSession session;
+        private final SessionRecorder recorder;
+
+        private InternetExplorer(LocalSession session, InternetExplorerOptions options) {
+            super((InternetExplorerDriverService) session.driverService, options);
+            this.session = session;
+            this.recorder = new SessionRecorder(session.driverType, this);
+        }
+
+        @Override
+        public LocalSession getLocalSession() {
+            return session;
+        }
+
+        @Override
+        public SessionRecorder getSessionRecorder() {
+            return recorder;
+        }
+
+        @Override
+        protected Response execute(String driverCommand, Map<String, ?> parameters) {
+            return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+        }
+
+        @Override
+        public void get(String url) {
+            recorder.get(url, super::get);
+        }
+
+        @Override
+        public void quit() {
+            session.quit(() -> recorder.quit(super::quit));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.lazerycode.selenium.config;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.openqa.selenium.remote.service.DriverService;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalSessionTest {
+
+    @Test
+    public void theDriverClassesDoNotStartOrStopTheLeasedService() throws IOException {
+        StubService leased = new StubService(4444);
+        List<DriverService> views = Arrays.asList(LocalSession.chromeService(leased), LocalSession.geckoService(leased),
+                LocalSession.edgeService(leased), LocalSession.safariService(leased), LocalSession.operaService(leased));
+
+        for (DriverService view : views) {
+            view.start();
+            view.stop();
+
+            assertThat(view.getUrl()).isEqualTo(leased.getUrl());
+            assertThat(view.isRunning()).isTrue();
+        }
+        assertThat(leased.startsAndStops).isZero();
+    }
+
+    @Test
+    public void theDriverClassesSeeWhenTheLeasedServiceDies() throws IOException {
+        StubService leased = new StubService(4444);
+        DriverService view = LocalSession.chromeService(leased);
+
+        leased.running = false;
+
+        assertThat(view.isRunning()).isFalse();
+    }
+
+    private static class StubService extends DriverService {
+        private boolean running = true;
+        private int startsAndStops;
+
+        private StubService(int port) throws IOException {
+            super(new File("stub-driver"), port, ImmutableList.of(), ImmutableMap.of());
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void start() {
+            startsAndStops++;
+        }
+
+        @Override
+        public void stop() {
+            startsAndStops++;
+        }
+    }
+}
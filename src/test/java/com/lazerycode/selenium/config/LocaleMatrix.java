@@ -0,0 +1,54 @@
+package com.lazerycode.selenium.config;
+
+import com.lazerycode.selenium.utils.TVTUtil;
+import org.testng.annotations.DataProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fans a TVT test class out across locales.
+ * <p>
+ * Pair the data provider with a {@link org.testng.annotations.Factory} constructor on the test class, one instance is
+ * created per locale and the locale travels with the instance rather than through a JVM wide property.  Run with
+ * -Dparallel=instances so that each locale instance keeps a single thread (and therefore a single browser) while
+ * different locales run side by side.
+ * <pre>
+ * &#64;PerfBudget(screenshots = 20, bytesWritten = 10000000)
+ * public class LoginPageTVT extends BaseTest {
+ *
+ *     &#64;Factory(dataProvider = LocaleMatrix.LOCALES, dataProviderClass = LocaleMatrix.class)
+ *     public LoginPageTVT(String locale) {
+ *         super(locale);
+ *     }
+ * }
+ * </pre>
+ * Images are written to a directory per locale, see BaseTest#getImageDir().  A class level
+ * {@link com.lazerycode.selenium.listeners.PerfBudget} applies to every locale instance, so a locale that captures more
+ * than the others stands out in the budget report.
+ * <p>
+ * The locales used can be restricted with -Dlocales=de,fr,ja, by default every locale in {@link TVTUtil#LOCALES} is used.
+ */
+public class LocaleMatrix {
+
+    public static final String LOCALES = "localeMatrix";
+
+    @DataProvider(name = LOCALES)
+    public static Object[][] locales() {
+        List<Object[]> locales = new ArrayList<>();
+        for (String locale : selectedLocales()) {
+            locales.add(new Object[]{locale});
+        }
+
+        return locales.toArray(new Object[locales.size()][]);
+    }
+
+    static String[] selectedLocales() {
+        String requestedLocales = RunConfig.suiteConfig().get(RunConfig.LOCALES, "").trim();
+        if (requestedLocales.isEmpty()) {
+            return TVTUtil.LOCALES;
+        }
+
+        return requestedLocales.split("\\s*,\\s*");
+    }
+}
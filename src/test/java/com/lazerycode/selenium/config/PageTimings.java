@@ -0,0 +1,224 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * What the browser spent its time on when it loaded a page, from the Navigation Timing, Paint Timing and Resource
+ * Timing APIs.
+ * <p>
+ * After every driver.get() of an http or https URL made by a browser from the {@link DriverFactory} one script reads
+ * the timings of the page that was loaded, the script is not counted against the test's {@link PerfCounters}.  They
+ * are aggregated per URL pattern (query string dropped, numeric and id-like path segments replaced by {id}) and per
+ * test.  Alongside the browser's own figures the time driver.get() took is recorded, and
+ * the difference between that and the browser's load event as webDriverOverhead, which separates a slow application
+ * from a slow framework or grid.  Timings are written as JSON to -DpageTimingReport (target/page-timings.json by
+ * default) and can be switched off with -DpageTimings=false, which saves the extra round trip per navigation.
+ */
+public class PageTimings {
+
+    private static final String NO_TEST = "(no test)";
+    private static final String[] METRICS = {
+            "dns", "connect", "ttfb", "response", "domInteractive", "domContentLoaded", "load",
+            "firstPaint", "firstContentfulPaint", "lastResource", "webDriverGet", "webDriverOverhead"
+    };
+    private static final Pattern ID_SEGMENT = Pattern.compile("/(\\d+|[0-9a-fA-F-]{16,})(?=/|$)");
+
+    private static final String TIMING_SCRIPT =
+            "var performance = window.performance;" +
+            "if (!performance || !performance.timing) { return null; }" +
+            "var entries = performance.getEntriesByType ? performance.getEntriesByType('navigation') : [];" +
+            "var navigation = entries.length ? entries[0] : null, timing = performance.timing;" +
+            "function mark(name) {" +
+            "  if (navigation) { return navigation[name] > 0 ? navigation[name] : null; }" +
+            "  return timing[name] > 0 ? timing[name] - timing.navigationStart : null;" +
+            "}" +
+            "function between(start, end) {" +
+            "  var from = mark(start), to = mark(end);" +
+            "  return from === null || to === null ? null : to - from;" +
+            "}" +
+            "var result = {" +
+            "  dns: between('domainLookupStart', 'domainLookupEnd')," +
+            "  connect: between('connectStart', 'connectEnd')," +
+            "  ttfb: between('requestStart', 'responseStart')," +
+            "  response: between('responseStart', 'responseEnd')," +
+            "  domInteractive: mark('domInteractive')," +
+            "  domContentLoaded: mark('domContentLoadedEventEnd')," +
+            "  load: mark('loadEventEnd')," +
+            "  resources: 0, resourceBytes: 0, lastResource: null" +
+            "};" +
+            "var paints = performance.getEntriesByType ? performance.getEntriesByType('paint') : [];" +
+            "for (var i = 0; i < paints.length; i++) {" +
+            "  result[paints[i].name === 'first-paint' ? 'firstPaint' : 'firstContentfulPaint'] = paints[i].startTime;" +
+            "}" +
+            "var resources = performance.getEntriesByType ? performance.getEntriesByType('resource') : [];" +
+            "for (var j = 0; j < resources.length; j++) {" +
+            "  result.resources++;" +
+            "  result.resourceBytes += resources[j].transferSize || 0;" +
+            "  result.lastResource = Math.max(result.lastResource || 0, resources[j].responseEnd);" +
+            "}" +
+            "return result;";
+
+    private static final Map<String, Aggregate> byPattern = new ConcurrentHashMap<>();
+    private static final Map<String, Aggregate> byTest = new ConcurrentHashMap<>();
+    private static final AtomicLong unavailable = new AtomicLong();
+
+    static boolean isEnabled(RunConfig runConfig) {
+        return Boolean.parseBoolean(runConfig.get(RunConfig.PAGE_TIMINGS, "true"));
+    }
+
+    /**
+     * @return true for http and https URLs, pages such as about:blank have no timings worth a round trip
+     */
+    static boolean isWebPage(String url) {
+        String lowerCaseUrl = url.toLowerCase();
+
+        return lowerCaseUrl.startsWith("http://") || lowerCaseUrl.startsWith("https://");
+    }
+
+    /**
+     * Read the timings of the page the browser has just loaded.
+     * @param getNanos how long driver.get() took
+     */
+    static void collect(RemoteWebDriver driver, String url, long getNanos) {
+        Object timings;
+        try {
+            timings = driver.executeScript(TIMING_SCRIPT);
+        } catch (WebDriverException unableToReadTimings) {
+            timings = null;
+        }
+        if (!(timings instanceof Map)) {
+            unavailable.incrementAndGet();
+            return;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> timing : ((Map<?, ?>) timings).entrySet()) {
+            metrics.put(String.valueOf(timing.getKey()), timing.getValue());
+        }
+        double getMillis = getNanos / 1e6;
+        metrics.put("webDriverGet", getMillis);
+        if (metrics.get("load") instanceof Number) {
+            metrics.put("webDriverOverhead", Math.max(0, getMillis - ((Number) metrics.get("load")).doubleValue()));
+        }
+        String test = DriverRegistry.getCurrentTest();
+        aggregate(byPattern, patternOf(url)).add(metrics);
+        aggregate(byTest, null == test ? NO_TEST : test).add(metrics);
+    }
+
+    /**
+     * @return the URL without its query string or fragment and with numeric and id-like path segments replaced by {id}
+     */
+    static String patternOf(String url) {
+        String pattern = url;
+        for (char separator : new char[]{'#', '?'}) {
+            int index = pattern.indexOf(separator);
+            if (index >= 0) {
+                pattern = pattern.substring(0, index);
+            }
+        }
+
+        return ID_SEGMENT.matcher(pattern).replaceAll("/{id}");
+    }
+
+    /**
+     * @return URL pattern -&gt; navigations, resources and metric statistics in milliseconds.
+     */
+    public static Map<String, Map<String, Object>> summary() {
+        return describe(byPattern);
+    }
+
+    /**
+     * Write the timings per URL pattern and per test, nothing is written if no page timings were collected.
+     */
+    public static void writeReport(File report) throws IOException {
+        Map<String, Map<String, Object>> patterns = summary();
+        if (patterns.isEmpty()) {
+            return;
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("urls", patterns);
+        json.put("tests", describe(byTest));
+        json.put("unavailable", unavailable.get());
+        JsonReport.write(report, json);
+        System.out.println("Page load timings (p50 in ms, full breakdown in " + report.getPath() + "):");
+        for (Map.Entry<String, Map<String, Object>> pattern : patterns.entrySet()) {
+            Map<?, ?> metrics = (Map<?, ?>) pattern.getValue().get("metrics");
+            System.out.println(String.format("  %s navigations=%s ttfb=%s load=%s fcp=%s webDriverOverhead=%s",
+                    pattern.getKey(), pattern.getValue().get("navigations"), p50(metrics, "ttfb"), p50(metrics, "load"),
+                    p50(metrics, "firstContentfulPaint"), p50(metrics, "webDriverOverhead")));
+        }
+    }
+
+    private static Object p50(Map<?, ?> metrics, String metric) {
+        Map<?, ?> statistics = (Map<?, ?>) metrics.get(metric);
+
+        return null == statistics ? "-" : statistics.get("p50");
+    }
+
+    private static Aggregate aggregate(Map<String, Aggregate> aggregates, String name) {
+        Aggregate aggregate = aggregates.get(name);
+
+        return null == aggregate ? aggregates.computeIfAbsent(name, unused -> new Aggregate()) : aggregate;
+    }
+
+    private static Map<String, Map<String, Object>> describe(Map<String, Aggregate> aggregates) {
+        Map<String, Map<String, Object>> described = new TreeMap<>();
+        for (Map.Entry<String, Aggregate> entry : aggregates.entrySet()) {
+            described.put(entry.getKey(), entry.getValue().describe());
+        }
+
+        return described;
+    }
+
+    private static class Aggregate {
+        private final Map<String, LatencyHistogram> metrics = new ConcurrentHashMap<>();
+        private final AtomicLong navigations = new AtomicLong();
+        private final AtomicLong resources = new AtomicLong();
+        private final AtomicLong resourceBytes = new AtomicLong();
+
+        private void add(Map<String, Object> timings) {
+            navigations.incrementAndGet();
+            resources.addAndGet(longValue(timings.get("resources")));
+            resourceBytes.addAndGet(longValue(timings.get("resourceBytes")));
+            for (String metric : METRICS) {
+                Object value = timings.get(metric);
+                if (value instanceof Number && ((Number) value).doubleValue() >= 0) {
+                    LatencyHistogram histogram = metrics.computeIfAbsent(metric, unused -> new LatencyHistogram());
+                    histogram.record((long) (((Number) value).doubleValue() * TimeUnit.MILLISECONDS.toNanos(1)));
+                }
+            }
+        }
+
+        private Map<String, Object> describe() {
+            Map<String, Object> described = new LinkedHashMap<>();
+            long count = navigations.get();
+            described.put("navigations", count);
+            described.put("resourcesPerNavigation", 0 == count ? 0 : resources.get() / count);
+            described.put("resourceBytesPerNavigation", 0 == count ? 0 : resourceBytes.get() / count);
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            for (String metric : METRICS) {
+                LatencyHistogram histogram = metrics.get(metric);
+                if (null != histogram) {
+                    statistics.put(metric, histogram.statistics());
+                }
+            }
+            described.put("metrics", statistics);
+
+            return described;
+        }
+
+        private static long longValue(Object value) {
+            return value instanceof Number ? ((Number) value).longValue() : 0;
+        }
+    }
+}
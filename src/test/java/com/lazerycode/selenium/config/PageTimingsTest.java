@@ -0,0 +1,41 @@
+package com.lazerycode.selenium.config;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageTimingsTest {
+
+    @Test
+    public void queryStringAndFragmentAreDropped() {
+        assertThat(PageTimings.patternOf("https://example.com/search?q=cheese#results"))
+                .isEqualTo("https://example.com/search");
+    }
+
+    @Test
+    public void numericAndIdLikePathSegmentsAreReplaced() {
+        assertThat(PageTimings.patternOf("https://example.com/orders/12345/items/3f2a9b7c-1d2e-4f5a-8b9c-0123456789ab"))
+                .isEqualTo("https://example.com/orders/{id}/items/{id}");
+    }
+
+    @Test
+    public void wordsAndShortHexSegmentsAreKept() {
+        assertThat(PageTimings.patternOf("https://example.com/v2/cafe/page2"))
+                .isEqualTo("https://example.com/v2/cafe/page2");
+    }
+
+    @Test
+    public void portIsNotMistakenForAnId() {
+        assertThat(PageTimings.patternOf("http://localhost:8080/"))
+                .isEqualTo("http://localhost:8080/");
+    }
+
+    @Test
+    public void onlyHttpAndHttpsPagesAreTimed() {
+        assertThat(PageTimings.isWebPage("https://example.com")).isTrue();
+        assertThat(PageTimings.isWebPage("HTTP://example.com")).isTrue();
+        assertThat(PageTimings.isWebPage("about:blank")).isFalse();
+        assertThat(PageTimings.isWebPage("data:text/html,<p>")).isFalse();
+        assertThat(PageTimings.isWebPage("file:///tmp/page.html")).isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.io.File;
+
+/**
+ * What the test running on the current thread has cost so far: WebDriver commands sent, screenshots taken and bytes
+ * written to disk.
+ * <p>
+ * Commands and screenshots are counted by {@link SessionRecorder}, bytes by the code that writes captures.  The
+ * counters belong to the thread, so they are only accurate for tests that drive their browser from the thread they
+ * run on, which is how {@link com.lazerycode.selenium.DriverBase} hands out drivers.  They are reset before each test
+ * method by {@link com.lazerycode.selenium.listeners.PerfBudgetListener}.
+ */
+public class PerfCounters {
+
+    private static final ThreadLocal<PerfCounters> current = ThreadLocal.withInitial(PerfCounters::new);
+
+    private boolean paused;
+    private long commands;
+    private long screenshots;
+    private long bytesWritten;
+
+    /**
+     * @return the counters for the current thread
+     */
+    public static PerfCounters current() {
+        return current.get();
+    }
+
+    static void commandSent(String driverCommand) {
+        PerfCounters counters = current.get();
+        if (counters.paused) {
+            return;
+        }
+        counters.commands++;
+        if (DriverCommand.SCREENSHOT.equals(driverCommand) || DriverCommand.ELEMENT_SCREENSHOT.equals(driverCommand)) {
+            counters.screenshots++;
+        }
+    }
+
+    /**
+     * Stop counting commands on the current thread, for commands the framework sends on its own behalf.
+     */
+    static void pause() {
+        current.get().paused = true;
+    }
+
+    static void resume() {
+        current.get().paused = false;
+    }
+
+    public static void bytesWritten(long bytes) {
+        current.get().bytesWritten += bytes;
+    }
+
+    /**
+     * Count a file that has just been written.
+     */
+    public static void fileWritten(File file) {
+        bytesWritten(file.length());
+    }
+
+    public void reset() {
+        commands = 0;
+        screenshots = 0;
+        bytesWritten = 0;
+    }
+
+    public long getCommands() {
+        return commands;
+    }
+
+    public long getScreenshots() {
+        return screenshots;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
@@ -0,0 +1,38 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.remote.DriverCommand;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerfCountersTest {
+
+    @BeforeMethod
+    public void resetCounters() {
+        PerfCounters.current().reset();
+    }
+
+    @Test
+    public void screenshotsAreCountedAsCommandsAndScreenshots() {
+        PerfCounters.commandSent(DriverCommand.GET);
+        PerfCounters.commandSent(DriverCommand.SCREENSHOT);
+        PerfCounters.commandSent(DriverCommand.ELEMENT_SCREENSHOT);
+
+        assertThat(PerfCounters.current().getCommands()).isEqualTo(3);
+        assertThat(PerfCounters.current().getScreenshots()).isEqualTo(2);
+    }
+
+    @Test
+    public void commandsSentWhilePausedAreNotCounted() {
+        PerfCounters.pause();
+        try {
+            PerfCounters.commandSent(DriverCommand.EXECUTE_SCRIPT);
+        } finally {
+            PerfCounters.resume();
+        }
+        PerfCounters.commandSent(DriverCommand.FIND_ELEMENT);
+
+        assertThat(PerfCounters.current().getCommands()).isEqualTo(1);
+    }
+}
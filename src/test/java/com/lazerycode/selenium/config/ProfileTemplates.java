@@ -0,0 +1,174 @@
+package com.lazerycode.selenium.config;
+
+import org.apache.commons.io.FileUtils;
+import org.openqa.selenium.json.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Browser profiles that are built once per suite and copied for every session.
+ * <p>
+ * Without templates Firefox gets a new FirefoxProfile for every session, which Selenium zips and base64 encodes into
+ * the new session request and geckodriver unpacks again, while Chrome starts from an empty user data directory.  With
+ * -DprofileTemplates=true a template is written to disk for every browser/locale combination the first time it is
+ * needed, each session then gets its own copy (a reflink where the file system supports it) that is passed to the
+ * browser directly and deleted when the session quits.
+ * <p>
+ * -DbrowserCache=&lt;directory&gt; additionally points every session at a shared disk cache, so static assets fetched by
+ * one browser are already on disk for the next.  The cache is shared without any locking, a browser that cannot open
+ * it while another one is writing simply runs with a cold cache.
+ */
+public class ProfileTemplates {
+
+    private static final Map<String, File> templates = new ConcurrentHashMap<>();
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().startsWith("windows");
+
+    private static File templateRoot;
+
+    public static boolean isEnabled(RunConfig runConfig) {
+        return runConfig.getBoolean(RunConfig.PROFILE_TEMPLATES);
+    }
+
+    /**
+     * @return a new profile directory for a Firefox session, copied from the template for this configuration.
+     */
+    static File newFirefoxProfile(RunConfig runConfig) throws IOException {
+        Map<String, Object> preferences = new LinkedHashMap<>();
+        if (null != runConfig.getLocale()) {
+            preferences.put("intl.accept_languages", runConfig.getLocale());
+        }
+        File cache = sharedCache(runConfig, "firefox");
+        if (null != cache) {
+            preferences.put("browser.cache.disk.parent_directory", cache.getAbsolutePath());
+            preferences.put("browser.cache.disk.smart_size.enabled", false);
+            preferences.put("browser.cache.disk.capacity", 1048576);
+        }
+
+        return copyOf(template("firefox", preferences, ProfileTemplates::writeFirefoxTemplate));
+    }
+
+    /**
+     * @return a new user data directory for a Chrome session, copied from the template for this configuration.
+     */
+    static File newChromeProfile(RunConfig runConfig) throws IOException {
+        Map<String, Object> preferences = new LinkedHashMap<>();
+        preferences.put("profile", Collections.singletonMap("password_manager_enabled", false));
+        if (null != runConfig.getLocale()) {
+            preferences.put("intl", Collections.singletonMap("accept_languages", runConfig.getLocale()));
+        }
+
+        return copyOf(template("chrome", preferences, ProfileTemplates::writeChromeTemplate));
+    }
+
+    /**
+     * @return the shared cache directory for a browser, or null if sessions should not share a cache.
+     */
+    static File sharedCache(RunConfig runConfig, String browser) {
+        String cache = runConfig.get(RunConfig.BROWSER_CACHE, "");
+        if (cache.isEmpty()) {
+            return null;
+        }
+        File browserCache = new File(cache, browser).getAbsoluteFile();
+        browserCache.mkdirs();
+
+        return browserCache;
+    }
+
+    /**
+     * Delete a session's copy of a template once the browser has quit.
+     */
+    static void deleteSessionProfile(File sessionProfile) {
+        if (null != sessionProfile) {
+            FileUtils.deleteQuietly(sessionProfile);
+        }
+    }
+
+    private static File template(String browser, Map<String, Object> preferences, TemplateWriter writer) throws IOException {
+        String key = browser + new Json().toJson(preferences).replaceAll("\\s", "");
+        File template = templates.get(key);
+        if (null == template) {
+            synchronized (templates) {
+                template = templates.get(key);
+                if (null == template) {
+                    template = Files.createTempDirectory(templateRoot().toPath(), browser + "-template-").toFile();
+                    writer.write(template, preferences);
+                    templates.put(key, template);
+                }
+            }
+        }
+
+        return template;
+    }
+
+    private static synchronized File templateRoot() throws IOException {
+        if (null == templateRoot) {
+            File root = Files.createTempDirectory("profile-templates-").toFile();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> FileUtils.deleteQuietly(root), "profile-template-cleanup"));
+            templateRoot = root;
+        }
+
+        return templateRoot;
+    }
+
+    private static void writeFirefoxTemplate(File template, Map<String, Object> preferences) throws IOException {
+        StringBuilder userJs = new StringBuilder();
+        for (Map.Entry<String, Object> preference : preferences.entrySet()) {
+            userJs.append("user_pref(").append(quote(preference.getKey())).append(", ")
+                    .append(preference.getValue() instanceof String ? quote((String) preference.getValue()) : preference.getValue())
+                    .append(");\n");
+        }
+        FileUtils.writeStringToFile(new File(template, "user.js"), userJs.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void writeChromeTemplate(File template, Map<String, Object> preferences) throws IOException {
+        FileUtils.writeStringToFile(new File(template, "First Run"), "", StandardCharsets.UTF_8);
+        JsonReport.write(new File(new File(template, "Default"), "Preferences"), preferences);
+    }
+
+    private static File copyOf(File template) throws IOException {
+        File sessionProfile = Files.createTempDirectory(template.getParentFile().toPath(), template.getName().replace("template", "session")).toFile();
+        if (!reflink(template, sessionProfile)) {
+            FileUtils.copyDirectory(template, sessionProfile);
+        }
+
+        return sessionProfile;
+    }
+
+    /**
+     * Copy with GNU cp, which shares the blocks between the template and the copy on file systems that support it.
+     */
+    private static boolean reflink(File template, File sessionProfile) {
+        if (WINDOWS) {
+            return false;
+        }
+        try {
+            Process copy = new ProcessBuilder("cp", "-R", "--reflink=auto", template.getAbsolutePath() + "/.", sessionProfile.getAbsolutePath())
+                    .redirectErrorStream(true)
+                    .start();
+            copy.getInputStream().close();
+
+            return copy.waitFor(30, TimeUnit.SECONDS) && copy.exitValue() == 0;
+        } catch (IOException unsupported) {
+            return false;
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private interface TemplateWriter {
+        void write(File template, Map<String, Object> preferences) throws IOException;
+    }
+}
@@ -0,0 +1,357 @@
+package com.lazerycode.selenium.config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sample the CPU time, resident memory and thread count of every local browser's process tree, and attribute them to
+ * the test that owns the session at the time, see {@link DriverRegistry}.
+ * <p>
+ * Every -DresourceSampleInterval milliseconds the sampler reads /proc/&lt;pid&gt;/stat for every process once, finds
+ * the processes that belong to each live session (the driver service if the session has one to itself, Chrome's user
+ * data directory, Firefox's process id) and walks down to their descendants.  CPU time used between two samples is
+ * added to the owning test, memory and threads are recorded as peaks.  Sessions idle in a {@link DriverPool} or held
+ * between tests are reported under their own names.  Remote sessions are not sampled.
+ * <p>
+ * The sampler only runs on Linux and is switched on with -DresourceReport=&lt;file&gt;, a JSON report sorted by peak
+ * memory is written at the end of the suite.
+ */
+public class ResourceSampler {
+
+    private static final File PROC = new File("/proc");
+    private static final String POOLED = "(idle in pool)";
+    private static final String BETWEEN_TESTS = "(between tests)";
+
+    private static volatile ResourceSampler sampler;
+
+    private final File report;
+    private final long intervalMillis;
+    private final long clockTicksPerSecond = sysconf("CLK_TCK", 100);
+    private final long pageSize = sysconf("PAGESIZE", 4096);
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Usage> usageByTest = new LinkedHashMap<>();
+    private final Map<String, Usage> usageBySession = new LinkedHashMap<>();
+    private final Map<ProcessKey, Long> lastCpuTicks = new HashMap<>();
+    private final Map<ProcessKey, List<String>> commandLines = new HashMap<>();
+    private long samples;
+    private long sampleNanos;
+
+    private ResourceSampler(File report, long intervalMillis) {
+        this.report = report;
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sampleQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start sampling if a report has been asked for and /proc is available.
+     */
+    public static synchronized void start(RunConfig runConfig) {
+        String report = runConfig.get(RunConfig.RESOURCE_REPORT, "");
+        if (null != sampler || report.isEmpty()) {
+            return;
+        }
+        if (!new File(PROC, "self/stat").canRead()) {
+            System.err.println("Unable to sample browser resources, /proc is not available on this platform...");
+            return;
+        }
+        sampler = new ResourceSampler(new File(report), Math.max(50, runConfig.getInt(RunConfig.RESOURCE_SAMPLE_INTERVAL, 500)));
+    }
+
+    /**
+     * Stop sampling and write the report, does nothing if the sampler is not running.
+     */
+    public static synchronized void stop() throws IOException {
+        if (null == sampler) {
+            return;
+        }
+        ResourceSampler stopping = sampler;
+        sampler = null;
+        stopping.scheduler.shutdownNow();
+        try {
+            stopping.scheduler.awaitTermination(stopping.intervalMillis * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        stopping.writeReport();
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (Exception samplingFailed) {
+            System.err.println("Unable to sample browser resources: " + samplingFailed.getMessage());
+        }
+    }
+
+    private synchronized void sample() {
+        List<DriverRegistry.Session> sessions = new ArrayList<>();
+        for (DriverRegistry.Session session : DriverRegistry.getInstance().getSessions()) {
+            if (null != LocalSession.of(session.getDriver())) {
+                sessions.add(session);
+            }
+        }
+        if (sessions.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<Long, ProcessStat> processes = readProcesses();
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (ProcessStat process : processes.values()) {
+            children.computeIfAbsent(process.parentPid, parent -> new ArrayList<>()).add(process.pid);
+        }
+        commandLines.keySet().retainAll(keysOf(processes));
+
+        Set<ProcessKey> seen = new HashSet<>();
+        for (DriverRegistry.Session session : sessions) {
+            LocalSession localSession = LocalSession.of(session.getDriver());
+            Set<Long> tree = processTree(localSession, processes, children);
+            long cpuTicks = 0;
+            long rssPages = 0;
+            int threads = 0;
+            for (Long pid : tree) {
+                ProcessStat process = processes.get(pid);
+                ProcessKey key = process.key();
+                Long previousTicks = lastCpuTicks.put(key, process.cpuTicks);
+                cpuTicks += process.cpuTicks - (null == previousTicks ? 0 : previousTicks);
+                rssPages += process.rssPages;
+                threads += process.threads;
+                seen.add(key);
+            }
+            String test = null == session.getOwner() ? POOLED : null == session.getTest() ? BETWEEN_TESTS : session.getTest();
+            String sessionName = localSession.getDriverType() + " " + localSession.getDriver().getSessionId();
+            long cpuMillis = TimeUnit.SECONDS.toMillis(cpuTicks) / clockTicksPerSecond;
+            usageByTest.computeIfAbsent(test, name -> new Usage()).add(cpuMillis, rssPages * pageSize, threads, tree.size(), sessionName);
+            usageBySession.computeIfAbsent(sessionName, name -> new Usage()).add(cpuMillis, rssPages * pageSize, threads, tree.size(), test);
+        }
+        lastCpuTicks.keySet().retainAll(seen);
+        samples++;
+        sampleNanos += System.nanoTime() - start;
+    }
+
+    private Set<Long> processTree(LocalSession session, Map<Long, ProcessStat> processes, Map<Long, List<Long>> children) {
+        Deque<Long> pending = new ArrayDeque<>();
+        Long browserProcessId = session.getBrowserProcessId();
+        if (null != browserProcessId && processes.containsKey(browserProcessId)) {
+            pending.add(browserProcessId);
+        }
+        List<String> arguments = session.getProcessArguments();
+        if (!arguments.isEmpty()) {
+            for (ProcessStat process : processes.values()) {
+                if (!Collections.disjoint(commandLine(process), arguments)) {
+                    pending.add(process.pid);
+                }
+            }
+        }
+        Set<Long> tree = new HashSet<>();
+        while (!pending.isEmpty()) {
+            Long pid = pending.poll();
+            if (tree.add(pid)) {
+                pending.addAll(children.getOrDefault(pid, Collections.emptyList()));
+            }
+        }
+
+        return tree;
+    }
+
+    /**
+     * Command lines do not change once a process is running, so each one is only read once.
+     */
+    private List<String> commandLine(ProcessStat process) {
+        return commandLines.computeIfAbsent(process.key(), key -> {
+            try {
+                byte[] commandLine = Files.readAllBytes(new File(PROC, process.pid + "/cmdline").toPath());
+                List<String> arguments = new ArrayList<>();
+                int argumentStart = 0;
+                for (int i = 0; i < commandLine.length; i++) {
+                    if (0 == commandLine[i]) {
+                        arguments.add(new String(commandLine, argumentStart, i - argumentStart, StandardCharsets.UTF_8));
+                        argumentStart = i + 1;
+                    }
+                }
+                return arguments;
+            } catch (IOException processHasExited) {
+                return Collections.emptyList();
+            }
+        });
+    }
+
+    private static Map<Long, ProcessStat> readProcesses() {
+        Map<Long, ProcessStat> processes = new HashMap<>();
+        String[] entries = PROC.list();
+        if (null == entries) {
+            return processes;
+        }
+        for (String entry : entries) {
+            if (entry.isEmpty() || !Character.isDigit(entry.charAt(0))) {
+                continue;
+            }
+            try {
+                ProcessStat process = ProcessStat.parse(new String(Files.readAllBytes(new File(PROC, entry + "/stat").toPath()), StandardCharsets.US_ASCII));
+                processes.put(process.pid, process);
+            } catch (IOException | RuntimeException processHasExited) {
+                // Processes come and go between listing /proc and reading them
+            }
+        }
+
+        return processes;
+    }
+
+    private static Set<ProcessKey> keysOf(Map<Long, ProcessStat> processes) {
+        Set<ProcessKey> keys = new HashSet<>();
+        for (ProcessStat process : processes.values()) {
+            keys.add(process.key());
+        }
+
+        return keys;
+    }
+
+    private synchronized void writeReport() throws IOException {
+        List<Map<String, Object>> tests = describe(usageByTest, "test", "sessions");
+        List<Map<String, Object>> sessions = describe(usageBySession, "session", "tests");
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("sampleIntervalMillis", intervalMillis);
+        json.put("samples", samples);
+        json.put("meanSampleMillis", 0 == samples ? 0 : TimeUnit.NANOSECONDS.toMicros(sampleNanos / samples) / 1000.0);
+        json.put("tests", tests);
+        json.put("sessions", sessions);
+
+        JsonReport.write(report, json);
+        System.out.println("Browser resource usage written to " + report.getPath());
+        for (Map<String, Object> test : tests.subList(0, Math.min(5, tests.size()))) {
+            System.out.println(String.format("  %s: peak %sMB RSS, %s threads, %sms CPU",
+                    test.get("test"), test.get("peakRssMB"), test.get("peakThreads"), test.get("cpuMillis")));
+        }
+    }
+
+    private static List<Map<String, Object>> describe(Map<String, Usage> usageByName, String nameKey, String relatedKey) {
+        List<Map<String, Object>> described = new ArrayList<>();
+        for (Map.Entry<String, Usage> entry : usageByName.entrySet()) {
+            Usage usage = entry.getValue();
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put(nameKey, entry.getKey());
+            json.put("cpuMillis", usage.cpuMillis);
+            json.put("peakRssMB", usage.peakRssBytes / (1024 * 1024));
+            json.put("peakThreads", usage.peakThreads);
+            json.put("peakProcesses", usage.peakProcesses);
+            json.put("samples", usage.samples);
+            json.put(relatedKey, new ArrayList<>(usage.related));
+            described.add(json);
+        }
+        described.sort((first, second) -> Long.compare((Long) second.get("peakRssMB"), (Long) first.get("peakRssMB")));
+
+        return described;
+    }
+
+    private static long sysconf(String name, long defaultValue) {
+        try {
+            Process getconf = new ProcessBuilder("getconf", name).redirectErrorStream(true).start();
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(getconf.getInputStream(), StandardCharsets.US_ASCII))) {
+                return Long.parseLong(output.readLine().trim());
+            }
+        } catch (IOException | RuntimeException unableToReadSetting) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * A process id on its own can be reused, together with the start time it identifies one process.
+     */
+    private static final class ProcessKey {
+        private final long pid;
+        private final long startTime;
+
+        private ProcessKey(long pid, long startTime) {
+            this.pid = pid;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ProcessKey && pid == ((ProcessKey) other).pid && startTime == ((ProcessKey) other).startTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(pid) * 31 + Long.hashCode(startTime);
+        }
+    }
+
+    private static final class ProcessStat {
+        private final long pid;
+        private final long parentPid;
+        private final long cpuTicks;
+        private final int threads;
+        private final long startTime;
+        private final long rssPages;
+
+        private ProcessStat(long pid, long parentPid, long cpuTicks, int threads, long startTime, long rssPages) {
+            this.pid = pid;
+            this.parentPid = parentPid;
+            this.cpuTicks = cpuTicks;
+            this.threads = threads;
+            this.startTime = startTime;
+            this.rssPages = rssPages;
+        }
+
+        /**
+         * Parse /proc/&lt;pid&gt;/stat, the command name is in brackets and may contain spaces so the fields are
+         * counted from the last closing bracket.
+         */
+        private static ProcessStat parse(String stat) {
+            long pid = Long.parseLong(stat.substring(0, stat.indexOf(' ')));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return new ProcessStat(
+                    pid,
+                    Long.parseLong(fields[1]),
+                    Long.parseLong(fields[11]) + Long.parseLong(fields[12]),
+                    Integer.parseInt(fields[17]),
+                    Long.parseLong(fields[19]),
+                    Long.parseLong(fields[21]));
+        }
+
+        private ProcessKey key() {
+            return new ProcessKey(pid, startTime);
+        }
+    }
+
+    private static final class Usage {
+        private final Set<String> related = new TreeSet<>();
+        private long cpuMillis;
+        private long peakRssBytes;
+        private int peakThreads;
+        private int peakProcesses;
+        private long samples;
+
+        private void add(long cpuMillis, long rssBytes, int threads, int processes, String relatedName) {
+            this.cpuMillis += cpuMillis;
+            this.peakRssBytes = Math.max(peakRssBytes, rssBytes);
+            this.peakThreads = Math.max(peakThreads, threads);
+            this.peakProcesses = Math.max(peakProcesses, processes);
+            this.samples++;
+            related.add(relatedName);
+        }
+    }
+}
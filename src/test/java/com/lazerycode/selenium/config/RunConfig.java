@@ -0,0 +1,358 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.PageLoadStrategy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.lazerycode.selenium.config.DriverType.FIREFOX;
+
+/**
+ * An immutable snapshot of the settings used to run the suite.
+ * <p>
+ * The suite wide snapshot is resolved from system properties once, at suite start.  Anything that needs a different
+ * setting for a single thread or test derives a new snapshot with one of the with...() methods and hands it to
+ * DriverBase.overrideRunConfig(), nothing ever writes back to the system properties.  Two snapshots with the same
+ * settings are equal, which is how a DriverFactory decides whether the browser it holds can be reused.
+ */
+public final class RunConfig {
+
+    public static final String BROWSER = "browser";
+    public static final String HEADLESS = "headless";
+    public static final String LANGUAGE = "language";
+    public static final String LOCALES = "locales";
+    public static final String REMOTE_DRIVER = "remoteDriver";
+    public static final String GRID_URL = "gridURL";
+    public static final String GRID_MAX_SESSIONS = "gridMaxSessions";
+    public static final String GRID_QUEUE_TIMEOUT = "gridQueueTimeout";
+    public static final String GRID_SESSION_RETRIES = "gridSessionRetries";
+    public static final String DESIRED_PLATFORM = "desiredPlatform";
+    public static final String DESIRED_BROWSER_VERSION = "desiredBrowserVersion";
+    public static final String PROXY_ENABLED = "proxyEnabled";
+    public static final String PROXY_HOST = "proxyHost";
+    public static final String PROXY_PORT = "proxyPort";
+    public static final String PROXY_USERNAME = "proxyUsername";
+    public static final String PROXY_PASSWORD = "proxyPassword";
+    public static final String SCREENSHOT_DIRECTORY = "screenshotDirectory";
+    public static final String SCREENSHOT_STORE = "screenshotStore";
+    public static final String SCREENSHOT_STORE_LINKS = "screenshotStoreLinks";
+    public static final String DRIVER_POOL_SIZE = "driverPoolSize";
+    public static final String SESSION_RESET = "sessionReset";
+    public static final String QUIT_TIMEOUT = "quitTimeout";
+    public static final String SLOW_QUIT_THRESHOLD = "slowQuitThreshold";
+    public static final String TIMING_REPORT = "timingReport";
+    public static final String MAX_BROWSERS = "maxBrowsers";
+    public static final String BROWSER_MEMORY = "browserMemory";
+    public static final String ADMISSION_TIMEOUT = "admissionTimeout";
+    public static final String ORPHAN_TIMEOUT = "orphanTimeout";
+    public static final String RESOURCE_REPORT = "resourceReport";
+    public static final String RESOURCE_SAMPLE_INTERVAL = "resourceSampleInterval";
+    public static final String WAIT_REPORT = "waitReport";
+    public static final String COMMAND_REPORT = "commandReport";
+    public static final String PERF_BUDGETS = "perfBudgets";
+    public static final String PERF_BUDGET_REPORT = "perfBudgetReport";
+    public static final String PAGE_TIMINGS = "pageTimings";
+    public static final String PAGE_TIMING_REPORT = "pageTimingReport";
+    public static final String LOAD_SESSIONS = "loadSessions";
+    public static final String LOAD_RAMP_UP = "loadRampUp";
+    public static final String LOAD_STEADY = "loadSteady";
+    public static final String LOAD_RAMP_DOWN = "loadRampDown";
+    public static final String LOAD_THINK_TIME = "loadThinkTime";
+    public static final String LOAD_REPORT = "loadReport";
+    public static final String LONGEST_FIRST = "longestFirst";
+    public static final String TEST_DURATIONS = "testDurations";
+    public static final String PROFILE_TEMPLATES = "profileTemplates";
+    public static final String BROWSER_CACHE = "browserCache";
+    public static final String LEAN_MODE = "leanMode";
+    public static final String PAGE_LOAD_STRATEGY = "pageLoadStrategy";
+    public static final String EMBEDDED_PROXY = "embeddedProxy";
+    public static final String PROXY_BLOCKED_HOSTS = "proxyBlockedHosts";
+    public static final String PROXY_CACHE_DIRECTORY = "proxyCacheDirectory";
+    public static final String PROXY_CACHE_SIZE = "proxyCacheSize";
+    public static final String PROXY_MODE = "proxyMode";
+    public static final String PROXY_ARCHIVE = "proxyArchive";
+    public static final String PROXY_REPLAY_LATENCY = "proxyReplayLatency";
+
+    public static final String PROXY_MODE_LIVE = "live";
+    public static final String PROXY_MODE_RECORD = "record";
+    public static final String PROXY_MODE_REPLAY = "replay";
+
+    private static final List<String> KEYS = Arrays.asList(
+            BROWSER,
+            HEADLESS,
+            LANGUAGE,
+            LOCALES,
+            REMOTE_DRIVER,
+            GRID_URL,
+            GRID_MAX_SESSIONS,
+            GRID_QUEUE_TIMEOUT,
+            GRID_SESSION_RETRIES,
+            DESIRED_PLATFORM,
+            DESIRED_BROWSER_VERSION,
+            PROXY_ENABLED,
+            PROXY_HOST,
+            PROXY_PORT,
+            PROXY_USERNAME,
+            PROXY_PASSWORD,
+            SCREENSHOT_DIRECTORY,
+            SCREENSHOT_STORE,
+            SCREENSHOT_STORE_LINKS,
+            DRIVER_POOL_SIZE,
+            SESSION_RESET,
+            QUIT_TIMEOUT,
+            SLOW_QUIT_THRESHOLD,
+            TIMING_REPORT,
+            MAX_BROWSERS,
+            BROWSER_MEMORY,
+            ADMISSION_TIMEOUT,
+            ORPHAN_TIMEOUT,
+            RESOURCE_REPORT,
+            RESOURCE_SAMPLE_INTERVAL,
+            WAIT_REPORT,
+            COMMAND_REPORT,
+            PERF_BUDGETS,
+            PERF_BUDGET_REPORT,
+            PAGE_TIMINGS,
+            PAGE_TIMING_REPORT,
+            LOAD_SESSIONS,
+            LOAD_RAMP_UP,
+            LOAD_STEADY,
+            LOAD_RAMP_DOWN,
+            LOAD_THINK_TIME,
+            LOAD_REPORT,
+            LONGEST_FIRST,
+            TEST_DURATIONS,
+            PROFILE_TEMPLATES,
+            BROWSER_CACHE,
+            LEAN_MODE,
+            PAGE_LOAD_STRATEGY,
+            EMBEDDED_PROXY,
+            PROXY_BLOCKED_HOSTS,
+            PROXY_CACHE_DIRECTORY,
+            PROXY_CACHE_SIZE,
+            PROXY_MODE,
+            PROXY_ARCHIVE,
+            PROXY_REPLAY_LATENCY
+    );
+
+    private static final List<String> BROWSER_KEYS = Arrays.asList(
+            GRID_URL,
+            DESIRED_PLATFORM,
+            DESIRED_BROWSER_VERSION,
+            PROXY_HOST,
+            PROXY_PORT,
+            PROXY_USERNAME,
+            PROXY_PASSWORD,
+            PROFILE_TEMPLATES,
+            BROWSER_CACHE
+    );
+
+    private static volatile RunConfig suiteConfig;
+
+    private final Map<String, String> settings;
+
+    private RunConfig(Map<String, String> settings) {
+        this.settings = Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * Take a fresh snapshot of the system properties this framework understands.
+     */
+    public static RunConfig fromSystemProperties() {
+        Map<String, String> settings = new TreeMap<>();
+        for (String key : KEYS) {
+            String value = System.getProperty(key);
+            if (null != value) {
+                settings.put(key, value);
+            }
+        }
+
+        return new RunConfig(settings);
+    }
+
+    /**
+     * Resolve the suite wide snapshot, called once at suite start.
+     */
+    public static RunConfig resolveSuiteConfig() {
+        suiteConfig = fromSystemProperties();
+
+        return suiteConfig;
+    }
+
+    /**
+     * @return the suite wide snapshot, resolving it on first use if the suite has not done so already.
+     */
+    public static RunConfig suiteConfig() {
+        RunConfig config = suiteConfig;
+        if (null == config) {
+            synchronized (RunConfig.class) {
+                if (null == suiteConfig) {
+                    suiteConfig = fromSystemProperties();
+                }
+                config = suiteConfig;
+            }
+        }
+
+        return config;
+    }
+
+    public RunConfig with(String key, String value) {
+        Map<String, String> settings = new TreeMap<>(this.settings);
+        if (null == value) {
+            settings.remove(key);
+        } else {
+            settings.put(key, value);
+        }
+
+        return new RunConfig(settings);
+    }
+
+    public RunConfig withBrowser(String browser) {
+        return with(BROWSER, browser);
+    }
+
+    public RunConfig withBrowser(DriverType driverType) {
+        return withBrowser(driverType.name());
+    }
+
+    public RunConfig withHeadless(boolean headless) {
+        return with(HEADLESS, Boolean.toString(headless));
+    }
+
+    public RunConfig withLocale(String locale) {
+        return with(LANGUAGE, locale);
+    }
+
+    public RunConfig withLeanMode(boolean leanMode) {
+        return with(LEAN_MODE, Boolean.toString(leanMode));
+    }
+
+    public String get(String key) {
+        return settings.get(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = settings.get(key);
+
+        return null == value || value.isEmpty() ? defaultValue : value;
+    }
+
+    public boolean getBoolean(String key) {
+        return Boolean.parseBoolean(settings.get(key));
+    }
+
+    public Integer getInteger(String key) {
+        try {
+            return Integer.valueOf(settings.get(key));
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Integer value = getInteger(key);
+
+        return null == value ? defaultValue : value;
+    }
+
+    public DriverType getDriverType() {
+        DriverType driverType = FIREFOX;
+        String browser = get(BROWSER, driverType.toString()).toUpperCase();
+        try {
+            driverType = DriverType.valueOf(browser);
+        } catch (IllegalArgumentException ignored) {
+            System.err.println("Unknown driver specified, defaulting to '" + driverType + "'...");
+        }
+
+        return driverType;
+    }
+
+    public boolean isHeadless() {
+        return getBoolean(HEADLESS);
+    }
+
+    public String getLocale() {
+        return get(LANGUAGE, null);
+    }
+
+    public boolean useRemoteWebDriver() {
+        return getBoolean(REMOTE_DRIVER);
+    }
+
+    /**
+     * Lean mode trades rendering fidelity for CPU and memory: images, media, web fonts and animations are blocked and
+     * extensions and background networking are switched off.  Tests that capture screenshots should switch it off.
+     */
+    public boolean isLeanMode() {
+        return getBoolean(LEAN_MODE);
+    }
+
+    /**
+     * @return the requested page load strategy, "eager" by default in lean mode, otherwise null to use the browser default.
+     */
+    public String getPageLoadStrategy() {
+        return get(PAGE_LOAD_STRATEGY, isLeanMode() ? PageLoadStrategy.EAGER.toString() : null);
+    }
+
+    /**
+     * @return true if local browsers should go through the embedded proxy, which recording and replaying traffic need.
+     */
+    public boolean useEmbeddedProxy() {
+        return getBoolean(EMBEDDED_PROXY) || !PROXY_MODE_LIVE.equalsIgnoreCase(get(PROXY_MODE, PROXY_MODE_LIVE));
+    }
+
+    /**
+     * @return only the settings that decide what browser is started, with their defaults filled in.  Two snapshots
+     * with equal browser settings start interchangeable browsers, whatever else differs between them.
+     */
+    public RunConfig browserSettings() {
+        Map<String, String> browserSettings = new TreeMap<>();
+        for (String key : BROWSER_KEYS) {
+            String value = get(key, null);
+            if (null != value) {
+                browserSettings.put(key, value);
+            }
+        }
+        browserSettings.put(BROWSER, getDriverType().name());
+        browserSettings.put(HEADLESS, Boolean.toString(isHeadless()));
+        browserSettings.put(LEAN_MODE, Boolean.toString(isLeanMode()));
+        browserSettings.put(REMOTE_DRIVER, Boolean.toString(useRemoteWebDriver()));
+        browserSettings.put(PROXY_ENABLED, Boolean.toString(getBoolean(PROXY_ENABLED)));
+        browserSettings.put(EMBEDDED_PROXY, Boolean.toString(useEmbeddedProxy()));
+        if (null != getLocale()) {
+            browserSettings.put(LANGUAGE, getLocale());
+        }
+        if (null != getPageLoadStrategy()) {
+            browserSettings.put(PAGE_LOAD_STRATEGY, getPageLoadStrategy());
+        }
+
+        return new RunConfig(browserSettings);
+    }
+
+    public String getScreenshotDirectory() {
+        return get(SCREENSHOT_DIRECTORY, "target/screenshots");
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof RunConfig && settings.equals(((RunConfig) other).settings);
+    }
+
+    @Override
+    public int hashCode() {
+        return settings.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        Map<String, String> printable = new TreeMap<>(settings);
+        if (printable.containsKey(PROXY_PASSWORD)) {
+            printable.put(PROXY_PASSWORD, "********");
+        }
+
+        return "RunConfig" + printable;
+    }
+}
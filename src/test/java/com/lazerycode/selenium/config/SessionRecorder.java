@@ -0,0 +1,184 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import static com.lazerycode.selenium.config.DriverTimings.Phase.FIRST_NAVIGATION;
+import static com.lazerycode.selenium.config.DriverTimings.Phase.QUIT;
+
+/**
+ * Records how long a session's first navigation and its quit take, see {@link DriverTimings}, when it was last sent a
+ * command, see {@link DriverRegistry}, the finds that were held up by an implicit wait, see {@link WaitProfiler},
+ * every navigation or window/frame switch, see {@link BrowsingContext}, how long each command takes, see
+ * {@link CommandLatency}, how many commands and screenshots each test sends, see {@link PerfCounters}, what the
+ * browser spent its time on during each navigation, see {@link PageTimings}, and which script timeout it is using,
+ * see {@link DriverTimeouts}.
+ * <p>
+ * Every driver the {@link DriverFactory} starts hands its commands, navigations and quit to a recorder.  Grid sessions
+ * do that through {@link TimedWebDriver}, local sessions are the browser's own driver class, see {@link LocalSession}.
+ */
+class SessionRecorder {
+
+    /**
+     * A driver whose session is recorded.
+     */
+    interface Recorded {
+        SessionRecorder getSessionRecorder();
+    }
+
+    private static final List<String> CONTEXT_CHANGING_COMMANDS = Arrays.asList(
+            DriverCommand.GET,
+            DriverCommand.GO_BACK,
+            DriverCommand.GO_FORWARD,
+            DriverCommand.REFRESH,
+            DriverCommand.SWITCH_TO_WINDOW,
+            DriverCommand.SWITCH_TO_FRAME,
+            DriverCommand.SWITCH_TO_PARENT_FRAME,
+            DriverCommand.CLOSE
+    );
+
+    private final DriverType driverType;
+    private final RemoteWebDriver driver;
+    private volatile boolean navigated;
+    private volatile long lastCommandNanos = System.nanoTime();
+    private volatile long implicitWaitMillis;
+    private volatile long scriptTimeoutMillis;
+    private volatile long contextEpoch;
+    private final Map<String, LatencyHistogram> commandLatency;
+    private final boolean collectPageTimings = PageTimings.isEnabled(RunConfig.suiteConfig());
+
+    /**
+     * @param driver a driver whose session has started
+     */
+    SessionRecorder(DriverType driverType, RemoteWebDriver driver) {
+        this.driverType = driverType;
+        this.driver = driver;
+        this.commandLatency = CommandLatency.newSession(driverType + " " + driver.getSessionId());
+        this.scriptTimeoutMillis = DriverTimeouts.scriptTimeoutMillis(driver.getCapabilities());
+    }
+
+    /**
+     * @return the driver's recorder, or null if it is not recorded
+     */
+    static SessionRecorder of(WebDriver driver) {
+        return driver instanceof Recorded ? ((Recorded) driver).getSessionRecorder() : null;
+    }
+
+    /**
+     * Send a command and record it.
+     *
+     * @param recorder the driver's recorder, null while the driver's constructor is starting the session
+     * @param send     the driver's own execute
+     */
+    static Response execute(SessionRecorder recorder, String driverCommand, Map<String, ?> parameters,
+                            BiFunction<String, Map<String, ?>, Response> send) {
+        long start = System.nanoTime();
+        try {
+            if (null == recorder) {
+                return send.apply(driverCommand, parameters);
+            }
+            recorder.lastCommandNanos = start;
+            return recorder.timedExecute(driverCommand, parameters, start, send);
+        } finally {
+            // The session's histograms do not exist yet while the driver's constructor starts the session
+            CommandLatency.record(null == recorder ? null : recorder.commandLatency, driverCommand, System.nanoTime() - start);
+            PerfCounters.commandSent(driverCommand);
+        }
+    }
+
+    DriverType getDriverType() {
+        return driverType;
+    }
+
+    long getLastCommandNanos() {
+        return lastCommandNanos;
+    }
+
+    long getContextEpoch() {
+        return contextEpoch;
+    }
+
+    long getScriptTimeoutMillis() {
+        return scriptTimeoutMillis;
+    }
+
+    /**
+     * Navigate with the driver's own get and record the navigation.
+     */
+    void get(String url, Consumer<String> load) {
+        long start = System.nanoTime();
+        load.accept(url);
+        long elapsed = System.nanoTime() - start;
+        if (!navigated) {
+            navigated = true;
+            DriverTimings.record(driverType, FIRST_NAVIGATION, start);
+        }
+        if (collectPageTimings && PageTimings.isWebPage(url)) {
+            PerfCounters.pause();
+            try {
+                PageTimings.collect(driver, url, elapsed);
+            } finally {
+                PerfCounters.resume();
+            }
+        }
+    }
+
+    /**
+     * Quit with the driver's own quit and record how long it took.
+     */
+    void quit(Runnable quit) {
+        if (null == driver.getSessionId()) {
+            quit.run();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            quit.run();
+            DriverTimings.record(driverType, QUIT, start);
+        } finally {
+            DriverRegistry.getInstance().unregister(driver);
+        }
+    }
+
+    private Response timedExecute(String driverCommand, Map<String, ?> parameters, long start, BiFunction<String, Map<String, ?>, Response> send) {
+        if (CONTEXT_CHANGING_COMMANDS.contains(driverCommand)) {
+            contextEpoch++;
+        }
+        if (0 == implicitWaitMillis || !isFind(driverCommand)) {
+            Response response = send.apply(driverCommand, parameters);
+            if (DriverCommand.SET_TIMEOUT.equals(driverCommand) && parameters.get("implicit") instanceof Number) {
+                implicitWaitMillis = ((Number) parameters.get("implicit")).longValue();
+            }
+            if (DriverCommand.SET_TIMEOUT.equals(driverCommand) && parameters.get("script") instanceof Number) {
+                scriptTimeoutMillis = ((Number) parameters.get("script")).longValue();
+            }
+            return response;
+        }
+        String locator = parameters.get("using") + ": " + parameters.get("value");
+        try {
+            Response response = send.apply(driverCommand, parameters);
+            Object value = response.getValue();
+            WaitProfiler.recordImplicitWait(locator, implicitWaitMillis, System.nanoTime() - start,
+                    !(value instanceof Collection) || !((Collection<?>) value).isEmpty());
+            return response;
+        } catch (NoSuchElementException notFound) {
+            WaitProfiler.recordImplicitWait(locator, implicitWaitMillis, System.nanoTime() - start, false);
+            throw notFound;
+        }
+    }
+
+    private static boolean isFind(String driverCommand) {
+        return DriverCommand.FIND_ELEMENT.equals(driverCommand) || DriverCommand.FIND_ELEMENTS.equals(driverCommand)
+                || DriverCommand.FIND_CHILD_ELEMENT.equals(driverCommand) || DriverCommand.FIND_CHILD_ELEMENTS.equals(driverCommand);
+    }
+}
@@ -0,0 +1,197 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.NoAlertPresentException;
+import org.openqa.selenium.UnhandledAlertException;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.lazerycode.selenium.config.DriverTimings.Phase.SESSION_RESET;
+
+/**
+ * Return a browser session to a clean state so that it can be reused by another test.
+ * <p>
+ * Open alerts are dismissed, extra windows are closed and then a single injected script clears localStorage,
+ * sessionStorage, IndexedDB, service worker registrations and Cache Storage for the current origin and reports anything
+ * that survived.  Cookies are deleted and the browser is parked on about:blank.  A reset that leaves anything behind,
+ * or that fails part way through, is reported as not clean and the session should be recycled.  How long resets take
+ * is recorded as the SESSION_RESET phase of the {@link DriverTimings} and summarised at the end of the suite.
+ */
+public class SessionReset {
+
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "var done = arguments[arguments.length - 1];" +
+            "try { window.localStorage.clear(); } catch (e) {}" +
+            "try { window.sessionStorage.clear(); } catch (e) {}" +
+            "if (!window.Promise) { done([]); return; }" +
+            "var pending = [];" +
+            "function settle(promise) { pending.push(promise.then(function () {}, function () {})); }" +
+            "if (window.indexedDB && indexedDB.databases) {" +
+            "  settle(indexedDB.databases().then(function (databases) {" +
+            "    return Promise.all(databases.map(function (database) {" +
+            "      return new Promise(function (resolve) {" +
+            "        var request = indexedDB.deleteDatabase(database.name);" +
+            "        request.onsuccess = request.onerror = request.onblocked = resolve;" +
+            "      });" +
+            "    }));" +
+            "  }));" +
+            "}" +
+            "if (navigator.serviceWorker && navigator.serviceWorker.getRegistrations) {" +
+            "  settle(navigator.serviceWorker.getRegistrations().then(function (registrations) {" +
+            "    return Promise.all(registrations.map(function (registration) { return registration.unregister(); }));" +
+            "  }));" +
+            "}" +
+            "if (window.caches && caches.keys) {" +
+            "  settle(caches.keys().then(function (keys) {" +
+            "    return Promise.all(keys.map(function (key) { return caches['delete'](key); }));" +
+            "  }));" +
+            "}" +
+            "Promise.all(pending).then(function () {" +
+            "  var leftovers = [];" +
+            "  try { if (window.localStorage.length) { leftovers.push('localStorage'); } } catch (e) {}" +
+            "  try { if (window.sessionStorage.length) { leftovers.push('sessionStorage'); } } catch (e) {}" +
+            "  var checks = [];" +
+            "  if (window.indexedDB && indexedDB.databases) {" +
+            "    checks.push(indexedDB.databases().then(function (databases) {" +
+            "      if (databases.length) { leftovers.push('indexedDB'); }" +
+            "    }, function () {}));" +
+            "  }" +
+            "  if (navigator.serviceWorker && navigator.serviceWorker.getRegistrations) {" +
+            "    checks.push(navigator.serviceWorker.getRegistrations().then(function (registrations) {" +
+            "      if (registrations.length) { leftovers.push('serviceWorkers'); }" +
+            "    }, function () {}));" +
+            "  }" +
+            "  Promise.all(checks).then(function () { done(leftovers); });" +
+            "});";
+
+    private static final AtomicLong resets = new AtomicLong();
+    private static final AtomicLong failedResets = new AtomicLong();
+    private static final AtomicLong totalResetMillis = new AtomicLong();
+    private static final AtomicLong slowestResetMillis = new AtomicLong();
+
+    public static Result reset(RemoteWebDriver driver) {
+        long start = System.nanoTime();
+        List<String> leftovers = new ArrayList<>();
+        try {
+            dismissAlert(driver);
+            closeExtraWindows(driver);
+            driver.switchTo().defaultContent();
+            leftovers.addAll(clearStorage(driver));
+            driver.manage().deleteAllCookies();
+            driver.get("about:blank");
+        } catch (Exception resetFailed) {
+            leftovers.add("reset failed: " + resetFailed.getClass().getSimpleName());
+        }
+        SessionRecorder recorder = SessionRecorder.of(driver);
+        if (null != recorder) {
+            DriverTimings.record(recorder.getDriverType(), SESSION_RESET, start);
+        }
+
+        return record(new Result(leftovers, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    public static long getResetCount() {
+        return resets.get();
+    }
+
+    public static long getFailedResetCount() {
+        return failedResets.get();
+    }
+
+    public static long getTotalResetMillis() {
+        return totalResetMillis.get();
+    }
+
+    public static long getSlowestResetMillis() {
+        return slowestResetMillis.get();
+    }
+
+    private static void closeExtraWindows(RemoteWebDriver driver) {
+        Iterator<String> windowHandles = driver.getWindowHandles().iterator();
+        String firstWindow = windowHandles.next();
+        if (!windowHandles.hasNext()) {
+            return;
+        }
+        while (windowHandles.hasNext()) {
+            driver.switchTo().window(windowHandles.next());
+            dismissAlert(driver);
+            driver.close();
+        }
+        driver.switchTo().window(firstWindow);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> clearStorage(RemoteWebDriver driver) {
+        Object leftovers;
+        try {
+            leftovers = driver.executeAsyncScript(CLEAR_STORAGE_SCRIPT);
+        } catch (UnhandledAlertException alertOpenedDuringReset) {
+            dismissAlert(driver);
+            leftovers = driver.executeAsyncScript(CLEAR_STORAGE_SCRIPT);
+        }
+
+        return leftovers instanceof List ? (List<String>) leftovers : Collections.emptyList();
+    }
+
+    private static void dismissAlert(RemoteWebDriver driver) {
+        try {
+            driver.switchTo().alert().dismiss();
+        } catch (NoAlertPresentException ignored) {
+            // Nothing to dismiss
+        }
+    }
+
+    /**
+     * @return a one line summary of every reset so far, or null if no session has been reset
+     */
+    public static String summary() {
+        long count = resets.get();
+        if (0 == count) {
+            return null;
+        }
+
+        return String.format("Session resets: %d, %d not clean, %dms in total, %dms on average, slowest %dms",
+                count, failedResets.get(), totalResetMillis.get(), totalResetMillis.get() / count, slowestResetMillis.get());
+    }
+
+    private static Result record(Result result) {
+        resets.incrementAndGet();
+        if (!result.isClean()) {
+            failedResets.incrementAndGet();
+        }
+        totalResetMillis.addAndGet(result.getDurationMillis());
+        slowestResetMillis.accumulateAndGet(result.getDurationMillis(), Math::max);
+
+        return result;
+    }
+
+    public static class Result {
+        private final List<String> leftovers;
+        private final long durationMillis;
+
+        private Result(List<String> leftovers, long durationMillis) {
+            this.leftovers = Collections.unmodifiableList(leftovers);
+            this.durationMillis = durationMillis;
+        }
+
+        public boolean isClean() {
+            return leftovers.isEmpty();
+        }
+
+        /**
+         * @return the kinds of state that could not be cleared
+         */
+        public List<String> getLeftovers() {
+            return leftovers;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.NoAlertPresentException;
+import org.openqa.selenium.UnhandledAlertException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionResetTest {
+
+    @Test
+    public void alertLeftOpenByTheTestIsDismissedBeforeTheReset() {
+        AlertingBrowser browser = new AlertingBrowser();
+        RemoteWebDriver driver = new RemoteWebDriver(browser, new ImmutableCapabilities());
+        browser.alertOpen = true;
+
+        SessionReset.Result result = SessionReset.reset(driver);
+
+        assertThat(result.isClean()).as("leftovers %s", result.getLeftovers()).isTrue();
+        assertThat(browser.commands).startsWith(DriverCommand.GET_ALERT_TEXT, DriverCommand.DISMISS_ALERT).contains(DriverCommand.GET);
+    }
+
+    @Test
+    public void resetWithoutAnAlertIsClean() {
+        AlertingBrowser browser = new AlertingBrowser();
+        RemoteWebDriver driver = new RemoteWebDriver(browser, new ImmutableCapabilities());
+
+        SessionReset.Result result = SessionReset.reset(driver);
+
+        assertThat(result.isClean()).as("leftovers %s", result.getLeftovers()).isTrue();
+        assertThat(SessionReset.summary()).startsWith("Session resets: ");
+    }
+
+    /**
+     * A single window browser that refuses every command but reading and dismissing the alert while an alert is open.
+     */
+    private static class AlertingBrowser implements CommandExecutor {
+        private final List<String> commands = new ArrayList<>();
+        private boolean alertOpen;
+
+        @Override
+        public Response execute(Command command) {
+            String name = command.getName();
+            Response response = new Response();
+            response.setSessionId("session");
+            response.setStatus(0);
+            if (DriverCommand.NEW_SESSION.equals(name)) {
+                response.setValue(Collections.singletonMap("browserName", "fake"));
+                return response;
+            }
+            commands.add(name);
+            if (DriverCommand.GET_ALERT_TEXT.equals(name) || DriverCommand.DISMISS_ALERT.equals(name)) {
+                if (!alertOpen) {
+                    throw new NoAlertPresentException();
+                }
+                alertOpen = !DriverCommand.DISMISS_ALERT.equals(name);
+                response.setValue("Leave this page?");
+            } else if (alertOpen) {
+                throw new UnhandledAlertException("unexpected alert open");
+            } else if (DriverCommand.GET_WINDOW_HANDLES.equals(name)) {
+                response.setValue(Collections.singletonList("window"));
+            } else if (DriverCommand.EXECUTE_ASYNC_SCRIPT.equals(name)) {
+                response.setValue(Collections.emptyList());
+            }
+
+            return response;
+        }
+    }
+}
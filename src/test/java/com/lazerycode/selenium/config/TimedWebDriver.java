@@ -0,0 +1,41 @@
+package com.lazerycode.selenium.config;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+
+import java.util.Map;
+
+/**
+ * A RemoteWebDriver whose session is recorded by a {@link SessionRecorder}.
+ */
+class TimedWebDriver extends RemoteWebDriver implements SessionRecorder.Recorded {
+
+    private final SessionRecorder recorder;
+
+    TimedWebDriver(DriverType driverType, CommandExecutor executor, Capabilities capabilities) {
+        super(executor, capabilities);
+        this.recorder = new SessionRecorder(driverType, this);
+    }
+
+    @Override
+    public SessionRecorder getSessionRecorder() {
+        return recorder;
+    }
+
+    @Override
+    protected Response execute(String driverCommand, Map<String, ?> parameters) {
+        return SessionRecorder.execute(recorder, driverCommand, parameters, super::execute);
+    }
+
+    @Override
+    public void get(String url) {
+        recorder.get(url, super::get);
+    }
+
+    @Override
+    public void quit() {
+        recorder.quit(super::quit);
+    }
+}
@@ -0,0 +1,245 @@
+package com.lazerycode.selenium.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the suite spends its time waiting, collected per call site across the whole suite.
+ * <p>
+ * Explicit waits report themselves through {@link #begin(String, String, long)}: the condition, the locator, the
+ * configured timeout, how long the wait actually took and how many times the page was asked.  Implicit waits are seen
+ * by {@link SessionRecorder}, which records every find command that blocked for a noticeable time.  Two patterns are
+ * flagged because they only ever show up as a slow suite:
+ * <ul>
+ * <li>a find that missed and so burned the whole implicit timeout, usually an "is it absent?" check</li>
+ * <li>a find inside an explicit wait while an implicit wait is set, every poll can then block for the implicit timeout
+ * and the explicit timeout no longer means what it says</li>
+ * </ul>
+ * Call sites are the first stack frame outside this framework and Selenium.  At the end of the suite the slowest call
+ * sites are printed and everything is written as JSON to -DwaitReport (target/wait-profile.json by default).
+ */
+public class WaitProfiler {
+
+    public static final String IMPLICIT = "implicit wait";
+
+    private static final long NOTICEABLE_IMPLICIT_WAIT_MILLIS = 100;
+    private static final int SLOWEST_CALL_SITES = 10;
+    private static final String[] FRAMEWORK_PACKAGES = {
+            "java.", "javax.", "sun.", "jdk.", "com.sun.", "org.openqa.selenium.", "org.testng.", "com.google.common.",
+            "com.lazerycode.selenium.config.", "com.lazerycode.selenium.utils.DomWait",
+            "com.lazerycode.selenium.utils.TVTUtil", "com.lazerycode.selenium.util.",
+            "com.lazerycode.selenium.page_objects.ElementCache", "com.lazerycode.selenium.page_objects.BatchedPO",
+            "com.lazerycode.selenium.page_objects.BasePO"
+    };
+
+    private static final Map<String, CallSite> callSites = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Wait> activeWait = new ThreadLocal<>();
+
+    /**
+     * Start timing an explicit wait on the current thread, it must be finished with {@link Wait#end(boolean)}.
+     *
+     * @param condition     what is being waited for, e.g. "visible"
+     * @param locator       the element being waited for, or null
+     * @param timeoutMillis the configured timeout
+     */
+    public static Wait begin(String condition, String locator, long timeoutMillis) {
+        Wait wait = new Wait(condition, locator, timeoutMillis, activeWait.get());
+        activeWait.set(wait);
+
+        return wait;
+    }
+
+    /**
+     * Record a find command that was subject to an implicit wait.
+     *
+     * @param locator         the locator the find used
+     * @param implicitMillis  the implicit wait in force
+     * @param elapsedNanos    how long the find took
+     * @param found           false if nothing was found, which means the whole implicit wait was spent
+     */
+    static void recordImplicitWait(String locator, long implicitMillis, long elapsedNanos, boolean found) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        Wait explicitWait = activeWait.get();
+        if (null != explicitWait) {
+            explicitWait.implicitMillis = implicitMillis;
+        }
+        if (found && elapsedMillis < NOTICEABLE_IMPLICIT_WAIT_MILLIS && null == explicitWait) {
+            return;
+        }
+        callSiteFor(IMPLICIT, locator).add(implicitMillis, elapsedMillis, 1, found, !found, null == explicitWait ? 0 : implicitMillis);
+    }
+
+    /**
+     * @return call site statistics, slowest total time first.
+     */
+    public static List<Map<String, Object>> summary() {
+        List<CallSite> sorted = new ArrayList<>(callSites.values());
+        sorted.sort((first, second) -> Long.compare(second.totalMillis, first.totalMillis));
+        List<Map<String, Object>> summary = new ArrayList<>();
+        for (CallSite callSite : sorted) {
+            summary.add(callSite.statistics());
+        }
+
+        return summary;
+    }
+
+    /**
+     * Print the slowest call sites and write every call site as JSON, nothing is written if nothing waited.
+     */
+    public static void writeReport(File report) throws IOException {
+        List<Map<String, Object>> summary = summary();
+        if (summary.isEmpty()) {
+            return;
+        }
+        JsonReport.write(report, summary);
+        System.out.println("Slowest waits (full profile in " + report.getPath() + "):");
+        for (Map<String, Object> callSite : summary.subList(0, Math.min(SLOWEST_CALL_SITES, summary.size()))) {
+            System.out.println(String.format("  %s %s at %s: %d wait(s), %dms total, %dms max, %d timed out%s",
+                    callSite.get("condition"), callSite.get("locator"), callSite.get("callSite"), callSite.get("waits"),
+                    callSite.get("totalMillis"), callSite.get("maxMillis"), callSite.get("timeouts"), warnings(callSite)));
+        }
+    }
+
+    private static String warnings(Map<String, Object> callSite) {
+        StringBuilder warnings = new StringBuilder();
+        if ((Long) callSite.get("implicitTimeoutsBurned") > 0) {
+            warnings.append(", ").append(callSite.get("implicitTimeoutsBurned")).append(" burned the implicit wait");
+        }
+        if ((Long) callSite.get("implicitInsideExplicit") > 0) {
+            warnings.append(", implicit wait of ").append(callSite.get("implicitWaitMillis")).append("ms inside an explicit wait");
+        }
+
+        return warnings.toString();
+    }
+
+    private static CallSite callSiteFor(String condition, String locator) {
+        String location = callerLocation();
+        String key = condition + '\u0000' + locator + '\u0000' + location;
+
+        return callSites.computeIfAbsent(key, unused -> new CallSite(condition, locator, location));
+    }
+
+    private static String callerLocation() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            if (!isFramework(frame.getClassName())) {
+                return frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+
+        return "unknown";
+    }
+
+    private static boolean isFramework(String className) {
+        for (String frameworkPackage : FRAMEWORK_PACKAGES) {
+            if (className.startsWith(frameworkPackage)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static class Wait {
+        private final String condition;
+        private final String locator;
+        private final long timeoutMillis;
+        private final Wait enclosingWait;
+        private final long startNanos = System.nanoTime();
+        private int polls;
+        private long implicitMillis;
+
+        private Wait(String condition, String locator, long timeoutMillis, Wait enclosingWait) {
+            this.condition = condition;
+            this.locator = locator;
+            this.timeoutMillis = timeoutMillis;
+            this.enclosingWait = enclosingWait;
+        }
+
+        /**
+         * Count one round trip to the browser.
+         */
+        public void poll() {
+            polls++;
+        }
+
+        /**
+         * @param satisfied false if the wait timed out or failed
+         */
+        public void end(boolean satisfied) {
+            if (enclosingWait == null) {
+                activeWait.remove();
+            } else {
+                activeWait.set(enclosingWait);
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            callSiteFor(condition, locator).add(timeoutMillis, elapsedMillis, polls, satisfied, false, implicitMillis);
+        }
+    }
+
+    private static class CallSite {
+        private final String condition;
+        private final String locator;
+        private final String location;
+        private long waits;
+        private long totalMillis;
+        private long maxMillis;
+        private long timeoutMillis;
+        private long polls;
+        private long timeouts;
+        private long implicitTimeoutsBurned;
+        private long implicitInsideExplicit;
+        private long implicitWaitMillis;
+
+        private CallSite(String condition, String locator, String location) {
+            this.condition = condition;
+            this.locator = locator;
+            this.location = location;
+        }
+
+        /**
+         * @param implicitInsideExplicitMillis the implicit wait in force during an explicit wait, 0 if there was none
+         */
+        private synchronized void add(long timeoutMillis, long elapsedMillis, int polls, boolean satisfied, boolean burnedImplicitWait, long implicitInsideExplicitMillis) {
+            this.waits++;
+            this.totalMillis += elapsedMillis;
+            this.maxMillis = Math.max(maxMillis, elapsedMillis);
+            this.timeoutMillis = timeoutMillis;
+            this.polls += polls;
+            if (!satisfied) {
+                this.timeouts++;
+            }
+            if (burnedImplicitWait) {
+                this.implicitTimeoutsBurned++;
+            }
+            if (implicitInsideExplicitMillis > 0) {
+                this.implicitInsideExplicit++;
+                this.implicitWaitMillis = implicitInsideExplicitMillis;
+            }
+        }
+
+        private synchronized Map<String, Object> statistics() {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("condition", condition);
+            statistics.put("locator", null == locator ? "" : locator);
+            statistics.put("callSite", location);
+            statistics.put("waits", waits);
+            statistics.put("totalMillis", totalMillis);
+            statistics.put("maxMillis", maxMillis);
+            statistics.put("meanMillis", 0 == waits ? 0 : totalMillis / waits);
+            statistics.put("timeoutMillis", timeoutMillis);
+            statistics.put("polls", polls);
+            statistics.put("timeouts", timeouts);
+            statistics.put("implicitTimeoutsBurned", implicitTimeoutsBurned);
+            statistics.put("implicitInsideExplicit", implicitInsideExplicit);
+            statistics.put("implicitWaitMillis", implicitWaitMillis);
+
+            return statistics;
+        }
+    }
+}
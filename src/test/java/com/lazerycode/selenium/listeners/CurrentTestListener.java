@@ -0,0 +1,27 @@
+package com.lazerycode.selenium.listeners;
+
+import com.lazerycode.selenium.config.DriverRegistry;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+/**
+ * Tell the {@link DriverRegistry} which test each thread is running, so that live sessions can be traced back to the
+ * test that owns them.
+ */
+public class CurrentTestListener implements IInvokedMethodListener {
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod()) {
+            DriverRegistry.setCurrentTest(method.getTestMethod().getQualifiedName());
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod()) {
+            DriverRegistry.setCurrentTest(null);
+        }
+    }
+}
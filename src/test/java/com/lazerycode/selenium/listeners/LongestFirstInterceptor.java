@@ -0,0 +1,217 @@
+package com.lazerycode.selenium.listeners;
+
+import com.lazerycode.selenium.config.RunConfig;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestResult;
+import org.testng.TestListenerAdapter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Start the longest test methods first, so that a few long tests that happen to start last do not hold up the end of
+ * a parallel run.
+ * <p>
+ * How long each test method took is remembered between runs in -DtestDurations (test-durations.properties in the
+ * project directory by default), as a moving average that gives the latest run and the history equal weight.  Before
+ * a run the methods are ordered longest estimate first (longest processing time first scheduling), so that the
+ * short tests at the end fill the gaps between the worker threads.  A method that has never run is estimated at the
+ * median of the other methods in its class, or of every known method if its class is new too.  The estimated
+ * makespan for the thread count is printed, for comparison with the total work divided by the number of threads.
+ * Set -DlongestFirst=false to keep TestNG's own order, durations are still recorded.
+ */
+public class LongestFirstInterceptor extends TestListenerAdapter implements IMethodInterceptor, ISuiteListener {
+
+    private static final Map<String, Long> history = new ConcurrentHashMap<>();
+    private static final Map<String, long[]> observed = new ConcurrentHashMap<>();
+    private static volatile boolean historyLoaded;
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        loadHistory();
+        if (!Boolean.parseBoolean(RunConfig.suiteConfig().get(RunConfig.LONGEST_FIRST, "true")) || methods.size() < 2) {
+            return methods;
+        }
+        Map<IMethodInstance, Long> estimates = new IdentityHashMap<>();
+        long totalWork = 0;
+        for (IMethodInstance method : methods) {
+            long estimate = estimateFor(method, history);
+            estimates.put(method, estimate);
+            totalWork += estimate;
+        }
+        if (0 == totalWork) {
+            // Nothing is known about these tests yet
+            return methods;
+        }
+        List<IMethodInstance> ordered = longestFirst(methods, estimates);
+        int threads = Math.max(1, context.getCurrentXmlTest().getThreadCount());
+        System.out.println(String.format("Ordered %d test method(s) longest first: estimated %.1fs of work, %.1fs on %d thread(s) (ideal %.1fs)",
+                ordered.size(), totalWork / 1000.0, makespan(ordered, estimates, threads) / 1000.0, threads, totalWork / 1000.0 / threads));
+
+        return ordered;
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        record(result);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        record(result);
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        record(result);
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        loadHistory();
+    }
+
+    /**
+     * Fold the durations seen in this run into the history and save it.
+     */
+    @Override
+    public void onFinish(ISuite suite) {
+        if (observed.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, long[]> method : observed.entrySet()) {
+            long[] totals = method.getValue();
+            long average;
+            synchronized (totals) {
+                average = totals[0] / totals[1];
+            }
+            Long previous = history.get(method.getKey());
+            history.put(method.getKey(), null == previous ? average : (previous + average) / 2);
+        }
+        observed.clear();
+        File durations = durationsFile();
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> method : history.entrySet()) {
+            properties.setProperty(method.getKey(), Long.toString(method.getValue()));
+        }
+        File parent = durations.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        try (OutputStream output = new FileOutputStream(durations)) {
+            properties.store(output, "Test method durations in milliseconds, used to start the longest tests first");
+        } catch (IOException ex) {
+            System.err.println("Unable to write test durations: " + ex.getMessage());
+        }
+    }
+
+    private static void record(ITestResult result) {
+        long elapsed = result.getEndMillis() - result.getStartMillis();
+        long[] totals = observed.computeIfAbsent(result.getMethod().getQualifiedName(), unused -> new long[2]);
+        synchronized (totals) {
+            totals[0] += Math.max(0, elapsed);
+            totals[1]++;
+        }
+    }
+
+    private static synchronized void loadHistory() {
+        if (historyLoaded) {
+            return;
+        }
+        historyLoaded = true;
+        File durations = durationsFile();
+        if (!durations.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = new FileInputStream(durations)) {
+            properties.load(input);
+        } catch (IOException ex) {
+            System.err.println("Unable to read test durations: " + ex.getMessage());
+            return;
+        }
+        for (String method : properties.stringPropertyNames()) {
+            try {
+                history.put(method, Long.parseLong(properties.getProperty(method).trim()));
+            } catch (NumberFormatException ignored) {
+                System.err.println("Ignoring unreadable duration for " + method);
+            }
+        }
+    }
+
+    private static File durationsFile() {
+        return new File(RunConfig.suiteConfig().get(RunConfig.TEST_DURATIONS, "test-durations.properties"));
+    }
+
+    /**
+     * @return the methods ordered longest estimate first, methods with equal estimates keep their order
+     */
+    static List<IMethodInstance> longestFirst(List<IMethodInstance> methods, Map<IMethodInstance, Long> estimates) {
+        List<IMethodInstance> ordered = new ArrayList<>(methods);
+        ordered.sort(Comparator.comparing(estimates::get, Comparator.reverseOrder()));
+
+        return ordered;
+    }
+
+    /**
+     * @return how long the method took before, or the median of its class or of every known method if it is new
+     */
+    static long estimateFor(IMethodInstance method, Map<String, Long> knownDurations) {
+        String name = method.getMethod().getQualifiedName();
+        Long known = knownDurations.get(name);
+        if (null != known) {
+            return known;
+        }
+        String classPrefix = method.getMethod().getRealClass().getName() + ".";
+        List<Long> sameClass = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : knownDurations.entrySet()) {
+            if (entry.getKey().startsWith(classPrefix)) {
+                sameClass.add(entry.getValue());
+            }
+        }
+
+        return sameClass.isEmpty() ? median(new ArrayList<>(knownDurations.values())) : median(sameClass);
+    }
+
+    static long median(List<Long> durations) {
+        if (durations.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(durations);
+
+        return durations.get(durations.size() / 2);
+    }
+
+    /**
+     * @return when the last thread would finish if each method went to the thread that becomes free first
+     */
+    static long makespan(List<IMethodInstance> ordered, Map<IMethodInstance, Long> estimates, int threads) {
+        PriorityQueue<Long> finishTimes = new PriorityQueue<>();
+        for (int i = 0; i < threads; i++) {
+            finishTimes.add(0L);
+        }
+        long makespan = 0;
+        for (IMethodInstance method : ordered) {
+            long finish = finishTimes.poll() + estimates.get(method);
+            finishTimes.add(finish);
+            makespan = Math.max(makespan, finish);
+        }
+
+        return makespan;
+    }
+}
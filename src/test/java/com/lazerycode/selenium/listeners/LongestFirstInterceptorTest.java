@@ -0,0 +1,139 @@
+package com.lazerycode.selenium.listeners;
+
+import org.testng.IMethodInstance;
+import org.testng.ITestNGMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongestFirstInterceptorTest {
+
+    private static final String THIS_CLASS = LongestFirstInterceptorTest.class.getName() + ".";
+    private static final String OTHER_CLASS = PerfBudget.class.getName() + ".";
+
+    @Test
+    public void aMethodThatRanBeforeIsEstimatedAtItsRecordedDuration() {
+        Map<String, Long> history = new HashMap<>();
+        history.put(THIS_CLASS + "known", 1234L);
+
+        assertThat(LongestFirstInterceptor.estimateFor(method(LongestFirstInterceptorTest.class, "known"), history)).isEqualTo(1234);
+    }
+
+    @Test
+    public void aNewMethodIsEstimatedAtTheMedianOfItsClass() {
+        Map<String, Long> history = new HashMap<>();
+        history.put(THIS_CLASS + "first", 100L);
+        history.put(THIS_CLASS + "second", 300L);
+        history.put(THIS_CLASS + "third", 200L);
+        history.put(OTHER_CLASS + "slow", 5000L);
+
+        assertThat(LongestFirstInterceptor.estimateFor(method(LongestFirstInterceptorTest.class, "new"), history)).isEqualTo(200);
+    }
+
+    @Test
+    public void aMethodInANewClassIsEstimatedAtTheMedianOfEveryKnownMethod() {
+        Map<String, Long> history = new HashMap<>();
+        history.put(OTHER_CLASS + "first", 100L);
+        history.put(OTHER_CLASS + "second", 200L);
+        history.put(OTHER_CLASS + "third", 5000L);
+
+        assertThat(LongestFirstInterceptor.estimateFor(method(LongestFirstInterceptorTest.class, "new"), history)).isEqualTo(200);
+    }
+
+    @Test
+    public void nothingKnownEstimatesZero() {
+        assertThat(LongestFirstInterceptor.estimateFor(method(LongestFirstInterceptorTest.class, "new"), Collections.emptyMap())).isZero();
+        assertThat(LongestFirstInterceptor.median(Arrays.asList(3L, 1L, 4L, 2L))).isEqualTo(3);
+    }
+
+    @Test
+    public void methodsAreOrderedLongestFirstAndTiesKeepTheirOrder() {
+        IMethodInstance shortTest = method(LongestFirstInterceptorTest.class, "short");
+        IMethodInstance firstTie = method(LongestFirstInterceptorTest.class, "firstTie");
+        IMethodInstance longTest = method(LongestFirstInterceptorTest.class, "long");
+        IMethodInstance secondTie = method(LongestFirstInterceptorTest.class, "secondTie");
+        Map<IMethodInstance, Long> estimates = estimates(Arrays.asList(shortTest, firstTie, longTest, secondTie), 1, 5, 9, 5);
+
+        assertThat(LongestFirstInterceptor.longestFirst(Arrays.asList(shortTest, firstTie, longTest, secondTie), estimates))
+                .containsExactly(longTest, firstTie, secondTie, shortTest);
+    }
+
+    @Test
+    public void longestFirstShortensTheMakespan() {
+        List<IMethodInstance> shortestFirst = Arrays.asList(
+                method(LongestFirstInterceptorTest.class, "a"),
+                method(LongestFirstInterceptorTest.class, "b"),
+                method(LongestFirstInterceptorTest.class, "c"),
+                method(LongestFirstInterceptorTest.class, "d"),
+                method(LongestFirstInterceptorTest.class, "e"));
+        Map<IMethodInstance, Long> estimates = estimates(shortestFirst, 1, 3, 4, 5, 7);
+        List<IMethodInstance> longestFirst = LongestFirstInterceptor.longestFirst(shortestFirst, estimates);
+
+        assertThat(LongestFirstInterceptor.makespan(shortestFirst, estimates, 2)).isEqualTo(12);
+        assertThat(LongestFirstInterceptor.makespan(longestFirst, estimates, 2)).isEqualTo(10);
+        assertThat(LongestFirstInterceptor.makespan(longestFirst, estimates, 1)).isEqualTo(20);
+    }
+
+    private static Map<IMethodInstance, Long> estimates(List<IMethodInstance> methods, long... durations) {
+        Map<IMethodInstance, Long> estimates = new IdentityHashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            estimates.put(methods.get(i), durations[i]);
+        }
+
+        return estimates;
+    }
+
+    /**
+     * @return a method instance that only knows its name and class, which is all the interceptor looks at
+     */
+    private static IMethodInstance method(Class<?> testClass, String name) {
+        ITestNGMethod testMethod = (ITestNGMethod) Proxy.newProxyInstance(ITestNGMethod.class.getClassLoader(), new Class<?>[]{ITestNGMethod.class},
+                (proxy, invoked, arguments) -> {
+                    switch (invoked.getName()) {
+                        case "getQualifiedName":
+                            return testClass.getName() + "." + name;
+                        case "getRealClass":
+                            return testClass;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == arguments[0];
+                        case "toString":
+                            return name;
+                        default:
+                            throw new UnsupportedOperationException(invoked.getName());
+                    }
+                });
+
+        return new IMethodInstance() {
+            @Override
+            public ITestNGMethod getMethod() {
+                return testMethod;
+            }
+
+            @Override
+            @Deprecated
+            public Object[] getInstances() {
+                return new Object[0];
+            }
+
+            @Override
+            public Object getInstance() {
+                return null;
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.lazerycode.selenium.listeners;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The most a test is allowed to cost, enforced by {@link PerfBudgetListener}.
+ * <p>
+ * Put it on a test method, or on a test class to give every test method in it the same budget (an annotation on the
+ * method wins).  Limits that are left out are not checked.  A test that goes over budget fails, or only logs a warning
+ * if warnOnly is set.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface PerfBudget {
+
+    long UNLIMITED = -1;
+
+    /**
+     * @return the longest the test method may take, in milliseconds
+     */
+    long wallTimeMillis() default UNLIMITED;
+
+    /**
+     * @return the most WebDriver commands the test may send
+     */
+    long commands() default UNLIMITED;
+
+    /**
+     * @return the most screenshots the test may take
+     */
+    long screenshots() default UNLIMITED;
+
+    /**
+     * @return the most bytes of captures the test may write to disk
+     */
+    long bytesWritten() default UNLIMITED;
+
+    /**
+     * @return true to log a warning instead of failing the test when it goes over budget
+     */
+    boolean warnOnly() default false;
+}
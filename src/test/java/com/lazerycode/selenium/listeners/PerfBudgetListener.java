@@ -0,0 +1,135 @@
+package com.lazerycode.selenium.listeners;
+
+import com.lazerycode.selenium.config.JsonReport;
+import com.lazerycode.selenium.config.PerfCounters;
+import com.lazerycode.selenium.config.RunConfig;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Check every test method that has a {@link PerfBudget} against it.
+ * <p>
+ * Wall time is measured around the test method, WebDriver commands, screenshots and bytes written are taken from the
+ * thread's {@link PerfCounters}.  Actual against budget is logged to the TestNG report for every budgeted test, a
+ * test that went over budget fails unless its budget is warnOnly, and the results are written as JSON to
+ * -DperfBudgetReport (target/perf-budgets.json by default).  -DperfBudgets=warn turns every breach into a warning
+ * and -DperfBudgets=off stops budgets from being checked.
+ */
+public class PerfBudgetListener implements IInvokedMethodListener {
+
+    private static final ThreadLocal<Long> testStart = new ThreadLocal<>();
+    private static final Queue<Map<String, Object>> results = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (method.isTestMethod()) {
+            PerfCounters.current().reset();
+            testStart.set(System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod() || null == testStart.get()) {
+            return;
+        }
+        long wallTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - testStart.get());
+        testStart.remove();
+        String mode = RunConfig.suiteConfig().get(RunConfig.PERF_BUDGETS, "enforce");
+        PerfBudget budget = budgetFor(method);
+        if (null == budget || "off".equalsIgnoreCase(mode)) {
+            return;
+        }
+        PerfCounters counters = PerfCounters.current();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("test", method.getTestMethod().getQualifiedName());
+        List<String> breaches = new ArrayList<>();
+        check(result, breaches, "wallTimeMillis", wallTimeMillis, budget.wallTimeMillis());
+        check(result, breaches, "commands", counters.getCommands(), budget.commands());
+        check(result, breaches, "screenshots", counters.getScreenshots(), budget.screenshots());
+        check(result, breaches, "bytesWritten", counters.getBytesWritten(), budget.bytesWritten());
+        boolean warnOnly = budget.warnOnly() || "warn".equalsIgnoreCase(mode);
+        result.put("breaches", breaches);
+        result.put("failed", !breaches.isEmpty() && !warnOnly);
+        results.add(result);
+
+        Reporter.log("Performance budget for " + result.get("test") + ": " + describe(result), false);
+        if (breaches.isEmpty()) {
+            return;
+        }
+        String message = result.get("test") + " is over its performance budget: " + describe(result);
+        if (warnOnly || ITestResult.SUCCESS != testResult.getStatus()) {
+            System.err.println("WARNING: " + message);
+            return;
+        }
+        testResult.setStatus(ITestResult.FAILURE);
+        testResult.setThrowable(new AssertionError(message));
+    }
+
+    /**
+     * Write the actual against budget figures for every budgeted test, nothing is written if no test had a budget.
+     */
+    public static void writeReport(File report) throws IOException {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> tests = new ArrayList<>(results);
+        int breached = 0;
+        for (Map<String, Object> test : tests) {
+            if (!((List<?>) test.get("breaches")).isEmpty()) {
+                breached++;
+            }
+        }
+        JsonReport.write(report, tests);
+        System.out.println(breached + " of " + tests.size() + " budgeted test(s) went over budget, see " + report.getPath());
+    }
+
+    private static PerfBudget budgetFor(IInvokedMethod method) {
+        Method testMethod = method.getTestMethod().getConstructorOrMethod().getMethod();
+        PerfBudget budget = null == testMethod ? null : testMethod.getAnnotation(PerfBudget.class);
+        if (null == budget) {
+            Class<?> testClass = method.getTestMethod().getRealClass();
+            budget = testClass.getAnnotation(PerfBudget.class);
+        }
+
+        return budget;
+    }
+
+    private static void check(Map<String, Object> result, List<String> breaches, String name, long actual, long limit) {
+        Map<String, Object> figures = new LinkedHashMap<>();
+        figures.put("actual", actual);
+        if (PerfBudget.UNLIMITED != limit) {
+            figures.put("budget", limit);
+            if (actual > limit) {
+                breaches.add(name);
+            }
+        }
+        result.put(name, figures);
+    }
+
+    private static String describe(Map<String, Object> result) {
+        StringBuilder description = new StringBuilder();
+        for (String name : new String[]{"wallTimeMillis", "commands", "screenshots", "bytesWritten"}) {
+            Map<?, ?> figures = (Map<?, ?>) result.get(name);
+            description.append(description.length() == 0 ? "" : ", ").append(name).append('=').append(figures.get("actual"));
+            if (figures.containsKey("budget")) {
+                description.append('/').append(figures.get("budget"));
+            }
+        }
+
+        return description.toString();
+    }
+}
@@ -0,0 +1,219 @@
+package com.lazerycode.selenium.listeners;
+
+import com.lazerycode.selenium.config.PerfCounters;
+import com.lazerycode.selenium.config.RunConfig;
+import org.openqa.selenium.json.Json;
+import org.testng.IInvokedMethod;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.testng.internal.ConstructorOrMethod;
+import org.testng.internal.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerfBudgetListenerTest {
+
+    private final PerfBudgetListener listener = new PerfBudgetListener();
+    private File report;
+
+    @BeforeMethod
+    public void createReport() throws IOException {
+        report = File.createTempFile("perf-budgets", ".json");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void restoreSuiteConfig() {
+        System.clearProperty(RunConfig.PERF_BUDGETS);
+        RunConfig.resolveSuiteConfig();
+        PerfCounters.current().reset();
+        report.delete();
+    }
+
+    @Test
+    public void aTestWithinItsBudgetPasses() throws Exception {
+        ITestResult result = run("withinBudget", 100);
+
+        assertThat(result.getStatus()).isEqualTo(ITestResult.SUCCESS);
+        Map<String, Object> entry = reportEntry("withinBudget");
+        assertThat(entry.get("breaches")).asList().isEmpty();
+        assertThat(entry.get("failed")).isEqualTo(false);
+        assertThat(entry.get("bytesWritten")).isEqualTo(figures(100, 1000));
+        assertThat(((Map<?, ?>) entry.get("commands")).containsKey("budget")).isFalse();
+    }
+
+    @Test
+    public void aTestOverItsBudgetFails() throws Exception {
+        ITestResult result = run("overBudget", 5000);
+
+        assertThat(result.getStatus()).isEqualTo(ITestResult.FAILURE);
+        assertThat(result.getThrowable()).isInstanceOf(AssertionError.class).hasMessageContaining("bytesWritten=5000/1000");
+        Map<String, Object> entry = reportEntry("overBudget");
+        assertThat(entry.get("breaches")).asList().containsExactly("bytesWritten");
+        assertThat(entry.get("failed")).isEqualTo(true);
+    }
+
+    @Test
+    public void aWarnOnlyBudgetIsReportedWithoutFailingTheTest() throws Exception {
+        ITestResult result = run("warnOnlyBudget", 5000);
+
+        assertThat(result.getStatus()).isEqualTo(ITestResult.SUCCESS);
+        Map<String, Object> entry = reportEntry("warnOnlyBudget");
+        assertThat(entry.get("breaches")).asList().containsExactly("bytesWritten");
+        assertThat(entry.get("failed")).isEqualTo(false);
+    }
+
+    @Test
+    public void warnModeReportsEveryBreachWithoutFailingTheTest() throws Exception {
+        System.setProperty(RunConfig.PERF_BUDGETS, "warn");
+        RunConfig.resolveSuiteConfig();
+
+        ITestResult result = run("overBudgetInWarnMode", 5000);
+
+        assertThat(result.getStatus()).isEqualTo(ITestResult.SUCCESS);
+        Map<String, Object> entry = reportEntry("overBudgetInWarnMode");
+        assertThat(entry.get("breaches")).asList().containsExactly("bytesWritten");
+        assertThat(entry.get("failed")).isEqualTo(false);
+    }
+
+    @Test
+    public void offModeDoesNotCheckBudgets() throws Exception {
+        System.setProperty(RunConfig.PERF_BUDGETS, "off");
+        RunConfig.resolveSuiteConfig();
+
+        ITestResult result = run("overBudgetInOffMode", 5000);
+
+        assertThat(result.getStatus()).isEqualTo(ITestResult.SUCCESS);
+        assertThat(reportEntry("overBudgetInOffMode")).isNull();
+    }
+
+    @Test
+    public void aTestThatHasAlreadyFailedKeepsItsOwnFailure() throws Exception {
+        AssertionError failure = new AssertionError("element not found");
+        TestResult result = new TestResult();
+        result.setStatus(ITestResult.FAILURE);
+        result.setThrowable(failure);
+
+        run("failedOverBudget", 5000, result);
+
+        assertThat(result.getThrowable()).isSameAs(failure);
+        assertThat(reportEntry("failedOverBudget").get("breaches")).asList().containsExactly("bytesWritten");
+    }
+
+    @PerfBudget(bytesWritten = 1000)
+    private void withinBudget() {
+    }
+
+    @PerfBudget(bytesWritten = 1000)
+    private void overBudget() {
+    }
+
+    @PerfBudget(bytesWritten = 1000, warnOnly = true)
+    private void warnOnlyBudget() {
+    }
+
+    @PerfBudget(bytesWritten = 1000)
+    private void overBudgetInWarnMode() {
+    }
+
+    @PerfBudget(bytesWritten = 1000)
+    private void overBudgetInOffMode() {
+    }
+
+    @PerfBudget(bytesWritten = 1000)
+    private void failedOverBudget() {
+    }
+
+    private ITestResult run(String name, long bytesWritten) throws NoSuchMethodException {
+        TestResult result = new TestResult();
+        result.setStatus(ITestResult.SUCCESS);
+
+        return run(name, bytesWritten, result);
+    }
+
+    /**
+     * Invoke the listener around a test method that writes the given number of bytes.
+     */
+    private ITestResult run(String name, long bytesWritten, ITestResult result) throws NoSuchMethodException {
+        IInvokedMethod method = invokedMethod(PerfBudgetListenerTest.class.getDeclaredMethod(name));
+        listener.beforeInvocation(method, result);
+        PerfCounters.bytesWritten(bytesWritten);
+        listener.afterInvocation(method, result);
+
+        return result;
+    }
+
+    /**
+     * @return the last report entry for a method of this class, or null if it has none
+     */
+    private Map<String, Object> reportEntry(String name) throws IOException {
+        PerfBudgetListener.writeReport(report);
+        if (0 == report.length()) {
+            return null;
+        }
+        List<Map<String, Object>> tests = new Json().toType(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8), Json.LIST_OF_MAPS_TYPE);
+        Map<String, Object> entry = null;
+        for (Map<String, Object> test : tests) {
+            if ((PerfBudgetListenerTest.class.getName() + "." + name).equals(test.get("test"))) {
+                entry = test;
+            }
+        }
+
+        return entry;
+    }
+
+    private static Map<String, Object> figures(long actual, long budget) {
+        Map<String, Object> figures = new LinkedHashMap<>();
+        figures.put("actual", actual);
+        figures.put("budget", budget);
+
+        return figures;
+    }
+
+    /**
+     * @return an invoked test method that only knows the method it runs, which is all the listener looks at
+     */
+    private static IInvokedMethod invokedMethod(Method method) {
+        ITestNGMethod testMethod = (ITestNGMethod) Proxy.newProxyInstance(ITestNGMethod.class.getClassLoader(), new Class<?>[]{ITestNGMethod.class},
+                (proxy, invoked, arguments) -> {
+                    switch (invoked.getName()) {
+                        case "getQualifiedName":
+                            return method.getDeclaringClass().getName() + "." + method.getName();
+                        case "getRealClass":
+                            return method.getDeclaringClass();
+                        case "getConstructorOrMethod":
+                            return new ConstructorOrMethod(method);
+                        case "toString":
+                            return method.getName();
+                        default:
+                            throw new UnsupportedOperationException(invoked.getName());
+                    }
+                });
+
+        return (IInvokedMethod) Proxy.newProxyInstance(IInvokedMethod.class.getClassLoader(), new Class<?>[]{IInvokedMethod.class},
+                (proxy, invoked, arguments) -> {
+                    switch (invoked.getName()) {
+                        case "isTestMethod":
+                            return true;
+                        case "getTestMethod":
+                            return testMethod;
+                        case "toString":
+                            return method.getName();
+                        default:
+                            throw new UnsupportedOperationException(invoked.getName());
+                    }
+                });
+    }
+}
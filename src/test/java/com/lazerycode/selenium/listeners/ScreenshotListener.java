@@ -11,7 +11,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
-import static com.lazerycode.selenium.DriverBase.getDriver;
+import static com.lazerycode.selenium.DriverBase.getRunConfig;
+import static com.lazerycode.selenium.DriverBase.getStoredDriver;
 
 public class ScreenshotListener extends TestListenerAdapter {
 
@@ -48,8 +49,12 @@ public class ScreenshotListener extends TestListenerAdapter {
     @Override
     public void onTestFailure(ITestResult failingTest) {
         try {
-            WebDriver driver = getDriver();
-            String screenshotDirectory = System.getProperty("screenshotDirectory", "target/screenshots");
+            WebDriver driver = getStoredDriver();
+            if (null == driver) {
+                System.err.println("No browser has been started, unable to capture screenshot...");
+                return;
+            }
+            String screenshotDirectory = getRunConfig().getScreenshotDirectory();
             String screenshotAbsolutePath = screenshotDirectory + File.separator + System.currentTimeMillis() + "_" + failingTest.getName() + ".png";
             File screenshot = new File(screenshotAbsolutePath);
             if (createFile(screenshot)) {
@@ -0,0 +1,108 @@
+package com.lazerycode.selenium.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A local web server for load scenarios, so that load can be generated without hitting a real site.
+ * <p>
+ * Pages are registered by path and rendered from the request's query parameters.  The server listens on a free port
+ * on the loopback interface and can add a fixed delay to every response to stand in for a slow backend.
+ */
+public class FixtureServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fixture-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long responseDelayMillis;
+
+    public FixtureServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Serve a fixed page.
+     */
+    public FixtureServer page(String path, String html) {
+        return page(path, parameters -> html);
+    }
+
+    /**
+     * Serve a page rendered from the request's query parameters.
+     */
+    public FixtureServer page(String path, Function<Map<String, String>, String> html) {
+        server.createContext(path, exchange -> respond(exchange, html));
+
+        return this;
+    }
+
+    /**
+     * Hold every response back by the supplied time.
+     */
+    public FixtureServer withResponseDelay(long delayMillis) {
+        this.responseDelayMillis = delayMillis;
+
+        return this;
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange, Function<Map<String, String>, String> html) throws IOException {
+        try {
+            if (responseDelayMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(responseDelayMillis);
+            }
+            byte[] body = html.apply(parameters(exchange.getRequestURI().getRawQuery())).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream response = exchange.getResponseBody()) {
+                response.write(body);
+            }
+        } catch (InterruptedException stopped) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parameters(String query) throws IOException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (null == query || query.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+
+        return parameters;
+    }
+}
@@ -0,0 +1,89 @@
+package com.lazerycode.selenium.load;
+
+import com.lazerycode.selenium.config.RunConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a {@link LoadRunner} applies load: the number of concurrent browser sessions, how long it takes to start them
+ * all (ramp up), how long they all run together (steady state), how long it takes to stop them again (ramp down) and
+ * how long each session thinks between iterations of the scenario.
+ */
+public class LoadProfile {
+
+    private final int sessions;
+    private final long rampUpMillis;
+    private final long steadyMillis;
+    private final long rampDownMillis;
+    private final long thinkTimeMillis;
+
+    public LoadProfile(int sessions, long rampUpMillis, long steadyMillis, long rampDownMillis, long thinkTimeMillis) {
+        if (sessions < 1) {
+            throw new IllegalArgumentException("A load profile needs at least one session");
+        }
+        this.sessions = sessions;
+        this.rampUpMillis = Math.max(0, rampUpMillis);
+        this.steadyMillis = Math.max(0, steadyMillis);
+        this.rampDownMillis = Math.max(0, rampDownMillis);
+        this.thinkTimeMillis = Math.max(0, thinkTimeMillis);
+    }
+
+    /**
+     * Read -DloadSessions, -DloadRampUp, -DloadSteady and -DloadRampDown (in seconds) and -DloadThinkTime (in
+     * milliseconds).
+     *
+     * @return the profile, or null if -DloadSessions is not set
+     */
+    public static LoadProfile fromRunConfig(RunConfig runConfig) {
+        int sessions = runConfig.getInt(RunConfig.LOAD_SESSIONS, 0);
+        if (sessions < 1) {
+            return null;
+        }
+
+        return new LoadProfile(sessions,
+                TimeUnit.SECONDS.toMillis(runConfig.getInt(RunConfig.LOAD_RAMP_UP, 30)),
+                TimeUnit.SECONDS.toMillis(runConfig.getInt(RunConfig.LOAD_STEADY, 60)),
+                TimeUnit.SECONDS.toMillis(runConfig.getInt(RunConfig.LOAD_RAMP_DOWN, 10)),
+                runConfig.getInt(RunConfig.LOAD_THINK_TIME, 1000));
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public long getRampUpMillis() {
+        return rampUpMillis;
+    }
+
+    public long getSteadyMillis() {
+        return steadyMillis;
+    }
+
+    public long getRampDownMillis() {
+        return rampDownMillis;
+    }
+
+    public long getThinkTimeMillis() {
+        return thinkTimeMillis;
+    }
+
+    /**
+     * @return when the session started in the supplied position should start, relative to the start of the run
+     */
+    long startOffsetMillis(int session) {
+        return rampUpMillis * session / sessions;
+    }
+
+    /**
+     * @return when the session started in the supplied position should stop, the last one to start stops first
+     */
+    long stopOffsetMillis(int session) {
+        return rampUpMillis + steadyMillis + rampDownMillis * (sessions - session) / sessions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d session(s), %dms ramp up, %dms steady, %dms ramp down, %dms think time",
+                sessions, rampUpMillis, steadyMillis, rampDownMillis, thinkTimeMillis);
+    }
+}
@@ -0,0 +1,81 @@
+package com.lazerycode.selenium.load;
+
+import com.lazerycode.selenium.config.RunConfig;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LoadProfileTest {
+
+    @Test
+    public void sessionsStartEvenlySpreadOverTheRampUp() {
+        LoadProfile profile = new LoadProfile(4, 1000, 5000, 2000, 0);
+
+        assertThat(profile.startOffsetMillis(0)).isZero();
+        assertThat(profile.startOffsetMillis(1)).isEqualTo(250);
+        assertThat(profile.startOffsetMillis(2)).isEqualTo(500);
+        assertThat(profile.startOffsetMillis(3)).isEqualTo(750);
+    }
+
+    @Test
+    public void theLastSessionToStartIsTheFirstToStop() {
+        LoadProfile profile = new LoadProfile(4, 1000, 5000, 2000, 0);
+
+        assertThat(profile.stopOffsetMillis(3)).isEqualTo(6500);
+        assertThat(profile.stopOffsetMillis(2)).isEqualTo(7000);
+        assertThat(profile.stopOffsetMillis(1)).isEqualTo(7500);
+        assertThat(profile.stopOffsetMillis(0)).isEqualTo(8000);
+    }
+
+    @Test
+    public void everySessionRunsThroughoutTheSteadyState() {
+        LoadProfile profile = new LoadProfile(7, 3000, 10000, 3000, 0);
+
+        for (int session = 0; session < profile.getSessions(); session++) {
+            assertThat(profile.startOffsetMillis(session)).isLessThanOrEqualTo(profile.getRampUpMillis());
+            assertThat(profile.stopOffsetMillis(session)).isGreaterThanOrEqualTo(profile.getRampUpMillis() + profile.getSteadyMillis())
+                    .isLessThanOrEqualTo(profile.getRampUpMillis() + profile.getSteadyMillis() + profile.getRampDownMillis());
+        }
+    }
+
+    @Test
+    public void withoutARampEverySessionStartsAndStopsTogether() {
+        LoadProfile profile = new LoadProfile(3, 0, 5000, 0, 0);
+
+        for (int session = 0; session < profile.getSessions(); session++) {
+            assertThat(profile.startOffsetMillis(session)).isZero();
+            assertThat(profile.stopOffsetMillis(session)).isEqualTo(5000);
+        }
+    }
+
+    @Test
+    public void negativeDurationsAreTreatedAsZeroAndSessionsAreRequired() {
+        LoadProfile profile = new LoadProfile(1, -1, -1, -1, -1);
+
+        assertThat(profile.getRampUpMillis()).isZero();
+        assertThat(profile.getSteadyMillis()).isZero();
+        assertThat(profile.getRampDownMillis()).isZero();
+        assertThat(profile.getThinkTimeMillis()).isZero();
+        assertThatThrownBy(() -> new LoadProfile(0, 1000, 1000, 1000, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void theRunConfigGivesDurationsInSecondsAndThinkTimeInMilliseconds() {
+        RunConfig runConfig = RunConfig.fromSystemProperties()
+                .with(RunConfig.LOAD_SESSIONS, "5")
+                .with(RunConfig.LOAD_RAMP_UP, "10")
+                .with(RunConfig.LOAD_STEADY, "20")
+                .with(RunConfig.LOAD_RAMP_DOWN, "3")
+                .with(RunConfig.LOAD_THINK_TIME, "250");
+
+        LoadProfile profile = LoadProfile.fromRunConfig(runConfig);
+
+        assertThat(profile.getSessions()).isEqualTo(5);
+        assertThat(profile.getRampUpMillis()).isEqualTo(10000);
+        assertThat(profile.getSteadyMillis()).isEqualTo(20000);
+        assertThat(profile.getRampDownMillis()).isEqualTo(3000);
+        assertThat(profile.getThinkTimeMillis()).isEqualTo(250);
+        assertThat(LoadProfile.fromRunConfig(runConfig.with(RunConfig.LOAD_SESSIONS, null))).isNull();
+    }
+}
@@ -0,0 +1,182 @@
+package com.lazerycode.selenium.load;
+
+import com.lazerycode.selenium.config.JsonReport;
+import com.lazerycode.selenium.config.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The results of a {@link LoadRunner} run: throughput of the whole scenario, overall and in the steady state, and
+ * latency percentiles and error counts for every step.
+ */
+public class LoadReport {
+
+    private static final int MAX_ERROR_MESSAGES = 20;
+
+    private final String scenario;
+    private final LoadProfile profile;
+    private final Map<String, Timings> steps = new LinkedHashMap<>();
+    private final Timings iterations = new Timings();
+    private final AtomicLong steadyIterations = new AtomicLong();
+    private final AtomicLong sessionsStarted = new AtomicLong();
+    private final AtomicLong sessionsFailed = new AtomicLong();
+    private final Queue<String> errorMessages = new ConcurrentLinkedQueue<>();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    LoadReport(String scenario, LoadProfile profile) {
+        this.scenario = scenario;
+        this.profile = profile;
+    }
+
+    void started(long nanos) {
+        startNanos = nanos;
+    }
+
+    void finished(long nanos) {
+        endNanos = nanos;
+    }
+
+    void sessionStarted() {
+        sessionsStarted.incrementAndGet();
+    }
+
+    void sessionFailed(Throwable failure) {
+        sessionsFailed.incrementAndGet();
+        recordError("Unable to start session", failure);
+    }
+
+    void recordStep(String name, long elapsedNanos, boolean succeeded) {
+        Timings timings;
+        synchronized (steps) {
+            timings = steps.computeIfAbsent(name, unused -> new Timings());
+        }
+        timings.record(elapsedNanos, succeeded);
+    }
+
+    void recordIteration(long iterationStartNanos, long iterationEndNanos, Throwable failure) {
+        iterations.record(iterationEndNanos - iterationStartNanos, null == failure);
+        if (null != failure) {
+            recordError("Iteration failed", failure);
+        }
+        long steadyStart = startNanos + TimeUnit.MILLISECONDS.toNanos(profile.getRampUpMillis());
+        long steadyEnd = steadyStart + TimeUnit.MILLISECONDS.toNanos(profile.getSteadyMillis());
+        if (null == failure && iterationEndNanos >= steadyStart && iterationEndNanos <= steadyEnd) {
+            steadyIterations.incrementAndGet();
+        }
+    }
+
+    private void recordError(String context, Throwable failure) {
+        if (errorMessages.size() < MAX_ERROR_MESSAGES) {
+            String message = String.valueOf(failure.getMessage()).split("\n", 2)[0];
+            errorMessages.add(context + ": " + failure.getClass().getSimpleName() + ": " + message);
+        }
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public long getIterationCount() {
+        return iterations.histogram.getCount();
+    }
+
+    /**
+     * @return failed iterations plus sessions that could not be started
+     */
+    public long getErrorCount() {
+        return iterations.errors.get() + sessionsFailed.get();
+    }
+
+    /**
+     * @return completed iterations per second while every session was running
+     */
+    public double getSteadyThroughput() {
+        long steadyMillis = profile.getSteadyMillis();
+
+        return 0 == steadyMillis ? 0 : steadyIterations.get() * 1000.0 / steadyMillis;
+    }
+
+    /**
+     * @return completed iterations per second over the whole run
+     */
+    public double getThroughput() {
+        long elapsedNanos = endNanos - startNanos;
+        long succeeded = iterations.histogram.getCount() - iterations.errors.get();
+
+        return elapsedNanos <= 0 ? 0 : succeeded * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return step name -&gt; count, errors and latency statistics in milliseconds, in the order steps were first run
+     */
+    public Map<String, Map<String, Object>> getSteps() {
+        Map<String, Map<String, Object>> described = new LinkedHashMap<>();
+        synchronized (steps) {
+            for (Map.Entry<String, Timings> step : steps.entrySet()) {
+                described.put(step.getKey(), step.getValue().describe());
+            }
+        }
+
+        return described;
+    }
+
+    /**
+     * Print throughput and the latency of every step and write the full report as JSON.
+     */
+    public void writeReport(File report) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("scenario", scenario);
+        json.put("profile", profile.toString());
+        json.put("durationSeconds", (endNanos - startNanos) / 1e9);
+        json.put("sessionsStarted", sessionsStarted.get());
+        json.put("sessionsFailed", sessionsFailed.get());
+        json.put("throughput", getThroughput());
+        json.put("steadyThroughput", getSteadyThroughput());
+        json.put("iterations", iterations.describe());
+        json.put("steps", getSteps());
+        json.put("errors", new ArrayList<>(errorMessages));
+        JsonReport.write(report, json);
+        System.out.println(this + " (full report in " + report.getPath() + ")");
+        for (Map.Entry<String, Map<String, Object>> step : getSteps().entrySet()) {
+            Map<String, Object> statistics = step.getValue();
+            System.out.println(String.format("  %-24s count=%s errors=%s p50=%s p90=%s p95=%s p99=%s max=%s", step.getKey(),
+                    statistics.get("count"), statistics.get("errors"), statistics.get("p50"), statistics.get("p90"),
+                    statistics.get("p95"), statistics.get("p99"), statistics.get("max")));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Load scenario %s, %s: %d iteration(s), %d error(s), %.2f/s overall, %.2f/s steady state",
+                scenario, profile, getIterationCount(), getErrorCount(), getThroughput(), getSteadyThroughput());
+    }
+
+    private static class Timings {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        private void record(long elapsedNanos, boolean succeeded) {
+            histogram.record(elapsedNanos);
+            if (!succeeded) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private Map<String, Object> describe() {
+            Map<String, Object> described = new LinkedHashMap<>();
+            described.put("errors", errors.get());
+            described.putAll(histogram.statistics());
+
+            return described;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.lazerycode.selenium.load;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LoadReportTest {
+
+    private static final long START = TimeUnit.SECONDS.toNanos(100);
+
+    @Test
+    public void steadyThroughputOnlyCountsSuccessfulIterationsThatEndInTheSteadyState() {
+        LoadReport report = new LoadReport("search", new LoadProfile(2, 1000, 2000, 1000, 0));
+        report.started(START);
+
+        iteration(report, 0, 500, null);
+        iteration(report, 500, 1000, null);
+        iteration(report, 1000, 2000, null);
+        iteration(report, 1500, 2500, new IllegalStateException("no results"));
+        iteration(report, 2000, 3000, null);
+        iteration(report, 3000, 3500, null);
+
+        assertThat(report.getSteadyThroughput()).isCloseTo(1.5, within(0.001));
+    }
+
+    @Test
+    public void throughputCountsSuccessfulIterationsOverTheWholeRun() {
+        LoadReport report = new LoadReport("search", new LoadProfile(2, 1000, 2000, 1000, 0));
+        report.started(START);
+        iteration(report, 0, 500, null);
+        iteration(report, 500, 1000, null);
+        iteration(report, 1000, 2000, null);
+        iteration(report, 1500, 2500, new IllegalStateException("no results"));
+        iteration(report, 2000, 3000, null);
+        iteration(report, 3000, 3500, null);
+        report.sessionFailed(new IllegalStateException("grid is full"));
+        report.finished(START + TimeUnit.SECONDS.toNanos(4));
+
+        assertThat(report.getThroughput()).isCloseTo(1.25, within(0.001));
+        assertThat(report.getIterationCount()).isEqualTo(6);
+        assertThat(report.getErrorCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void aRunWithoutASteadyStateOrThatHasNotFinishedHasNoThroughput() {
+        LoadReport report = new LoadReport("search", new LoadProfile(1, 1000, 0, 0, 0));
+        report.started(START);
+        iteration(report, 0, 1000, null);
+
+        assertThat(report.getSteadyThroughput()).isZero();
+        assertThat(report.getThroughput()).isZero();
+    }
+
+    private static void iteration(LoadReport report, long startMillis, long endMillis, Throwable failure) {
+        report.recordIteration(START + TimeUnit.MILLISECONDS.toNanos(startMillis), START + TimeUnit.MILLISECONDS.toNanos(endMillis), failure);
+    }
+}
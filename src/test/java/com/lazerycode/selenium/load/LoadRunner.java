@@ -0,0 +1,111 @@
+package com.lazerycode.selenium.load;
+
+import com.lazerycode.selenium.DriverBase;
+import com.lazerycode.selenium.config.DriverRegistry;
+import com.lazerycode.selenium.config.RunConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Use page object scenarios as a browser level load generator.
+ * <p>
+ * Every session of the {@link LoadProfile} runs on its own thread with its own headless browser from the
+ * {@link com.lazerycode.selenium.config.DriverFactory}, so page objects that call DriverBase.getDriver() work unchanged.
+ * Sessions are started one after another over the ramp up, all run during the steady state, and are stopped in
+ * reverse order over the ramp down.  Each session repeats the {@link Scenario} with think time between iterations
+ * until it is due to stop; an iteration that is running when that time comes is allowed to finish.  Browser start up
+ * is not included in the scenario timings, and the number of browsers is still capped by -DmaxBrowsers.
+ */
+public class LoadRunner {
+
+    /**
+     * Run the scenario with the supplied profile and wait for every session to stop.
+     */
+    public static LoadReport run(String name, LoadProfile profile, Scenario scenario) throws InterruptedException {
+        RunConfig sessionConfig = DriverBase.getRunConfig().withHeadless(true);
+        LoadReport report = new LoadReport(name, profile);
+        long startNanos = System.nanoTime();
+        report.started(startNanos);
+        System.out.println("Starting load scenario " + name + ": " + profile);
+        List<Thread> sessions = new ArrayList<>();
+        for (int session = 0; session < profile.getSessions(); session++) {
+            int sessionNumber = session;
+            Thread thread = new Thread(() -> runSession(name, profile, scenario, sessionConfig, report, sessionNumber, startNanos),
+                    "load-" + name + "-" + session);
+            thread.setDaemon(true);
+            thread.start();
+            sessions.add(thread);
+        }
+        try {
+            for (Thread session : sessions) {
+                session.join();
+            }
+        } finally {
+            for (Thread session : sessions) {
+                session.interrupt();
+            }
+            report.finished(System.nanoTime());
+        }
+
+        return report;
+    }
+
+    /**
+     * Run the scenario with the profile from -DloadSessions and friends and write the report to -DloadReport.
+     *
+     * @return the report, or null if -DloadSessions is not set
+     */
+    public static LoadReport run(String name, Scenario scenario) throws InterruptedException, IOException {
+        RunConfig runConfig = DriverBase.getRunConfig();
+        LoadProfile profile = LoadProfile.fromRunConfig(runConfig);
+        if (null == profile) {
+            return null;
+        }
+        LoadReport report = run(name, profile, scenario);
+        report.writeReport(new File(runConfig.get(RunConfig.LOAD_REPORT, "target/load-reports"), name + ".json"));
+
+        return report;
+    }
+
+    private static void runSession(String name, LoadProfile profile, Scenario scenario, RunConfig sessionConfig,
+                                   LoadReport report, int session, long startNanos) {
+        long stopAtNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(profile.stopOffsetMillis(session));
+        try {
+            TimeUnit.NANOSECONDS.sleep(startNanos + TimeUnit.MILLISECONDS.toNanos(profile.startOffsetMillis(session)) - System.nanoTime());
+            DriverBase.overrideRunConfig(sessionConfig);
+            DriverRegistry.setCurrentTest(name + " session " + session);
+            DriverBase.getDriver();
+            report.sessionStarted();
+        } catch (InterruptedException stopped) {
+            return;
+        } catch (Exception unableToStart) {
+            report.sessionFailed(unableToStart);
+            return;
+        }
+        try {
+            for (int iteration = 0; System.nanoTime() < stopAtNanos && !Thread.currentThread().isInterrupted(); iteration++) {
+                ScenarioContext context = new ScenarioContext(report, session, iteration, profile.getThinkTimeMillis(), stopAtNanos);
+                long iterationStart = System.nanoTime();
+                Throwable failure = null;
+                try {
+                    scenario.run(context);
+                } catch (InterruptedException stopped) {
+                    break;
+                } catch (Exception | AssertionError failed) {
+                    failure = failed;
+                }
+                report.recordIteration(iterationStart, System.nanoTime(), failure);
+                context.think();
+            }
+        } catch (InterruptedException stopped) {
+            // The run is being shut down
+        } finally {
+            DriverBase.quitDriver();
+            DriverRegistry.setCurrentTest(null);
+        }
+    }
+}
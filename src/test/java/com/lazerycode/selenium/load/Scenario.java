@@ -0,0 +1,13 @@
+package com.lazerycode.selenium.load;
+
+/**
+ * One iteration of what a simulated user does, run over and over by every session of a {@link LoadRunner}.
+ * <p>
+ * Scenarios drive the browser through page objects as tests do, DriverBase.getDriver() returns the session's own
+ * browser, and wrap each user-visible action in {@link ScenarioContext#step(String, ScenarioContext.Step)} so that
+ * it is timed.
+ */
+public interface Scenario {
+
+    void run(ScenarioContext context) throws Exception;
+}
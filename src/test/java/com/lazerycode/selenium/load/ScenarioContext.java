@@ -0,0 +1,74 @@
+package com.lazerycode.selenium.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a {@link Scenario} can see of the load run while one of its iterations runs.
+ */
+public class ScenarioContext {
+
+    /**
+     * A user-visible action, e.g. submitting a search.
+     */
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private final LoadReport report;
+    private final int session;
+    private final int iteration;
+    private final long thinkTimeMillis;
+    private final long stopAtNanos;
+
+    ScenarioContext(LoadReport report, int session, int iteration, long thinkTimeMillis, long stopAtNanos) {
+        this.report = report;
+        this.session = session;
+        this.iteration = iteration;
+        this.thinkTimeMillis = thinkTimeMillis;
+        this.stopAtNanos = stopAtNanos;
+    }
+
+    /**
+     * @return which of the concurrent sessions is running the scenario, starting at 0
+     */
+    public int getSession() {
+        return session;
+    }
+
+    /**
+     * @return how many times this session has run the scenario before
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Run and time one step of the scenario.  A step that throws is counted as an error and ends the iteration.
+     */
+    public void step(String name, Step step) throws Exception {
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } catch (Exception | AssertionError failed) {
+            report.recordStep(name, System.nanoTime() - start, false);
+            throw failed;
+        }
+        report.recordStep(name, System.nanoTime() - start, true);
+    }
+
+    /**
+     * Pause like a user reading the page, for between half and one and a half times the profile's think time.  The
+     * pause is cut short when the session is due to stop.
+     */
+    public void think() throws InterruptedException {
+        if (0 == thinkTimeMillis) {
+            return;
+        }
+        long thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkTimeMillis / 2 + ThreadLocalRandom.current().nextLong(thinkTimeMillis + 1));
+        long remainingNanos = stopAtNanos - System.nanoTime();
+        if (remainingNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(thinkNanos, remainingNanos));
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.lazerycode.selenium.page_objects;
 
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
 
 public class BasePO {
 	protected WebDriver driver;
 	protected String baseUrl;
+	protected final ElementCache elements;
 	public BasePO(WebDriver driver, String baseUrl) {
 		this.driver = driver;
 		this.baseUrl = baseUrl;
+		this.elements = new ElementCache(driver);
+	}
+
+	/**
+	 * @return the element for the locator, resolved once and reused until the page changes, see {@link ElementCache}
+	 */
+	protected WebElement element(By locator) {
+		return elements.find(locator);
 	}
 }
@@ -0,0 +1,151 @@
+package com.lazerycode.selenium.page_objects;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import com.lazerycode.selenium.config.BrowsingContext;
+import com.lazerycode.selenium.util.Query;
+import com.lazerycode.selenium.utils.ScriptLocators;
+
+/**
+ * A page object that looks up every element it declares in a single script call.
+ * <p>
+ * Query and By fields are found once per class and remembered, so constructing a page object does not scan its
+ * fields again.  The first time the page object needs an element, and again after every navigation or window/frame
+ * switch, all of its locators are resolved by one executeScript call and the results are primed into the
+ * {@link ElementCache}; a form with forty fields costs one round trip instead of forty.  Elements that are not on the
+ * page yet, and locators that cannot be resolved by a script, are looked up with findElement when they are used.
+ * <p>
+ * Query fields are given the page object's driver, so subclasses do not need to call initQueryObjects().
+ */
+public class BatchedPO extends BasePO {
+
+	protected final static Logger logger = LogManager.getLogger(BatchedPO.class);
+
+	private static final String RESOLVE_SCRIPT =
+			ScriptLocators.FIND_FUNCTION +
+			"var locators = arguments[0], elements = [];" +
+			"for (var i = 0; i < locators.length; i++) {" +
+			"  try { elements.push(find(locators[i][0], locators[i][1])); } catch (e) { elements.push(null); }" +
+			"}" +
+			"return elements;";
+
+	private static final ClassValue<List<Field>> locatorFields = new ClassValue<List<Field>>() {
+		@Override
+		protected List<Field> computeValue(Class<?> type) {
+			List<Field> fields = new ArrayList<>();
+			for (Class<?> declaringClass = type; declaringClass != null && BasePO.class.isAssignableFrom(declaringClass); declaringClass = declaringClass.getSuperclass()) {
+				for (Field field : declaringClass.getDeclaredFields()) {
+					if (Query.class.equals(field.getType()) || By.class.isAssignableFrom(field.getType())) {
+						field.setAccessible(true);
+						fields.add(field);
+					}
+				}
+			}
+			return Collections.unmodifiableList(fields);
+		}
+	};
+
+	private List<By> scriptLocators;
+	private List<List<String>> translatedLocators;
+	private boolean resolved;
+	private long resolvedEpoch;
+
+	public BatchedPO(WebDriver driver, String baseUrl) {
+		super(driver, baseUrl);
+	}
+
+	@Override
+	protected WebElement element(By locator) {
+		resolveAll();
+		return super.element(locator);
+	}
+
+	/**
+	 * @return the element for one of this page object's Query fields, which are only usable once they have a driver
+	 */
+	protected WebElement element(Query query) {
+		resolveAll();
+		return super.element(query.by());
+	}
+
+	/**
+	 * Resolve every declared locator in one script call, unless that has already been done for the current page.
+	 */
+	protected void resolveAll() {
+		long epoch = BrowsingContext.epoch(driver);
+		if (resolved && epoch == resolvedEpoch) {
+			return;
+		}
+		resolved = true;
+		resolvedEpoch = epoch;
+		if (scriptLocators == null) {
+			collectLocators();
+		}
+		if (scriptLocators.isEmpty() || !(driver instanceof JavascriptExecutor)) {
+			return;
+		}
+		Object elements;
+		try {
+			elements = ((JavascriptExecutor) driver).executeScript(RESOLVE_SCRIPT, translatedLocators);
+		} catch (WebDriverException unableToResolve) {
+			logger.debug("Unable to resolve the locators of " + getClass().getSimpleName() + " in one call", unableToResolve);
+			return;
+		}
+		if (!(elements instanceof List)) {
+			return;
+		}
+		List<?> resolvedElements = (List<?>) elements;
+		for (int i = 0; i < resolvedElements.size() && i < scriptLocators.size(); i++) {
+			if (resolvedElements.get(i) instanceof WebElement) {
+				this.elements.prime(scriptLocators.get(i), (WebElement) resolvedElements.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Hand Query fields the driver and work out which locators a script can resolve.  This has to wait until the
+	 * page object is first used, the subclass's fields are not initialised while BasePO's constructor runs.
+	 */
+	private void collectLocators() {
+		scriptLocators = new ArrayList<>();
+		translatedLocators = new ArrayList<>();
+		for (Field field : locatorFields.get(getClass())) {
+			Object value;
+			try {
+				value = field.get(Modifier.isStatic(field.getModifiers()) ? null : this);
+			} catch (IllegalAccessException ex) {
+				throw new IllegalStateException(ex);
+			}
+			By locator;
+			if (value instanceof Query) {
+				Query query = (Query) value;
+				if (driver instanceof RemoteWebDriver) {
+					query.usingDriver((RemoteWebDriver) driver);
+				}
+				locator = query.by();
+			} else {
+				locator = (By) value;
+			}
+			String[] translated = locator == null ? null : ScriptLocators.translate(locator);
+			if (translated != null && !scriptLocators.contains(locator)) {
+				scriptLocators.add(locator);
+				translatedLocators.add(Arrays.asList(translated));
+			}
+		}
+		logger.debug(getClass().getSimpleName() + " resolves " + scriptLocators.size() + " locator(s) in one call: " + scriptLocators);
+	}
+}
@@ -0,0 +1,122 @@
+package com.lazerycode.selenium.page_objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.support.pagefactory.ByChained;
+import org.testng.annotations.Test;
+
+import com.lazerycode.selenium.util.Query;
+
+public class BatchedPOTest {
+
+	@Test
+	public void everyLocatorIsResolvedByOneScript() {
+		StubPage page = new StubPage();
+		SearchPage searchPage = new SearchPage(page.driver);
+
+		searchPage.search("cheese");
+		searchPage.search("milk");
+
+		assertThat(page.count(DriverCommand.EXECUTE_SCRIPT)).isEqualTo(1);
+		assertThat(page.count(DriverCommand.FIND_ELEMENT)).isZero();
+		assertThat(page.count(DriverCommand.SEND_KEYS_TO_ELEMENT)).isEqualTo(2);
+		assertThat(page.count(DriverCommand.CLICK_ELEMENT)).isEqualTo(4);
+	}
+
+	@Test
+	public void onlyLocatorsAScriptCanResolveAreSentAndDuplicatesOnlyOnce() {
+		StubPage page = new StubPage();
+
+		new SearchPage(page.driver).search("cheese");
+
+		assertThat(page.scriptLocators).containsExactlyInAnyOrder(
+				Arrays.asList("name", "q"),
+				Arrays.asList("name", "btnK"),
+				Arrays.asList("css", "#results a"),
+				Arrays.asList("id", "missing"));
+	}
+
+	@Test
+	public void elementsThatWereNotOnThePageAreLookedUpWhenUsed() {
+		StubPage page = new StubPage();
+		SearchPage searchPage = new SearchPage(page.driver);
+
+		searchPage.element(SearchPage.MISSING).click();
+
+		assertThat(page.count(DriverCommand.EXECUTE_SCRIPT)).isEqualTo(1);
+		assertThat(page.count(DriverCommand.FIND_ELEMENT)).isEqualTo(1);
+	}
+
+	private static class SearchPage extends BatchedPO {
+		private static final By MISSING = By.id("missing");
+
+		private final Query searchBar = new Query().defaultLocator(By.name("q"));
+		private final Query searchButton = new Query().defaultLocator(By.name("btnK"));
+		private final By firstResult = By.cssSelector("#results a");
+		private final By sameSearchBar = By.name("q");
+		private final By chained = new ByChained(By.id("form"), By.name("q"));
+
+		private SearchPage(RemoteWebDriver driver) {
+			super(driver, "http://example.com");
+		}
+
+		private void search(String searchTerm) {
+			element(searchBar).sendKeys(searchTerm);
+			element(searchButton).click();
+			element(firstResult).click();
+		}
+	}
+
+	/**
+	 * A page that has every element except "missing", and answers the batch script with an element per locator.
+	 */
+	private static class StubPage implements CommandExecutor {
+		private final RemoteWebDriver driver = new RemoteWebDriver(this, new ImmutableCapabilities());
+		private final List<String> commands = new ArrayList<>();
+		private List<Object> scriptLocators;
+
+		@Override
+		public Response execute(Command command) {
+			Response response = new Response();
+			response.setSessionId("session");
+			response.setStatus(0);
+			String name = command.getName();
+			if (DriverCommand.NEW_SESSION.equals(name)) {
+				response.setValue(Collections.singletonMap("browserName", "fake"));
+				return response;
+			}
+			commands.add(name);
+			if (DriverCommand.EXECUTE_SCRIPT.equals(name)) {
+				scriptLocators = new ArrayList<>();
+				List<Object> elements = new ArrayList<>();
+				for (Object sent : (Collection<?>) ((Collection<?>) command.getParameters().get("args")).iterator().next()) {
+					List<Object> locator = new ArrayList<>((Collection<?>) sent);
+					scriptLocators.add(locator);
+					elements.add("missing".equals(locator.get(1)) ? null : Collections.singletonMap("ELEMENT", locator.get(1)));
+				}
+				response.setValue(elements);
+			} else if (DriverCommand.FIND_ELEMENT.equals(name)) {
+				response.setValue(Collections.singletonMap("ELEMENT", String.valueOf(command.getParameters().get("value"))));
+			}
+
+			return response;
+		}
+
+		private int count(String command) {
+			return Collections.frequency(commands, command);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.lazerycode.selenium.page_objects;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Locatable;
+
+import com.lazerycode.selenium.config.BrowsingContext;
+
+/**
+ * Resolves the elements a page object works with once, and reuses them until the page changes.
+ * <p>
+ * {@link #find(By)} hands out an element that looks the locator up the first time it is used.  Later calls reuse the
+ * resolved reference without a round trip for as long as the browser has not navigated or switched window or frame,
+ * see {@link BrowsingContext}.  If the page changed in a way the driver cannot see (a click that navigates, a script
+ * that re-renders the element) the browser reports the reference as stale, the element is looked up again and the
+ * call is retried once.
+ * <p>
+ * The cache belongs to a single page object and so to a single thread.  Locators that match more than one element
+ * always resolve to the first match, as findElement does; call {@link #invalidate()} if the page reorders elements
+ * without replacing them.
+ */
+public class ElementCache {
+
+	private static final AtomicLong lookups = new AtomicLong();
+	private static final AtomicLong reuses = new AtomicLong();
+	private static final AtomicLong staleRetries = new AtomicLong();
+
+	private final WebDriver driver;
+	private final Map<By, CachedElement> elements = new HashMap<>();
+
+	public ElementCache(WebDriver driver) {
+		this.driver = driver;
+	}
+
+	/**
+	 * @return an element that resolves the locator lazily and re-resolves it when the page changes
+	 */
+	public WebElement find(By locator) {
+		return cachedElement(locator).proxy;
+	}
+
+	/**
+	 * Record an element that was resolved some other way, e.g. in a batch, so that its first use needs no lookup.
+	 */
+	public void prime(By locator, WebElement resolved) {
+		CachedElement element = cachedElement(locator);
+		element.resolved = resolved;
+		element.epoch = BrowsingContext.epoch(driver);
+	}
+
+	/**
+	 * Forget every resolved element, the next use of each looks it up again.
+	 */
+	public void invalidate() {
+		for (CachedElement element : elements.values()) {
+			element.resolved = null;
+		}
+	}
+
+	/**
+	 * @return the number of findElement calls made for cached elements, across all caches
+	 */
+	public static long getLookupCount() {
+		return lookups.get();
+	}
+
+	/**
+	 * @return the number of times a resolved element was reused instead of being looked up, across all caches
+	 */
+	public static long getReuseCount() {
+		return reuses.get();
+	}
+
+	/**
+	 * @return the number of calls that had to be retried because the element had gone stale, across all caches
+	 */
+	public static long getStaleRetryCount() {
+		return staleRetries.get();
+	}
+
+	private CachedElement cachedElement(By locator) {
+		CachedElement element = elements.get(locator);
+		if (element == null) {
+			element = new CachedElement(locator);
+			elements.put(locator, element);
+		}
+
+		return element;
+	}
+
+	private class CachedElement implements InvocationHandler {
+		private final By locator;
+		private final WebElement proxy;
+		private WebElement resolved;
+		private long epoch;
+
+		private CachedElement(By locator) {
+			this.locator = locator;
+			this.proxy = (WebElement) Proxy.newProxyInstance(ElementCache.class.getClassLoader(),
+					new Class<?>[]{WebElement.class, WrapsElement.class, WrapsDriver.class, Locatable.class}, this);
+		}
+
+		private WebElement resolve() {
+			long currentEpoch = BrowsingContext.epoch(driver);
+			if (resolved != null && epoch == currentEpoch) {
+				reuses.incrementAndGet();
+				return resolved;
+			}
+			lookups.incrementAndGet();
+			resolved = driver.findElement(locator);
+			epoch = currentEpoch;
+			return resolved;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "getWrappedElement":
+					return resolve();
+				case "getWrappedDriver":
+					return driver;
+				case "equals":
+					return proxy == args[0] || resolve().equals(args[0] instanceof WrapsElement ? ((WrapsElement) args[0]).getWrappedElement() : args[0]);
+				case "hashCode":
+					return resolve().hashCode();
+				case "toString":
+					return "Cached element " + locator + (resolved == null ? "" : " -> " + resolved);
+				default:
+					break;
+			}
+			try {
+				return call(method, args);
+			} catch (StaleElementReferenceException stale) {
+				staleRetries.incrementAndGet();
+				resolved = null;
+				return call(method, args);
+			}
+		}
+
+		private Object call(Method method, Object[] args) throws Throwable {
+			WebElement element = resolve();
+			if (!method.getDeclaringClass().isInstance(element)) {
+				throw new IllegalStateException("Cannot call " + method.getDeclaringClass().getSimpleName() + "." + method.getName()
+						+ " on " + element.getClass().getName() + " found by " + locator);
+			}
+			try {
+				return method.invoke(element, args);
+			} catch (InvocationTargetException failed) {
+				throw failed.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.lazerycode.selenium.page_objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.openqa.selenium.remote.Response;
+import org.testng.annotations.Test;
+
+public class ElementCacheTest {
+
+	private static final By SEARCH = By.id("search");
+
+	@Test
+	public void aResolvedElementIsReused() {
+		StubPage page = new StubPage();
+		ElementCache cache = new ElementCache(page.driver);
+		WebElement search = cache.find(SEARCH);
+
+		search.click();
+		search.click();
+		cache.find(SEARCH).click();
+
+		assertThat(page.count(DriverCommand.FIND_ELEMENT)).isEqualTo(1);
+		assertThat(page.count(DriverCommand.CLICK_ELEMENT)).isEqualTo(3);
+	}
+
+	@Test
+	public void nothingIsLookedUpUntilTheElementIsUsed() {
+		StubPage page = new StubPage();
+
+		new ElementCache(page.driver).find(SEARCH);
+
+		assertThat(page.commands).isEmpty();
+	}
+
+	@Test
+	public void aStaleElementIsLookedUpAgainAndTheCallRetriedOnce() {
+		StubPage page = new StubPage();
+		WebElement search = new ElementCache(page.driver).find(SEARCH);
+		search.click();
+		long staleRetries = ElementCache.getStaleRetryCount();
+
+		page.rerender("search");
+		search.click();
+
+		assertThat(page.count(DriverCommand.FIND_ELEMENT)).isEqualTo(2);
+		assertThat(page.count(DriverCommand.CLICK_ELEMENT)).isEqualTo(3);
+		assertThat(ElementCache.getStaleRetryCount()).isEqualTo(staleRetries + 1);
+		assertThat(((WrapsElement) search).getWrappedElement()).isEqualTo(page.driver.findElement(SEARCH));
+	}
+
+	@Test
+	public void anElementThatIsStillStaleAfterTheRetryFails() {
+		StubPage page = new StubPage();
+		WebElement search = new ElementCache(page.driver).find(SEARCH);
+		page.alwaysStale = true;
+
+		assertThatThrownBy(search::click).isInstanceOf(StaleElementReferenceException.class);
+		assertThat(page.count(DriverCommand.FIND_ELEMENT)).isEqualTo(2);
+		assertThat(page.count(DriverCommand.CLICK_ELEMENT)).isEqualTo(2);
+	}
+
+	@Test
+	public void primedElementsNeedNoLookupAndInvalidatedOnesAreLookedUpAgain() {
+		StubPage page = new StubPage();
+		ElementCache cache = new ElementCache(page.driver);
+		cache.prime(SEARCH, page.driver.findElement(SEARCH));
+
+		cache.find(SEARCH).click();
+		cache.invalidate();
+		cache.find(SEARCH).click();
+
+		assertThat(page.count(DriverCommand.FIND_ELEMENT)).isEqualTo(2);
+	}
+
+	@Test
+	public void cachedElementsAreEqualToTheElementTheyWrap() {
+		StubPage page = new StubPage();
+		WebElement search = new ElementCache(page.driver).find(SEARCH);
+		WebElement sameElementElsewhere = new ElementCache(page.driver).find(SEARCH);
+		WebElement resolved = page.driver.findElement(SEARCH);
+
+		assertThat(search.equals(resolved)).isTrue();
+		assertThat(search.equals(sameElementElsewhere)).isTrue();
+		assertThat(search.equals(search)).isTrue();
+		assertThat(search.equals(new ElementCache(page.driver).find(By.id("other")))).isFalse();
+		assertThat(search.hashCode()).isEqualTo(resolved.hashCode());
+		assertThat(((WrapsElement) search).getWrappedElement()).isInstanceOf(RemoteWebElement.class).isEqualTo(resolved);
+		assertThat(((WrapsDriver) search).getWrappedDriver()).isSameAs(page.driver);
+		assertThat(search.toString()).startsWith("Cached element " + SEARCH);
+	}
+
+	/**
+	 * A page whose elements keep their ids until they are re-rendered, after which the old ids are stale.
+	 */
+	private static class StubPage implements CommandExecutor {
+		private final RemoteWebDriver driver = new RemoteWebDriver(this, new ImmutableCapabilities());
+		private final List<String> commands = new ArrayList<>();
+		private final Map<String, Integer> renders = new HashMap<>();
+		private boolean alwaysStale;
+
+		@Override
+		public Response execute(Command command) {
+			Response response = new Response();
+			response.setSessionId("session");
+			response.setStatus(0);
+			String name = command.getName();
+			if (DriverCommand.NEW_SESSION.equals(name)) {
+				response.setValue(Collections.singletonMap("browserName", "fake"));
+				return response;
+			}
+			commands.add(name);
+			if (DriverCommand.FIND_ELEMENT.equals(name)) {
+				String id = String.valueOf(command.getParameters().get("value"));
+				response.setValue(Collections.singletonMap("ELEMENT", id + "-" + renders.getOrDefault(id, 0)));
+			} else if (DriverCommand.CLICK_ELEMENT.equals(name)) {
+				String elementId = String.valueOf(command.getParameters().get("id"));
+				String id = elementId.substring(0, elementId.lastIndexOf('-'));
+				if (alwaysStale || !elementId.equals(id + "-" + renders.getOrDefault(id, 0))) {
+					throw new StaleElementReferenceException(elementId + " is no longer attached to the DOM");
+				}
+			}
+
+			return response;
+		}
+
+		private void rerender(String id) {
+			renders.merge(id, 1, Integer::sum);
+		}
+
+		private int count(String command) {
+			return Collections.frequency(commands, command);
+		}
+	}
+}
@@ -4,33 +4,41 @@ import com.lazerycode.selenium.DriverBase;
 import com.lazerycode.selenium.util.Query;
 import org.openqa.selenium.By;
 
-import static com.lazerycode.selenium.util.AssignDriver.initQueryObjects;
-
-public class GoogleHomePage {
+public class GoogleHomePage extends BatchedPO {
 
     private Query searchBar = new Query().defaultLocator(By.name("q"));
     private Query googleSearch = new Query().defaultLocator(By.name("btnK"));
     private Query imFeelingLucky = new Query().defaultLocator(By.name("btnI"));
 
     public GoogleHomePage() throws Exception {
-        initQueryObjects(this, DriverBase.getDriver());
+        this("http://www.google.com");
+    }
+
+    public GoogleHomePage(String baseUrl) throws Exception {
+        super(DriverBase.getDriver(), baseUrl);
+    }
+
+    public GoogleHomePage open() {
+        driver.get(baseUrl);
+
+        return this;
     }
 
     public GoogleHomePage enterSearchTerm(String searchTerm) {
-        searchBar.findWebElement().clear();
-        searchBar.findWebElement().sendKeys(searchTerm);
+        element(searchBar).clear();
+        element(searchBar).sendKeys(searchTerm);
 
         return this;
     }
 
     public GoogleHomePage submitSearch() {
-        googleSearch.findWebElement().submit();
+        element(googleSearch).submit();
 
         return this;
     }
 
     public void getLucky() {
-        imFeelingLucky.findWebElement().click();
+        element(imFeelingLucky).click();
     }
 
-}
\ No newline at end of file
+}
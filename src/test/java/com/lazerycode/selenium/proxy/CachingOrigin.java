@@ -0,0 +1,347 @@
+package com.lazerycode.selenium.proxy;
+
+import okhttp3.Headers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serve repeated requests for static assets from memory, or from disk when a cache directory is configured, so that
+ * every browser in the suite shares one warm cache.
+ * <p>
+ * Only successful responses to plain GET requests are cached: requests that carry credentials (Authorization or
+ * Cookie) or ask for a range always go to the origin, since the cache is shared by every browser and session.  A
+ * response is cached for the lifetime the server gives it (s-maxage, max-age, or Expires relative to Date, less any
+ * Age), so max-age=0 or an Expires in the past is not cached at all.  A response without a lifetime is only cached if
+ * its URL ends in a static file extension, for a tenth of the time since it was last modified, at most a day, or an
+ * hour if the server does not say when it was last modified.  Stale responses are fetched again rather than
+ * revalidated.
+ */
+public class CachingOrigin implements Origin {
+
+    private static final List<String> STATIC_EXTENSIONS = Arrays.asList(
+            ".js", ".mjs", ".css", ".png", ".jpg", ".jpeg", ".gif", ".svg", ".webp", ".ico", ".woff", ".woff2", ".ttf", ".otf", ".eot"
+    );
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|,)\\s*max-age\\s*=\\s*\"?(\\d+)");
+    private static final Pattern SHARED_MAX_AGE = Pattern.compile("(?:^|,)\\s*s-maxage\\s*=\\s*\"?(\\d+)");
+    private static final long MAXIMUM_HEURISTIC_LIFETIME_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long DEFAULT_STATIC_LIFETIME_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Origin origin;
+    private final File cacheDirectory;
+    private final long maximumMemoryBytes;
+    private final Map<String, CachedResponse> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param cacheDirectory where cached responses survive between runs, or null to only cache in memory
+     */
+    public CachingOrigin(Origin origin, File cacheDirectory, long maximumMemoryBytes) {
+        this.origin = origin;
+        this.cacheDirectory = cacheDirectory;
+        this.maximumMemoryBytes = maximumMemoryBytes;
+    }
+
+    @Override
+    public ProxyResponse fetch(ProxyRequest request) throws IOException {
+        if (!isCacheable(request)) {
+            return origin.fetch(request);
+        }
+        String key = cacheKey(request);
+        long now = System.currentTimeMillis();
+        CachedResponse cached = fromMemory(key, now);
+        if (null == cached) {
+            cached = fromDisk(key, now);
+            if (null != cached) {
+                toMemory(key, cached);
+            }
+        }
+        if (null != cached) {
+            hits.incrementAndGet();
+            return cached.response;
+        }
+
+        misses.incrementAndGet();
+        ProxyResponse response = origin.fetch(request);
+        long lifetime = freshnessLifetimeMillis(request, response);
+        if (lifetime > 0) {
+            CachedResponse fresh = new CachedResponse(response, now + lifetime);
+            toMemory(key, fresh);
+            toDisk(key, fresh);
+        }
+
+        return response;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d cache hits, %d misses (%s)", getHitCount(), getMissCount(), origin);
+    }
+
+    /**
+     * @return false if the response to the request must neither be served from nor stored in the cache
+     */
+    static boolean isCacheable(ProxyRequest request) {
+        Headers headers = request.getHeaders();
+
+        return "GET".equals(request.getMethod()) && null == headers.get("Authorization") && null == headers.get("Cookie")
+                && null == headers.get("Range");
+    }
+
+    static boolean isCacheable(ProxyRequest request, ProxyResponse response) {
+        return isCacheable(request) && freshnessLifetimeMillis(request, response) > 0;
+    }
+
+    /**
+     * @return how long the response can be served from the cache, 0 if it must not be cached
+     */
+    static long freshnessLifetimeMillis(ProxyRequest request, ProxyResponse response) {
+        if (response.getStatus() != 200) {
+            return 0;
+        }
+        Headers headers = response.getHeaders();
+        String cacheControl = lowerCase(headers.get("Cache-Control"));
+        if (cacheControl.contains("no-store") || cacheControl.contains("private") || cacheControl.contains("no-cache")) {
+            return 0;
+        }
+        String vary = lowerCase(headers.get("Vary")).replace("accept-encoding", "").replace(",", "").trim();
+        if (!vary.isEmpty() || null != headers.get("Set-Cookie")) {
+            return 0;
+        }
+        Long date = httpDate(headers.get("Date"));
+        long responseTime = null == date ? System.currentTimeMillis() : date;
+        long age = TimeUnit.SECONDS.toMillis(Math.max(0, seconds(headers.get("Age"))));
+        long sharedMaxAge = directiveSeconds(cacheControl, SHARED_MAX_AGE);
+        long maxAge = sharedMaxAge >= 0 ? sharedMaxAge : directiveSeconds(cacheControl, MAX_AGE);
+        if (maxAge >= 0) {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(maxAge) - age);
+        }
+        String expires = headers.get("Expires");
+        if (null != expires) {
+            // An Expires that is not a date, such as 0, means already expired
+            Long expiry = httpDate(expires);
+            return null == expiry ? 0 : Math.max(0, expiry - responseTime - age);
+        }
+        String path = lowerCase(request.getUrl().split("[?#]", 2)[0]);
+        for (String extension : STATIC_EXTENSIONS) {
+            if (path.endsWith(extension)) {
+                Long lastModified = httpDate(headers.get("Last-Modified"));
+                if (null == lastModified) {
+                    return DEFAULT_STATIC_LIFETIME_MILLIS;
+                }
+                return Math.max(0, Math.min(MAXIMUM_HEURISTIC_LIFETIME_MILLIS, (responseTime - lastModified) / 10) - age);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the number of seconds given to the Cache-Control directive, or -1 if it is not there
+     */
+    private static long directiveSeconds(String cacheControl, Pattern directive) {
+        Matcher matcher = directive.matcher(cacheControl);
+
+        return matcher.find() ? seconds(matcher.group(1)) : -1;
+    }
+
+    /**
+     * @return the number of seconds, or -1 if the value is missing or not a number
+     */
+    private static long seconds(String value) {
+        if (null == value || !value.trim().matches("\\d+")) {
+            return -1;
+        }
+        try {
+            return Math.min(Integer.MAX_VALUE, Long.parseLong(value.trim()));
+        } catch (NumberFormatException tooLarge) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return the HTTP date in milliseconds since the epoch, or null if it is missing or not a date
+     */
+    private static Long httpDate(String value) {
+        if (null == value) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException notADate) {
+            return null;
+        }
+    }
+
+    private static String cacheKey(ProxyRequest request) {
+        String acceptEncoding = request.getHeaders().get("Accept-Encoding");
+
+        return request.getUrl() + "\n" + (null == acceptEncoding ? "" : acceptEncoding);
+    }
+
+    private synchronized CachedResponse fromMemory(String key, long now) {
+        CachedResponse cached = memory.get(key);
+        if (null != cached && cached.isStale(now)) {
+            memory.remove(key);
+            memoryBytes -= cached.size();
+            return null;
+        }
+
+        return cached;
+    }
+
+    private synchronized void toMemory(String key, CachedResponse response) {
+        if (response.size() > maximumMemoryBytes) {
+            return;
+        }
+        CachedResponse replaced = memory.put(key, response);
+        memoryBytes += response.size() - (null == replaced ? 0 : replaced.size());
+        Iterator<CachedResponse> leastRecentlyUsed = memory.values().iterator();
+        while (memoryBytes > maximumMemoryBytes && leastRecentlyUsed.hasNext()) {
+            memoryBytes -= leastRecentlyUsed.next().size();
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private CachedResponse fromDisk(String key, long now) {
+        if (null == cacheDirectory) {
+            return null;
+        }
+        File cached = diskFile(key);
+        if (!cached.exists()) {
+            return null;
+        }
+        CachedResponse response;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(cached))) {
+            long freshUntil = input.readLong();
+            response = new CachedResponse(readResponse(input), freshUntil);
+        } catch (IOException | RuntimeException unreadable) {
+            cached.delete();
+            return null;
+        }
+        if (response.isStale(now)) {
+            cached.delete();
+            return null;
+        }
+
+        return response;
+    }
+
+    private void toDisk(String key, CachedResponse response) {
+        if (null == cacheDirectory) {
+            return;
+        }
+        File cached = diskFile(key);
+        try {
+            cached.getParentFile().mkdirs();
+            File temporary = File.createTempFile(cached.getName(), ".tmp", cached.getParentFile());
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temporary))) {
+                output.writeLong(response.freshUntil);
+                writeResponse(output, response.response);
+            }
+            Files.move(temporary.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException unableToCache) {
+            System.err.println("Unable to write " + cached + " to the proxy cache: " + unableToCache.getMessage());
+        }
+    }
+
+    private File diskFile(String key) {
+        String hash = sha256(key);
+
+        return new File(new File(cacheDirectory, hash.substring(0, 2)), hash);
+    }
+
+    static void writeResponse(DataOutputStream output, ProxyResponse response) throws IOException {
+        output.writeInt(response.getStatus());
+        output.writeUTF(response.getReason());
+        Headers headers = response.getHeaders();
+        output.writeInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            output.writeUTF(headers.name(i));
+            output.writeUTF(headers.value(i));
+        }
+        output.writeInt(response.getBody().length);
+        output.write(response.getBody());
+    }
+
+    static ProxyResponse readResponse(DataInputStream input) throws IOException {
+        int status = input.readInt();
+        String reason = input.readUTF();
+        Headers.Builder headers = new Headers.Builder();
+        int headerCount = input.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(input.readUTF(), input.readUTF());
+        }
+        byte[] body = new byte[input.readInt()];
+        input.readFully(body);
+
+        return new ProxyResponse(status, reason, headers.build(), body);
+    }
+
+    static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String lowerCase(String value) {
+        return null == value ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static class CachedResponse {
+        private final ProxyResponse response;
+        private final long freshUntil;
+
+        private CachedResponse(ProxyResponse response, long freshUntil) {
+            this.response = response;
+            this.freshUntil = freshUntil;
+        }
+
+        private boolean isStale(long now) {
+            return now >= freshUntil;
+        }
+
+        private long size() {
+            return response.getBody().length;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.lazerycode.selenium.proxy;
+
+import okhttp3.Headers;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingOriginTest {
+
+    private static final long NOW = TimeUnit.DAYS.toMillis(20000);
+    private static final ProxyRequest GET_SCRIPT = request("GET", "http://example.com/app.js");
+    private static final ProxyRequest GET_PAGE = request("GET", "http://example.com/account");
+
+    @Test
+    public void onlyPlainGetRequestsAreCacheable() {
+        assertThat(CachingOrigin.isCacheable(GET_SCRIPT)).isTrue();
+        assertThat(CachingOrigin.isCacheable(request("POST", "http://example.com/app.js"))).isFalse();
+        assertThat(CachingOrigin.isCacheable(request("GET", "http://example.com/app.js", "Authorization", "Basic dXNlcjpwYXNz"))).isFalse();
+        assertThat(CachingOrigin.isCacheable(request("GET", "http://example.com/app.js", "Cookie", "session=1"))).isFalse();
+        assertThat(CachingOrigin.isCacheable(request("GET", "http://example.com/app.js", "Range", "bytes=0-99"))).isFalse();
+    }
+
+    @Test
+    public void maxAgeGivesTheLifetime() {
+        assertThat(lifetime(GET_PAGE, "Cache-Control", "public, max-age=3600")).isEqualTo(TimeUnit.HOURS.toMillis(1));
+        assertThat(lifetime(GET_PAGE, "Cache-Control", "max-age=60, s-maxage=600")).isEqualTo(TimeUnit.MINUTES.toMillis(10));
+        assertThat(lifetime(GET_PAGE, "Cache-Control", "max-age=100", "Age", "40")).isEqualTo(TimeUnit.SECONDS.toMillis(60));
+    }
+
+    @Test
+    public void maxAgeZeroIsNotCachedEvenForStaticAssets() {
+        assertThat(lifetime(GET_SCRIPT, "Cache-Control", "max-age=0")).isZero();
+        assertThat(CachingOrigin.isCacheable(GET_SCRIPT, response("Cache-Control", "max-age=0"))).isFalse();
+    }
+
+    @Test
+    public void expiresIsRelativeToTheResponseDate() {
+        assertThat(lifetime(GET_PAGE, "Date", httpDate(NOW), "Expires", httpDate(NOW + TimeUnit.MINUTES.toMillis(5))))
+                .isEqualTo(TimeUnit.MINUTES.toMillis(5));
+        assertThat(lifetime(GET_SCRIPT, "Date", httpDate(NOW), "Expires", httpDate(NOW - 1000))).isZero();
+        assertThat(lifetime(GET_SCRIPT, "Expires", "0")).isZero();
+    }
+
+    @Test
+    public void responsesTheServerKeepsPrivateAreNotCached() {
+        assertThat(lifetime(GET_SCRIPT, "Cache-Control", "no-store")).isZero();
+        assertThat(lifetime(GET_SCRIPT, "Cache-Control", "private, max-age=3600")).isZero();
+        assertThat(lifetime(GET_SCRIPT, "Cache-Control", "max-age=3600", "Set-Cookie", "session=1")).isZero();
+        assertThat(lifetime(GET_SCRIPT, "Cache-Control", "max-age=3600", "Vary", "Cookie")).isZero();
+        assertThat(lifetime(GET_SCRIPT, "Cache-Control", "max-age=3600", "Vary", "Accept-Encoding")).isPositive();
+    }
+
+    @Test
+    public void staticAssetsWithoutALifetimeGetAHeuristicOne() {
+        assertThat(lifetime(GET_SCRIPT)).isEqualTo(TimeUnit.HOURS.toMillis(1));
+        assertThat(lifetime(GET_SCRIPT, "Date", httpDate(NOW), "Last-Modified", httpDate(NOW - TimeUnit.HOURS.toMillis(10))))
+                .isEqualTo(TimeUnit.HOURS.toMillis(1));
+        assertThat(lifetime(GET_SCRIPT, "Date", httpDate(NOW), "Last-Modified", httpDate(NOW - TimeUnit.DAYS.toMillis(365))))
+                .isEqualTo(TimeUnit.DAYS.toMillis(1));
+        assertThat(lifetime(GET_PAGE)).isZero();
+    }
+
+    @Test
+    public void requestsWithCredentialsAlwaysGoToTheOrigin() throws IOException {
+        CountingOrigin network = new CountingOrigin("Cache-Control", "max-age=3600");
+        CachingOrigin cache = new CachingOrigin(network, null, 1024 * 1024);
+        ProxyRequest withCookie = request("GET", "http://example.com/app.js", "Cookie", "session=1");
+
+        cache.fetch(GET_SCRIPT);
+        cache.fetch(withCookie);
+        cache.fetch(withCookie);
+        cache.fetch(request("POST", "http://example.com/app.js"));
+
+        assertThat(network.fetches.get()).isEqualTo(4);
+        assertThat(cache.fetch(GET_SCRIPT).getBody()).isEqualTo(bytes("body"));
+        assertThat(network.fetches.get()).isEqualTo(4);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void staleResponsesAreFetchedAgain() throws Exception {
+        CountingOrigin network = new CountingOrigin("Cache-Control", "max-age=1");
+        CachingOrigin cache = new CachingOrigin(network, null, 1024 * 1024);
+
+        cache.fetch(GET_SCRIPT);
+        cache.fetch(GET_SCRIPT);
+        Thread.sleep(1100);
+        cache.fetch(GET_SCRIPT);
+
+        assertThat(network.fetches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void freshResponsesSurviveOnDisk() throws IOException {
+        File cacheDirectory = Files.createTempDirectory("proxy-cache").toFile();
+        try {
+            CountingOrigin network = new CountingOrigin("Cache-Control", "max-age=3600");
+            new CachingOrigin(network, cacheDirectory, 1024 * 1024).fetch(GET_SCRIPT);
+            CachingOrigin nextRun = new CachingOrigin(network, cacheDirectory, 1024 * 1024);
+
+            assertThat(nextRun.fetch(GET_SCRIPT).getBody()).isEqualTo(bytes("body"));
+            assertThat(network.fetches.get()).isEqualTo(1);
+            assertThat(nextRun.getHitCount()).isEqualTo(1);
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory);
+        }
+    }
+
+    private static long lifetime(ProxyRequest request, String... headers) {
+        return CachingOrigin.freshnessLifetimeMillis(request, response(headers));
+    }
+
+    private static ProxyRequest request(String method, String url, String... headers) {
+        return new ProxyRequest(method, url, Headers.of(headers), new byte[0]);
+    }
+
+    private static ProxyResponse response(String... headers) {
+        return new ProxyResponse(200, "OK", Headers.of(headers), bytes("body"));
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class CountingOrigin implements Origin {
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final String[] headers;
+
+        private CountingOrigin(String... headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public ProxyResponse fetch(ProxyRequest request) {
+            fetches.incrementAndGet();
+            return response(headers);
+        }
+    }
+}
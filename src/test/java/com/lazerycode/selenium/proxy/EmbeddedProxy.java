@@ -0,0 +1,455 @@
+package com.lazerycode.selenium.proxy;
+
+import com.lazerycode.selenium.config.RunConfig;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.lazerycode.selenium.config.RunConfig.*;
+
+/**
+ * An HTTP proxy that runs inside the test JVM and is shared by every local browser.
+ * <p>
+ * Requests to blocked hosts (analytics, ads etc. see -DproxyBlockedHosts) are answered with an empty response without
+ * touching the network, everything else is fetched through a {@link CachingOrigin} so that static assets are downloaded
+ * once per suite, or once ever when -DproxyCacheDirectory is set.  HTTPS is intercepted: the browser's CONNECT tunnel is
+ * terminated here with a self-signed certificate, which browsers accept because DriverFactory asks for
+ * acceptInsecureCerts.  WebSocket upgrades are not supported.
+ * <p>
+ * The proxy is switched on with -DembeddedProxy=true.  If -DproxyEnabled=true is also set the proxy it describes is
+ * used as the upstream proxy.  -DproxyMode=record fetches everything from the network, bypassing the cache, and records
+ * all traffic in a {@link TrafficArchive}, -DproxyMode=replay serves it back without any network access, see
+ * {@link ReplayOrigin}.
+ */
+public class EmbeddedProxy {
+
+    private static final String DEFAULT_BLOCKED_HOSTS = "google-analytics.com,googletagmanager.com,googletagservices.com," +
+            "doubleclick.net,googlesyndication.com,googleadservices.com,adservice.google.com,connect.facebook.net," +
+            "hotjar.com,scorecardresearch.com,quantserve.com";
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().startsWith("windows");
+    private static final char[] KEYSTORE_PASSWORD = "embedded-proxy".toCharArray();
+    private static final int SOCKET_TIMEOUT_MILLIS = 120000;
+    private static final int MAXIMUM_LINE_LENGTH = 65536;
+
+    private static EmbeddedProxy runningProxy;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Origin origin;
+    private final List<String> blockedHosts;
+    private final SSLContext interceptContext;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong blockedRequests = new AtomicLong();
+
+    public EmbeddedProxy(Origin origin, List<String> blockedHosts) throws IOException {
+        this.origin = origin;
+        this.blockedHosts = blockedHosts;
+        this.interceptContext = interceptContext();
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        this.connections = Executors.newCachedThreadPool(daemonThreads("embedded-proxy"));
+        Thread acceptor = new Thread(this::acceptConnections, "embedded-proxy-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Start the suite's proxy if it is not already running, it is stopped when the JVM shuts down.
+     */
+    public static synchronized EmbeddedProxy start(RunConfig runConfig) throws IOException {
+        if (null == runningProxy) {
+            List<String> blockedHosts = new ArrayList<>();
+            for (String host : runConfig.get(PROXY_BLOCKED_HOSTS, DEFAULT_BLOCKED_HOSTS).split(",")) {
+                if (!host.trim().isEmpty()) {
+                    blockedHosts.add(host.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            EmbeddedProxy proxy = new EmbeddedProxy(originFor(runConfig), blockedHosts);
+            Runtime.getRuntime().addShutdownHook(new Thread(proxy::stop, "embedded-proxy-shutdown"));
+            System.out.println("Embedded proxy listening on " + proxy.getAddress());
+            runningProxy = proxy;
+        }
+
+        return runningProxy;
+    }
+
+    /**
+     * @return the suite's proxy, or null if it has not been started.
+     */
+    public static synchronized EmbeddedProxy getRunningProxy() {
+        return runningProxy;
+    }
+
+    /**
+     * Build the chain of origins the proxy fetches responses from, see -DproxyMode.
+     */
+    static Origin originFor(RunConfig runConfig) throws IOException {
+        String proxyMode = runConfig.get(PROXY_MODE, PROXY_MODE_LIVE);
+        File archiveDirectory = new File(runConfig.get(PROXY_ARCHIVE, "target/http-archive"));
+        if (PROXY_MODE_REPLAY.equalsIgnoreCase(proxyMode)) {
+            String latency = runConfig.get(PROXY_REPLAY_LATENCY, "0");
+            return new ReplayOrigin(TrafficArchive.load(archiveDirectory),
+                    "recorded".equalsIgnoreCase(latency) ? ReplayOrigin.RECORDED_LATENCY : Long.parseLong(latency));
+        }
+
+        Origin network;
+        if (runConfig.getBoolean(PROXY_ENABLED)) {
+            network = new NetworkOrigin(runConfig.get(PROXY_HOST), runConfig.getInt(PROXY_PORT, 8080),
+                    runConfig.get(PROXY_USERNAME, null), runConfig.get(PROXY_PASSWORD, null));
+        } else {
+            network = new NetworkOrigin();
+        }
+        if (PROXY_MODE_RECORD.equalsIgnoreCase(proxyMode)) {
+            // A cache in front of the recorder would keep cache hits, and their real latency, out of the archive
+            return new RecordingOrigin(network, TrafficArchive.create(archiveDirectory));
+        }
+        String cacheDirectory = runConfig.get(PROXY_CACHE_DIRECTORY, "");
+
+        return new CachingOrigin(network, cacheDirectory.isEmpty() ? null : new File(cacheDirectory),
+                runConfig.getInt(PROXY_CACHE_SIZE, 256) * 1024L * 1024L);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return host:port for the browser's proxy settings
+     */
+    public String getAddress() {
+        return serverSocket.getInetAddress().getHostAddress() + ":" + getPort();
+    }
+
+    public Origin getOrigin() {
+        return origin;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getBlockedRequestCount() {
+        return blockedRequests.get();
+    }
+
+    public synchronized void stop() {
+        if (serverSocket.isClosed()) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+        connections.shutdownNow();
+        System.out.println(String.format("Embedded proxy served %d requests, %d blocked, %s", getRequestCount(), getBlockedRequestCount(), origin));
+        if (origin instanceof Closeable) {
+            try {
+                ((Closeable) origin).close();
+            } catch (IOException ex) {
+                System.err.println("Unable to close " + origin + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    boolean isBlocked(String host) {
+        String lowerCaseHost = host.toLowerCase(Locale.ROOT);
+        for (String blockedHost : blockedHosts) {
+            if (lowerCaseHost.equals(blockedHost) || lowerCaseHost.endsWith("." + blockedHost)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> handleConnection(socket));
+            } catch (IOException | RuntimeException stopped) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Embedded proxy stopped accepting connections: " + stopped.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try {
+            socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            serve(socket, new BufferedInputStream(socket.getInputStream()), new BufferedOutputStream(socket.getOutputStream()), null);
+        } catch (IOException connectionClosed) {
+            // The browser went away, nothing to clean up but the socket
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * Serve requests on one connection until either side closes it.
+     *
+     * @param tunnelAuthority host:port of the CONNECT tunnel these requests arrived through, or null for plain HTTP
+     */
+    private void serve(Socket socket, InputStream input, OutputStream output, String tunnelAuthority) throws IOException {
+        String requestLine;
+        while (null != (requestLine = readLine(input))) {
+            if (requestLine.isEmpty()) {
+                continue;
+            }
+            String[] request = requestLine.split(" ");
+            if (request.length != 3) {
+                writeResponse(output, "GET", ProxyResponse.empty(400, "Bad Request"), false);
+                return;
+            }
+            String method = request[0].toUpperCase(Locale.ROOT);
+            Headers headers = readHeaders(input);
+            if ("CONNECT".equals(method) && null == tunnelAuthority) {
+                intercept(socket, output, request[1]);
+                return;
+            }
+            byte[] body = readBody(input, headers);
+            boolean keepAlive = "HTTP/1.1".equals(request[2])
+                    && !"close".equalsIgnoreCase(headers.get("Connection"))
+                    && !"close".equalsIgnoreCase(headers.get("Proxy-Connection"));
+
+            String url = null == tunnelAuthority ? request[1] : "https://" + stripDefaultPort(tunnelAuthority) + request[1];
+            writeResponse(output, method, respond(new ProxyRequest(method, url, headers, body)), keepAlive);
+            if (!keepAlive) {
+                return;
+            }
+        }
+    }
+
+    private ProxyResponse respond(ProxyRequest request) {
+        requests.incrementAndGet();
+        HttpUrl url = HttpUrl.parse(request.getUrl());
+        if (null == url) {
+            return ProxyResponse.empty(400, "Bad Request");
+        }
+        if (isBlocked(url.host())) {
+            blockedRequests.incrementAndGet();
+            return ProxyResponse.empty(204, "No Content");
+        }
+        if (null != request.getHeaders().get("Upgrade")) {
+            return ProxyResponse.empty(501, "Not Implemented");
+        }
+        try {
+            return origin.fetch(request);
+        } catch (IOException | RuntimeException unableToFetch) {
+            System.err.println("Embedded proxy unable to fetch " + request + ": " + unableToFetch.getMessage());
+            return ProxyResponse.empty(502, "Bad Gateway");
+        }
+    }
+
+    /**
+     * Terminate a CONNECT tunnel here so that the HTTPS requests inside it can be served like any other request.
+     */
+    private void intercept(Socket socket, OutputStream output, String authority) throws IOException {
+        String host = authority.contains(":") ? authority.substring(0, authority.lastIndexOf(':')) : authority;
+        if (isBlocked(host)) {
+            requests.incrementAndGet();
+            blockedRequests.incrementAndGet();
+            writeResponse(output, "CONNECT", ProxyResponse.empty(403, "Forbidden"), false);
+            return;
+        }
+        output.write("HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        output.flush();
+
+        SSLSocket tunnel = (SSLSocket) interceptContext.getSocketFactory().createSocket(socket, host, socket.getPort(), true);
+        tunnel.setUseClientMode(false);
+        try {
+            serve(tunnel, new BufferedInputStream(tunnel.getInputStream()), new BufferedOutputStream(tunnel.getOutputStream()), authority);
+        } catch (SocketException tunnelClosed) {
+            // The browser closed the tunnel
+        } finally {
+            tunnel.close();
+        }
+    }
+
+    private static void writeResponse(OutputStream output, String method, ProxyResponse response, boolean keepAlive) throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response.getStatus()).append(' ')
+                .append(response.getReason().isEmpty() ? "-" : response.getReason()).append("\r\n");
+        Headers headers = response.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!NetworkOrigin.HOP_BY_HOP_HEADERS.contains(headers.name(i).toLowerCase(Locale.ROOT))) {
+                head.append(headers.name(i)).append(": ").append(headers.value(i)).append("\r\n");
+            }
+        }
+        boolean hasBody = !"HEAD".equals(method) && response.getStatus() >= 200 && response.getStatus() != 204 && response.getStatus() != 304;
+        if (hasBody) {
+            head.append("Content-Length: ").append(response.getBody().length).append("\r\n");
+        }
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        output.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (hasBody) {
+            output.write(response.getBody());
+        }
+        output.flush();
+    }
+
+    private static Headers readHeaders(InputStream input) throws IOException {
+        Headers.Builder headers = new Headers.Builder();
+        String line;
+        while (null != (line = readLine(input)) && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                try {
+                    headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                } catch (IllegalArgumentException invalidHeader) {
+                    // Dropped, OkHttp would refuse to send it on
+                }
+            }
+        }
+
+        return headers.build();
+    }
+
+    private static byte[] readBody(InputStream input, Headers headers) throws IOException {
+        if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            String chunkSize;
+            while (null != (chunkSize = readLine(input))) {
+                int size = Integer.parseInt(chunkSize.split(";", 2)[0].trim(), 16);
+                if (size == 0) {
+                    readHeaders(input);
+                    break;
+                }
+                body.write(readFully(input, size));
+                readLine(input);
+            }
+            return body.toByteArray();
+        }
+        String contentLength = headers.get("Content-Length");
+
+        return null == contentLength ? new byte[0] : readFully(input, Integer.parseInt(contentLength.trim()));
+    }
+
+    private static byte[] readFully(InputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = input.read(bytes, read, length - read);
+            if (count < 0) {
+                throw new IOException("Connection closed part way through a request body");
+            }
+            read += count;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @return the next line without its line ending, or null at the end of the stream
+     */
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = input.read()) >= 0) {
+            if (b == '\n') {
+                break;
+            }
+            if (line.size() > MAXIMUM_LINE_LENGTH) {
+                throw new IOException("Request line too long");
+            }
+            line.write(b);
+        }
+        if (b < 0 && line.size() == 0) {
+            return null;
+        }
+        String text = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private static String stripDefaultPort(String authority) {
+        return authority.endsWith(":443") ? authority.substring(0, authority.length() - 4) : authority;
+    }
+
+    /**
+     * Generate a throwaway self-signed certificate with keytool, there is no public API for it in Java 8.
+     */
+    private static SSLContext interceptContext() throws IOException {
+        File keystore = File.createTempFile("embedded-proxy", ".p12");
+        keystore.delete();
+        keystore.deleteOnExit();
+        String keytool = new File(new File(System.getProperty("java.home"), "bin"), WINDOWS ? "keytool.exe" : "keytool").getPath();
+        String password = new String(KEYSTORE_PASSWORD);
+        Process generate = new ProcessBuilder(keytool, "-genkeypair", "-alias", "embedded-proxy", "-keyalg", "RSA",
+                "-keysize", "2048", "-validity", "3650", "-dname", "CN=Embedded Test Proxy", "-storetype", "PKCS12",
+                "-keystore", keystore.getAbsolutePath(), "-storepass", password, "-keypass", password)
+                .redirectErrorStream(true)
+                .start();
+        ByteArrayOutputStream keytoolOutput = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = generate.getInputStream().read(buffer)) >= 0) {
+            keytoolOutput.write(buffer, 0, count);
+        }
+        try {
+            if (!generate.waitFor(60, TimeUnit.SECONDS) || generate.exitValue() != 0) {
+                throw new IOException("Unable to generate the proxy certificate: " + keytoolOutput.toString("UTF-8"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating the proxy certificate", ex);
+        }
+
+        try (InputStream keystoreInput = new FileInputStream(keystore)) {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(keystoreInput, KEYSTORE_PASSWORD);
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+            return sslContext;
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Unable to load the proxy certificate", ex);
+        } finally {
+            keystore.delete();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package com.lazerycode.selenium.proxy;
+
+import com.lazerycode.selenium.config.RunConfig;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmbeddedProxyTest {
+
+    private static final RunConfig RUN_CONFIG = RunConfig.fromSystemProperties()
+            .with(RunConfig.PROXY_ENABLED, null)
+            .with(RunConfig.PROXY_CACHE_DIRECTORY, null);
+
+    @Test
+    public void liveTrafficGoesThroughTheCache() throws Exception {
+        assertThat(EmbeddedProxy.originFor(RUN_CONFIG.with(RunConfig.PROXY_MODE, RunConfig.PROXY_MODE_LIVE)))
+                .isInstanceOf(CachingOrigin.class);
+    }
+
+    @Test
+    public void recordingBypassesTheCache() throws Exception {
+        File archive = Files.createTempDirectory("http-archive").toFile();
+        try {
+            Origin origin = EmbeddedProxy.originFor(RUN_CONFIG
+                    .with(RunConfig.PROXY_MODE, RunConfig.PROXY_MODE_RECORD)
+                    .with(RunConfig.PROXY_ARCHIVE, archive.getPath()));
+
+            assertThat(origin).isInstanceOf(RecordingOrigin.class);
+        } finally {
+            FileUtils.deleteDirectory(archive);
+        }
+    }
+
+    @Test
+    public void stoppingTheProxyClosesTheArchiveBeingRecorded() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        Origin recording = new ClosingOrigin(closed);
+        EmbeddedProxy proxy = new EmbeddedProxy(recording, Collections.emptyList());
+
+        proxy.stop();
+
+        assertThat(closed).isTrue();
+    }
+
+    private static class ClosingOrigin implements Origin, Closeable {
+        private final AtomicBoolean closed;
+
+        private ClosingOrigin(AtomicBoolean closed) {
+            this.closed = closed;
+        }
+
+        @Override
+        public ProxyResponse fetch(ProxyRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.lazerycode.selenium.proxy;
+
+import okhttp3.Authenticator;
+import okhttp3.Credentials;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetch responses from the real server, optionally through an upstream proxy.
+ * <p>
+ * Requests and responses are passed through as they are, including their content encoding, only hop-by-hop headers are
+ * dropped.  Redirects are returned to the browser rather than followed.  Browsers are started with acceptInsecureCerts,
+ * so server certificates are not validated here either, otherwise test environments with self-signed certificates
+ * would stop working behind the proxy.
+ */
+public class NetworkOrigin implements Origin {
+
+    static final List<String> HOP_BY_HOP_HEADERS = Arrays.asList(
+            "connection",
+            "keep-alive",
+            "proxy-connection",
+            "proxy-authenticate",
+            "proxy-authorization",
+            "te",
+            "trailer",
+            "transfer-encoding",
+            "upgrade",
+            "host",
+            "content-length"
+    );
+
+    private static final List<String> METHODS_REQUIRING_BODY = Arrays.asList("POST", "PUT", "PATCH", "PROPPATCH", "REPORT");
+
+    private static final X509TrustManager TRUST_EVERYTHING = new X509TrustManager() {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    };
+    private static final SSLContext INSECURE_SSL_CONTEXT = insecureSslContext();
+
+    private final OkHttpClient client;
+
+    public NetworkOrigin() {
+        this(null, 0, null, null);
+    }
+
+    /**
+     * @param upstreamHost the proxy to send requests through, or null to connect directly
+     */
+    public NetworkOrigin(String upstreamHost, int upstreamPort, String upstreamUsername, String upstreamPassword) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .sslSocketFactory(INSECURE_SSL_CONTEXT.getSocketFactory(), TRUST_EVERYTHING)
+                .hostnameVerifier((hostname, session) -> true);
+        if (null != upstreamHost) {
+            builder.proxy(new Proxy(Proxy.Type.HTTP, new InetSocketAddress(upstreamHost, upstreamPort)));
+            if (null != upstreamUsername) {
+                String credentials = Credentials.basic(upstreamUsername, null == upstreamPassword ? "" : upstreamPassword);
+                builder.proxyAuthenticator(upstreamAuthenticator(credentials));
+            }
+        }
+        client = builder.build();
+    }
+
+    @Override
+    public ProxyResponse fetch(ProxyRequest request) throws IOException {
+        Headers.Builder headers = new Headers.Builder();
+        for (int i = 0; i < request.getHeaders().size(); i++) {
+            String name = request.getHeaders().name(i);
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                headers.add(name, request.getHeaders().value(i));
+            }
+        }
+        RequestBody body = null;
+        if (request.getBody().length > 0 || METHODS_REQUIRING_BODY.contains(request.getMethod())) {
+            String contentType = request.getHeaders().get("Content-Type");
+            body = RequestBody.create(null == contentType ? null : MediaType.parse(contentType), request.getBody());
+        }
+        Request originRequest = new Request.Builder()
+                .url(request.getUrl())
+                .headers(headers.build())
+                .method(request.getMethod(), body)
+                .build();
+
+        try (Response response = client.newCall(originRequest).execute()) {
+            ResponseBody responseBody = response.body();
+            return new ProxyResponse(response.code(), response.message(), response.headers(),
+                    null == responseBody ? null : responseBody.bytes());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "network";
+    }
+
+    private static SSLContext insecureSslContext() {
+        try {
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{TRUST_EVERYTHING}, null);
+            return sslContext;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Authenticator upstreamAuthenticator(String credentials) {
+        return (route, response) -> {
+            if (null != response.request().header("Proxy-Authorization")) {
+                return null;
+            }
+            return response.request().newBuilder().header("Proxy-Authorization", credentials).build();
+        };
+    }
+}
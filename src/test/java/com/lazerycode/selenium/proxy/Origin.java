@@ -0,0 +1,10 @@
+package com.lazerycode.selenium.proxy;
+
+import java.io.IOException;
+
+/**
+ * Where the embedded proxy gets its responses from, the network or something standing in for it.
+ */
+public interface Origin {
+    ProxyResponse fetch(ProxyRequest request) throws IOException;
+}
@@ -0,0 +1,43 @@
+package com.lazerycode.selenium.proxy;
+
+import okhttp3.Headers;
+
+/**
+ * A request received from a browser, with an absolute URL whether it arrived in plain HTTP or inside an intercepted
+ * HTTPS tunnel.
+ */
+public class ProxyRequest {
+
+    private final String method;
+    private final String url;
+    private final Headers headers;
+    private final byte[] body;
+
+    public ProxyRequest(String method, String url, Headers headers, byte[] body) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Headers getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url;
+    }
+}
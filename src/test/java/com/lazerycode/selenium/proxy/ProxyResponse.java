@@ -0,0 +1,46 @@
+package com.lazerycode.selenium.proxy;
+
+import okhttp3.Headers;
+
+/**
+ * A complete response, held in memory so that it can be cached, recorded and replayed.
+ */
+public class ProxyResponse {
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final int status;
+    private final String reason;
+    private final Headers headers;
+    private final byte[] body;
+
+    public ProxyResponse(int status, String reason, Headers headers, byte[] body) {
+        this.status = status;
+        this.reason = reason;
+        this.headers = headers;
+        this.body = null == body ? NO_BODY : body;
+    }
+
+    /**
+     * @return a response with no headers and no body, e.g. for a blocked request
+     */
+    public static ProxyResponse empty(int status, String reason) {
+        return new ProxyResponse(status, reason, new Headers.Builder().build(), NO_BODY);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Headers getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
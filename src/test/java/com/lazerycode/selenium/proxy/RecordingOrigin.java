@@ -0,0 +1,38 @@
+package com.lazerycode.selenium.proxy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pass requests on to another origin and record every exchange, and how long it took, in a {@link TrafficArchive}.
+ */
+public class RecordingOrigin implements Origin, Closeable {
+
+    private final Origin origin;
+    private final TrafficArchive archive;
+
+    public RecordingOrigin(Origin origin, TrafficArchive archive) {
+        this.origin = origin;
+        this.archive = archive;
+    }
+
+    @Override
+    public ProxyResponse fetch(ProxyRequest request) throws IOException {
+        long start = System.nanoTime();
+        ProxyResponse response = origin.fetch(request);
+        archive.record(request, response, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    @Override
+    public String toString() {
+        return archive.size() + " exchanges recorded to " + archive.getDirectory();
+    }
+}
@@ -0,0 +1,76 @@
+package com.lazerycode.selenium.proxy;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serve responses from a {@link TrafficArchive} without touching the network.
+ * <p>
+ * Requests that were never recorded get a 404.  Latency can be emulated by delaying each response by the time it took
+ * when it was recorded, or by a fixed number of milliseconds, so that timing benchmarks see realistic but repeatable
+ * network behaviour.
+ */
+public class ReplayOrigin implements Origin {
+
+    public static final long RECORDED_LATENCY = -1;
+
+    private final TrafficArchive archive;
+    private final long latencyMillis;
+    private final Map<String, AtomicInteger> occurrences = new ConcurrentHashMap<>();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong notRecorded = new AtomicLong();
+
+    /**
+     * @param latencyMillis a fixed delay for every response, 0 for none or {@link #RECORDED_LATENCY} to delay each
+     *                      response by the time it originally took
+     */
+    public ReplayOrigin(TrafficArchive archive, long latencyMillis) {
+        this.archive = archive;
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public ProxyResponse fetch(ProxyRequest request) throws IOException {
+        String key = TrafficArchive.key(request.getMethod(), request.getUrl(), TrafficArchive.bodyHash(request));
+        int occurrence = occurrences.computeIfAbsent(key, unused -> new AtomicInteger()).getAndIncrement();
+        TrafficArchive.Exchange exchange = archive.find(request, occurrence);
+        if (null == exchange) {
+            notRecorded.incrementAndGet();
+            System.err.println("No recorded response for " + request);
+            return ProxyResponse.empty(404, "Not Recorded");
+        }
+        emulateLatency(exchange);
+        replayed.incrementAndGet();
+
+        return archive.readResponse(exchange);
+    }
+
+    public long getReplayedCount() {
+        return replayed.get();
+    }
+
+    public long getNotRecordedCount() {
+        return notRecorded.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d responses replayed, %d not recorded", getReplayedCount(), getNotRecordedCount());
+    }
+
+    private void emulateLatency(TrafficArchive.Exchange exchange) throws IOException {
+        long delay = latencyMillis == RECORDED_LATENCY ? exchange.getDurationMillis() : latencyMillis;
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while emulating latency", ex);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.lazerycode.selenium.proxy;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recorded HTTP traffic on disk.
+ * <p>
+ * Every response is stored in its own file under responses/, and index.tsv holds one line per recorded exchange:
+ * "duration TAB method TAB url TAB body-hash TAB response-file".  Requests are matched on method, URL and a hash of the
+ * request body, a request that was recorded several times is replayed in the order it was recorded.  If there is no
+ * exact match the first recording of the same method and URL without its query string is used, so that requests with
+ * cache busters and other per-run parameters still replay.
+ */
+public class TrafficArchive implements Closeable {
+
+    private static final String INDEX = "index.tsv";
+    private static final String RESPONSES = "responses";
+
+    private final File directory;
+    private final Map<String, List<Exchange>> exchanges = new ConcurrentHashMap<>();
+    private final Map<String, List<Exchange>> exchangesWithoutQuery = new ConcurrentHashMap<>();
+    private Writer indexWriter;
+
+    private TrafficArchive(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Start a new, empty archive, anything previously recorded in the directory is deleted.  A directory that holds
+     * anything but an archive is left alone, so that a mistyped -DproxyArchive cannot delete the project.
+     */
+    public static TrafficArchive create(File directory) throws IOException {
+        String[] contents = directory.list();
+        if (directory.exists() && null == contents) {
+            throw new IOException("HTTP archive " + directory.getAbsolutePath() + " is not a directory");
+        }
+        if (null != contents && contents.length > 0 && !new File(directory, INDEX).isFile()) {
+            throw new IOException("Refusing to record over " + directory.getAbsolutePath() + ", it is not empty and does not hold an HTTP archive");
+        }
+        FileUtils.deleteDirectory(directory);
+        if (!directory.mkdirs()) {
+            throw new IOException("Unable to create HTTP archive directory " + directory);
+        }
+
+        return new TrafficArchive(directory);
+    }
+
+    /**
+     * Load an archive for replay.
+     */
+    public static TrafficArchive load(File directory) throws IOException {
+        File index = new File(directory, INDEX);
+        if (!index.isFile()) {
+            throw new IOException("No HTTP archive to replay in " + directory.getAbsolutePath() + ", record one with -DproxyMode=record");
+        }
+        TrafficArchive archive = new TrafficArchive(directory);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                String[] fields = line.split("\t");
+                if (fields.length == 5) {
+                    archive.add(new Exchange(Long.parseLong(fields[0]), fields[1], fields[2], fields[3], fields[4]));
+                }
+            }
+        }
+
+        return archive;
+    }
+
+    public synchronized void record(ProxyRequest request, ProxyResponse response, long durationMillis) throws IOException {
+        String bodyHash = bodyHash(request);
+        String key = key(request.getMethod(), request.getUrl(), bodyHash);
+        List<Exchange> recorded = exchanges.get(key);
+        String responseFile = CachingOrigin.sha256(key) + "-" + (null == recorded ? 0 : recorded.size());
+        File file = responseFile(responseFile);
+        file.getParentFile().mkdirs();
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+            CachingOrigin.writeResponse(output, response);
+        }
+        Exchange exchange = new Exchange(durationMillis, request.getMethod(), request.getUrl(), bodyHash, responseFile);
+        add(exchange);
+        if (null == indexWriter) {
+            indexWriter = new OutputStreamWriter(new FileOutputStream(new File(directory, INDEX), true), StandardCharsets.UTF_8);
+        }
+        indexWriter.write(exchange.toIndexLine());
+        indexWriter.flush();
+    }
+
+    /**
+     * @param occurrence how many times this request has already been replayed
+     * @return the recorded exchange, or null if the request was never recorded
+     */
+    public Exchange find(ProxyRequest request, int occurrence) {
+        List<Exchange> recorded = exchanges.get(key(request.getMethod(), request.getUrl(), bodyHash(request)));
+        if (null != recorded) {
+            return recorded.get(Math.min(occurrence, recorded.size() - 1));
+        }
+        recorded = exchangesWithoutQuery.get(key(request.getMethod(), withoutQuery(request.getUrl()), ""));
+
+        return null == recorded ? null : recorded.get(0);
+    }
+
+    public ProxyResponse readResponse(Exchange exchange) throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(responseFile(exchange.responseFile)))) {
+            return CachingOrigin.readResponse(input);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (List<Exchange> recorded : exchanges.values()) {
+            size += recorded.size();
+        }
+
+        return size;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Close the index, recording again reopens it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (null != indexWriter) {
+            indexWriter.close();
+            indexWriter = null;
+        }
+    }
+
+    static String key(String method, String url, String bodyHash) {
+        return method + " " + url + " " + bodyHash;
+    }
+
+    private void add(Exchange exchange) {
+        exchanges.computeIfAbsent(key(exchange.method, exchange.url, exchange.bodyHash), unused -> Collections.synchronizedList(new ArrayList<>()))
+                .add(exchange);
+        exchangesWithoutQuery.computeIfAbsent(key(exchange.method, withoutQuery(exchange.url), ""), unused -> Collections.synchronizedList(new ArrayList<>()))
+                .add(exchange);
+    }
+
+    private File responseFile(String name) {
+        return new File(new File(new File(directory, RESPONSES), name.substring(0, 2)), name);
+    }
+
+    static String bodyHash(ProxyRequest request) {
+        return request.getBody().length == 0 ? "-" : CachingOrigin.sha256(new String(request.getBody(), StandardCharsets.ISO_8859_1));
+    }
+
+    private static String withoutQuery(String url) {
+        return url.split("[?#]", 2)[0];
+    }
+
+    public static class Exchange {
+        private final long durationMillis;
+        private final String method;
+        private final String url;
+        private final String bodyHash;
+        private final String responseFile;
+
+        private Exchange(long durationMillis, String method, String url, String bodyHash, String responseFile) {
+            this.durationMillis = durationMillis;
+            this.method = method;
+            this.url = url;
+            this.bodyHash = bodyHash;
+            this.responseFile = responseFile;
+        }
+
+        /**
+         * @return how long the origin took to respond when the exchange was recorded
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        private String toIndexLine() {
+            return durationMillis + "\t" + method + "\t" + url + "\t" + bodyHash + "\t" + responseFile + "\n";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.lazerycode.selenium.proxy;
+
+import okhttp3.Headers;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TrafficArchiveTest {
+
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("http-archive").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void recordedResponsesReplayWithTheirStatusHeadersBodyAndDuration() throws IOException {
+        TrafficArchive recording = TrafficArchive.create(directory);
+        recording.record(get("http://example.com/app.js"),
+                new ProxyResponse(200, "OK", Headers.of("Content-Type", "application/javascript"), bytes("var app;")), 42);
+
+        TrafficArchive replay = TrafficArchive.load(directory);
+        TrafficArchive.Exchange exchange = replay.find(get("http://example.com/app.js"), 0);
+        ProxyResponse response = replay.readResponse(exchange);
+
+        assertThat(replay.size()).isEqualTo(1);
+        assertThat(exchange.getDurationMillis()).isEqualTo(42);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getReason()).isEqualTo("OK");
+        assertThat(response.getHeaders().get("Content-Type")).isEqualTo("application/javascript");
+        assertThat(response.getBody()).isEqualTo(bytes("var app;"));
+    }
+
+    @Test
+    public void aRequestRecordedSeveralTimesReplaysInOrder() throws IOException {
+        TrafficArchive recording = TrafficArchive.create(directory);
+        recording.record(get("http://example.com/counter"), text("1"), 1);
+        recording.record(get("http://example.com/counter"), text("2"), 1);
+
+        TrafficArchive replay = TrafficArchive.load(directory);
+
+        assertThat(replay.readResponse(replay.find(get("http://example.com/counter"), 0)).getBody()).isEqualTo(bytes("1"));
+        assertThat(replay.readResponse(replay.find(get("http://example.com/counter"), 1)).getBody()).isEqualTo(bytes("2"));
+        assertThat(replay.readResponse(replay.find(get("http://example.com/counter"), 2)).getBody()).isEqualTo(bytes("2"));
+    }
+
+    @Test
+    public void requestsAreMatchedOnTheirBody() throws IOException {
+        TrafficArchive recording = TrafficArchive.create(directory);
+        recording.record(post("http://example.com/search", "q=cheese"), text("cheese"), 1);
+        recording.record(post("http://example.com/search", "q=milk"), text("milk"), 1);
+
+        TrafficArchive replay = TrafficArchive.load(directory);
+
+        assertThat(replay.readResponse(replay.find(post("http://example.com/search", "q=milk"), 0)).getBody()).isEqualTo(bytes("milk"));
+    }
+
+    @Test
+    public void aChangedQueryStringFallsBackToTheFirstRecordingOfTheUrl() throws IOException {
+        TrafficArchive recording = TrafficArchive.create(directory);
+        recording.record(get("http://example.com/data?cacheBuster=1"), text("data"), 1);
+
+        TrafficArchive replay = TrafficArchive.load(directory);
+
+        assertThat(replay.readResponse(replay.find(get("http://example.com/data?cacheBuster=2"), 0)).getBody()).isEqualTo(bytes("data"));
+        assertThat(replay.find(get("http://example.com/other"), 0)).isNull();
+    }
+
+    @Test
+    public void replayAnswersRequestsThatWereNeverRecordedWithA404() throws IOException {
+        TrafficArchive recording = TrafficArchive.create(directory);
+        recording.record(get("http://example.com/"), text("home"), 1);
+        ReplayOrigin replay = new ReplayOrigin(TrafficArchive.load(directory), 0);
+
+        assertThat(replay.fetch(get("http://example.com/")).getBody()).isEqualTo(bytes("home"));
+        assertThat(replay.fetch(get("http://example.com/missing")).getStatus()).isEqualTo(404);
+        assertThat(replay.getReplayedCount()).isEqualTo(1);
+        assertThat(replay.getNotRecordedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void recordingAgainReplacesThePreviousArchive() throws IOException {
+        TrafficArchive first = TrafficArchive.create(directory);
+        first.record(get("http://example.com/old"), text("old"), 1);
+        first.close();
+        TrafficArchive second = TrafficArchive.create(directory);
+        second.record(get("http://example.com/new"), text("new"), 1);
+        second.close();
+
+        TrafficArchive replay = TrafficArchive.load(directory);
+
+        assertThat(replay.size()).isEqualTo(1);
+        assertThat(replay.find(get("http://example.com/old"), 0)).isNull();
+    }
+
+    @Test
+    public void aDirectoryThatIsNotAnArchiveIsNeverDeleted() throws IOException {
+        File sourceFile = new File(directory, "pom.xml");
+        Files.write(sourceFile.toPath(), bytes("<project/>"));
+
+        assertThatThrownBy(() -> TrafficArchive.create(directory))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Refusing to record over");
+        assertThatThrownBy(() -> TrafficArchive.create(sourceFile))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("is not a directory");
+        assertThat(sourceFile).exists();
+    }
+
+    @Test
+    public void aClosedArchiveReopensItsIndexToRecordAgain() throws IOException {
+        TrafficArchive recording = TrafficArchive.create(directory);
+        recording.record(get("http://example.com/first"), text("first"), 1);
+        recording.close();
+        recording.record(get("http://example.com/second"), text("second"), 1);
+        recording.close();
+
+        assertThat(TrafficArchive.load(directory).size()).isEqualTo(2);
+    }
+
+    private static ProxyRequest get(String url) {
+        return new ProxyRequest("GET", url, Headers.of(), new byte[0]);
+    }
+
+    private static ProxyRequest post(String url, String body) {
+        return new ProxyRequest("POST", url, Headers.of("Content-Type", "application/x-www-form-urlencoded"), bytes(body));
+    }
+
+    private static ProxyResponse text(String body) {
+        return new ProxyResponse(200, "OK", Headers.of("Content-Type", "text/plain"), bytes(body));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
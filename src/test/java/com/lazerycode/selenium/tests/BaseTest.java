@@ -1,7 +1,6 @@
 package com.lazerycode.selenium.tests;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
@@ -17,20 +16,36 @@ import org.testng.annotations.Optional;
 import org.testng.annotations.Parameters;
 
 import com.lazerycode.selenium.DriverBase;
+import com.lazerycode.selenium.utils.ScreenshotStore;
 import com.lazerycode.selenium.utils.SeleniumScreenCapture;
 import com.lazerycode.selenium.utils.TVTUtil;
 
 public class BaseTest extends DriverBase {
 	protected WebDriver driver;
 	protected String baseDir = "./tvt";
+	protected String locale;
 	
+	public BaseTest() {
+	}
+	
+	/**
+	 * Used by locale matrix runs, see {@link com.lazerycode.selenium.config.LocaleMatrix}.
+	 * @param locale the locale this instance of the test class runs in
+	 */
+	public BaseTest(String locale) {
+		this.locale = locale;
+	}
+	
+	protected String getLocale() {
+		return locale;
+	}
 	
 	protected void setBaseDir(String baseDir) {
 		this.baseDir = baseDir;
 	}
 	
 	protected String getImageDir() {
-		File imageDirFile = new File(baseDir, System.getProperty("language"));
+		File imageDirFile = new File(baseDir, locale);
 		String imageDir = imageDirFile.getPath();
 		imageDirFile.mkdirs();
 		return imageDir;
@@ -38,9 +53,7 @@ public class BaseTest extends DriverBase {
 
     protected void captureScreen(WebDriver driver, String fileName) {
         try {
-            FileOutputStream screenshotStream = new FileOutputStream(new File(getImageDir(), fileName));
-            screenshotStream.write(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES));
-            screenshotStream.close();
+            ScreenshotStore.save(new File(getImageDir(), fileName), ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES));
         } catch (IOException unableToWriteScreenshot) {
             System.err.println("Unable to write " + new File(getImageDir(), fileName).getAbsolutePath());
             unableToWriteScreenshot.printStackTrace();
@@ -52,9 +65,7 @@ public class BaseTest extends DriverBase {
 		TVTUtil.waitUntilPresence(driver, by);
 		WebElement element = driver.findElement(by);
         try {
-            FileOutputStream screenshotStream = new FileOutputStream(new File(getImageDir(), fileName));
-            screenshotStream.write(element.getScreenshotAs(OutputType.BYTES));
-            screenshotStream.close();
+            ScreenshotStore.save(new File(getImageDir(), fileName), element.getScreenshotAs(OutputType.BYTES));
         } catch (IOException unableToWriteScreenshot) {
             System.err.println("Unable to write " + new File(getImageDir(), fileName).getAbsolutePath());
             unableToWriteScreenshot.printStackTrace();
@@ -72,23 +83,27 @@ public class BaseTest extends DriverBase {
     @Parameters({ "locale" })
 	@BeforeClass
 	public void initiate(@Optional("en") String locale) {
-		System.setProperty("headless", "false");
 		String firefoxDriverPath = "C:\\shijin\\workspace\\Selenium-Maven-Template\\src\\test\\resources\\selenium_standalone_binaries\\windows\\marionette\\64bit\\geckodriver.exe";
 		System.setProperty("webdriver.gecko.driver", firefoxDriverPath);
 		String chromeDriverPath = "C:\\shijin\\workspace\\Selenium-Maven-Template\\src\\test\\resources\\selenium_standalone_binaries\\windows\\googlechrome\\64bit\\chromedriver.exe";
 		System.setProperty("webdriver.chrome.driver", chromeDriverPath);
-		System.setProperty("headless", "false");
-//		System.setProperty("proxyEnabled", "true");
-//		System.setProperty("proxyHost", "proxy.emea.ibm.com");
-//		System.setProperty("proxyPort", "8080");
 		
-		System.setProperty("language", locale);
+		if (this.locale == null) {
+			this.locale = locale;
+		}
 	}
 	
 	@Parameters({"browser"})
 	@BeforeMethod
 	public void setupDriver(@Optional("firefox") String browser) throws Exception {
-		System.setProperty("browser", browser);
+		overrideRunConfig(getRunConfig()
+				.withBrowser(browser)
+				.withHeadless(false)
+				.withLocale(locale)
+				.withLeanMode(false));
+//				.with(RunConfig.PROXY_ENABLED, "true")
+//				.with(RunConfig.PROXY_HOST, "proxy.emea.ibm.com")
+//				.with(RunConfig.PROXY_PORT, "8080"));
 		driver = getDriver();
 		driver.manage().window().maximize();
 //		driver.manage().window().setPosition(new Point(0, 0));
@@ -1,18 +1,15 @@
 package com.lazerycode.selenium.tests;
 
 import com.lazerycode.selenium.DriverBase;
+import com.lazerycode.selenium.listeners.PerfBudget;
 import com.lazerycode.selenium.page_objects.GoogleHomePage;
+import com.lazerycode.selenium.utils.DomWait;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.WebDriverWait;
 import org.testng.annotations.Test;
 
+@PerfBudget(wallTimeMillis = 30000, commands = 200, screenshots = 0)
 public class GoogleExampleIT extends DriverBase {
 
-    private ExpectedCondition<Boolean> pageTitleStartsWith(final String searchString) {
-        return driver -> driver.getTitle().toLowerCase().startsWith(searchString.toLowerCase());
-    }
-
     @Test
     public void googleCheeseExample() throws Exception {
         // Create a new WebDriver instance
@@ -35,8 +32,7 @@ public class GoogleExampleIT extends DriverBase {
 
         // Google's search is rendered dynamically with JavaScript.
         // Wait for the page to load, timeout after 10 seconds
-        WebDriverWait wait = new WebDriverWait(driver, 10, 100);
-        wait.until(pageTitleStartsWith("Cheese"));
+        DomWait.untilTitleStartsWith(driver, "Cheese", 10);
 
         // Should see: "cheese! - Google Search"
         System.out.println("Page title is: " + driver.getTitle());
@@ -64,8 +60,7 @@ public class GoogleExampleIT extends DriverBase {
 
         // Google's search is rendered dynamically with JavaScript.
         // Wait for the page to load, timeout after 10 seconds
-        WebDriverWait wait = new WebDriverWait(driver, 10, 100);
-        wait.until(pageTitleStartsWith("Milk"));
+        DomWait.untilTitleStartsWith(driver, "Milk", 10);
 
         // Should see: "cheese! - Google Search"
         System.out.println("Page title is: " + driver.getTitle());
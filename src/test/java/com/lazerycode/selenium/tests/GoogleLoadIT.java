@@ -0,0 +1,53 @@
+package com.lazerycode.selenium.tests;
+
+import com.lazerycode.selenium.DriverBase;
+import com.lazerycode.selenium.load.FixtureServer;
+import com.lazerycode.selenium.load.LoadProfile;
+import com.lazerycode.selenium.load.LoadReport;
+import com.lazerycode.selenium.load.LoadRunner;
+import com.lazerycode.selenium.page_objects.GoogleHomePage;
+import com.lazerycode.selenium.utils.DomWait;
+import org.openqa.selenium.WebDriver;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class GoogleLoadIT extends DriverBase {
+
+    private static final String HOME_PAGE = "<html><head><title>Google</title></head><body>" +
+            "<form action=\"/search\" method=\"get\">" +
+            "<input type=\"text\" name=\"q\"/>" +
+            "<input type=\"submit\" name=\"btnK\" value=\"Google Search\"/>" +
+            "<input type=\"submit\" name=\"btnI\" value=\"I'm Feeling Lucky\"/>" +
+            "</form></body></html>";
+
+    @Test
+    public void googleSearchUnderLoad() throws Exception {
+        if (null == LoadProfile.fromRunConfig(getRunConfig())) {
+            throw new SkipException("Load generation is switched off, set -DloadSessions to run load scenarios");
+        }
+        try (FixtureServer server = new FixtureServer()
+                .page("/", HOME_PAGE)
+                .page("/search", parameters -> "<html><head><title>" + parameters.get("q") + " - Google Search</title></head><body></body></html>")
+                .withResponseDelay(50)) {
+
+            // Every session runs this on its own thread, with its own browser
+            LoadReport report = LoadRunner.run("googleSearch", context -> {
+                WebDriver driver = getDriver();
+                GoogleHomePage googleHomePage = new GoogleHomePage(server.getBaseUrl() + "/");
+                String searchTerm = context.getIteration() % 2 == 0 ? "Cheese" : "Milk";
+
+                context.step("open", googleHomePage::open);
+                context.think();
+                context.step("search", () -> {
+                    googleHomePage.enterSearchTerm(searchTerm)
+                            .submitSearch();
+                    DomWait.untilTitleStartsWith(driver, searchTerm, 10);
+                });
+            });
+
+            assertEquals(report.getErrorCount(), 0, "Errors while under load: " + report);
+        }
+    }
+}
@@ -19,6 +19,8 @@ import java.util.List;
 
 import javax.imageio.ImageIO;
 
+import com.lazerycode.selenium.config.PerfCounters;
+
 /**
  * Provide advanced screen capture capabilities based on Java Robot class.
  * @author rophy
@@ -236,13 +238,22 @@ public class AdvScreenCapture {
 	protected static void saveRenderedImage(RenderedImage rImage, String imageFile) {
 		String fileExt = imageFile.substring(imageFile.lastIndexOf('.')+1);
 		try {
-			ImageIO.write(rImage, fileExt.toLowerCase(), new File(imageFile));
+			ScreenshotStore.save(new File(imageFile), rImage, fileExt.toLowerCase());
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 		
 	}
 
+	private static void saveDebugImage(RenderedImage rImage, String imageFile) {
+		try {
+			ImageIO.write(rImage, "png", new File(imageFile));
+			PerfCounters.fileWritten(new File(imageFile));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 
 	private static void combineTargetToBase(Axis axis, int[] base, int baseWidth, int baseHeight, int baseOffset, int[] target, int targetWidth, int targetHeight, int targetOffset) {
 		if ( axis == Axis.HORIZONTAL ) {
@@ -436,16 +447,23 @@ public class AdvScreenCapture {
 	}
 	
 	protected static boolean isDifferent(int pixel1, int pixel2) {
-		if ( Math.abs( ((pixel1>>24)&0xff) - ((pixel2>>24)&0xff) ) > tolerance_alpha ) {
+		return isDifferent(pixel1, pixel2, tolerance_alpha, tolerance_red, tolerance_green, tolerance_blue);
+	}
+	
+	/**
+	 * Two ARGB pixels are different when any one channel differs by more than the tolerance for that channel.
+	 */
+	static boolean isDifferent(int pixel1, int pixel2, int toleranceAlpha, int toleranceRed, int toleranceGreen, int toleranceBlue) {
+		if ( Math.abs( ((pixel1>>24)&0xff) - ((pixel2>>24)&0xff) ) > toleranceAlpha ) {
 			return true;
 		}
-		if ( Math.abs( ((pixel1>>16)&0xff) - ((pixel2>>16)&0xff) ) > tolerance_red ) {
+		if ( Math.abs( ((pixel1>>16)&0xff) - ((pixel2>>16)&0xff) ) > toleranceRed ) {
 			return true;
 		}
-		if ( Math.abs( ((pixel1>>8)&0xff) - ((pixel2>>8)&0xff) ) > tolerance_green ) {
+		if ( Math.abs( ((pixel1>>8)&0xff) - ((pixel2>>8)&0xff) ) > toleranceGreen ) {
 			return true;
 		}
-		if ( Math.abs( ((pixel1)&0xff) - ((pixel2)&0xff) ) > tolerance_blue) {
+		if ( Math.abs( ((pixel1)&0xff) - ((pixel2)&0xff) ) > toleranceBlue) {
 			return true;
 		}
 		return false;
@@ -754,7 +772,7 @@ public class AdvScreenCapture {
 			int[] firstPixels = getCapturer().capture(r);
 			
 			if (debug) {
-				saveRenderedImage(AdvScreenCapture.createRenderedImage(firstPixels, r.width, r.height), createTempFile());
+				saveDebugImage(AdvScreenCapture.createRenderedImage(firstPixels, r.width, r.height), createTempFile());
 			}
 	
 			addCapturedData(firstPixels, minimal);
@@ -770,7 +788,7 @@ public class AdvScreenCapture {
 					int[] secondPixels = getCapturer().capture(r);
 					
 					if (debug) {
-						saveRenderedImage(AdvScreenCapture.createRenderedImage(secondPixels, r.width, r.height), createTempFile());
+						saveDebugImage(AdvScreenCapture.createRenderedImage(secondPixels, r.width, r.height), createTempFile());
 					}
 					
 					addCapturedData(secondPixels,minimal);
@@ -0,0 +1,240 @@
+package com.lazerycode.selenium.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import com.lazerycode.selenium.config.DriverTimeouts;
+import com.lazerycode.selenium.config.WaitProfiler;
+
+/**
+ * Waits that are answered by the page instead of by polling it.
+ * <p>
+ * A single executeAsyncScript call checks the condition, and if it does not hold yet installs a MutationObserver on
+ * the document (plus a requestAnimationFrame loop for visibility, which CSS can change without touching the DOM) and
+ * calls back the moment it does.  A wait that is satisfied after three seconds costs one round trip rather than the
+ * thirty a 100ms polling WebDriverWait would make.  Long waits are split into slices shorter than the script timeout,
+ * and a wait interrupted by a navigation, which unloads the script, simply starts again on the new page.  If the
+ * driver's script timeout is too short for a slice it is raised for the length of the wait and then put back.
+ * <p>
+ * Locators that cannot be translated to JavaScript, drivers that cannot run async scripts and pages where the script
+ * keeps failing fall back to a WebDriverWait polling every 100ms for the time that is left.  Every wait is reported to
+ * the {@link WaitProfiler}.
+ */
+public class DomWait {
+
+	protected final static Logger logger = LogManager.getLogger(DomWait.class);
+
+	private static final long MAX_SLICE_MILLIS = TimeUnit.SECONDS.toMillis(20);
+	private static final long SCRIPT_TIMEOUT_MARGIN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	private static final long POLLING_MILLIS = 100;
+	private static final int MAX_SCRIPT_FAILURES = 3;
+
+	private static final String PRESENT = "present";
+	private static final String VISIBLE = "visible";
+	private static final String TEXT = "text";
+	private static final String TITLE_STARTS_WITH = "titleStartsWith";
+	private static final String TITLE_CONTAINS = "titleContains";
+
+	private static final String WAIT_SCRIPT =
+			"var kind = arguments[0], how = arguments[1], what = arguments[2], text = arguments[3], slice = arguments[4];" +
+			"var done = arguments[arguments.length - 1];" +
+			ScriptLocators.FIND_FUNCTION +
+			"function visible(element) {" +
+			"  if (!element.getClientRects().length) { return false; }" +
+			"  var style = window.getComputedStyle(element);" +
+			"  return style.visibility !== 'hidden' && style.opacity !== '0';" +
+			"}" +
+			"function check() {" +
+			"  if (kind === 'titleStartsWith' || kind === 'titleContains') {" +
+			"    var title = (document.title || '').toLowerCase();" +
+			"    var position = title.indexOf(text);" +
+			"    return (kind === 'titleStartsWith' ? position === 0 : position >= 0) ? document.title : null;" +
+			"  }" +
+			"  var element = find(how, what);" +
+			"  if (!element) { return null; }" +
+			"  if (kind === 'visible') { return visible(element) ? element : null; }" +
+			"  if (kind === 'text') { return (element.innerText || element.textContent || '').indexOf(text) >= 0 ? element : null; }" +
+			"  return element;" +
+			"}" +
+			"var result = check();" +
+			"if (result) { done(result); return; }" +
+			"var finished = false, observer = null, timer, poll;" +
+			"function finish(value) {" +
+			"  if (finished) { return; }" +
+			"  finished = true;" +
+			"  if (observer) { observer.disconnect(); }" +
+			"  clearTimeout(timer);" +
+			"  clearInterval(poll);" +
+			"  done(value);" +
+			"}" +
+			"function recheck() {" +
+			"  if (finished) { return; }" +
+			"  try { var value = check(); if (value) { finish(value); } } catch (e) {}" +
+			"}" +
+			"if (window.MutationObserver) {" +
+			"  observer = new MutationObserver(recheck);" +
+			"  observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});" +
+			"}" +
+			"if (kind === 'visible' && window.requestAnimationFrame) {" +
+			"  (function frame() { if (!finished) { recheck(); window.requestAnimationFrame(frame); } })();" +
+			"}" +
+			"poll = setInterval(recheck, 250);" +
+			"timer = setTimeout(function () { finish(null); }, slice);";
+
+	/**
+	 * @return the first element matching the locator once there is one
+	 */
+	public static WebElement untilPresent(WebDriver driver, By locator, long seconds) {
+		return (WebElement) await(driver, PRESENT, locator, null, seconds);
+	}
+
+	/**
+	 * @return the first element matching the locator once it is displayed
+	 */
+	public static WebElement untilVisible(WebDriver driver, By locator, long seconds) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		WaitProfiler.Wait wait = WaitProfiler.begin(VISIBLE, locator.toString(), TimeUnit.SECONDS.toMillis(seconds));
+		boolean satisfied = false;
+		try {
+			WebElement element = (WebElement) await(driver, VISIBLE, locator, null, seconds, wait);
+			wait.poll();
+			if (!element.isDisplayed()) {
+				// The in page check is an approximation of WebDriver's, let WebDriver have the final say
+				element = poll(driver, ExpectedConditions.visibilityOfElementLocated(locator), TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()), wait);
+			}
+			satisfied = true;
+			return element;
+		} finally {
+			wait.end(satisfied);
+		}
+	}
+
+	/**
+	 * @return the first element matching the locator once its text contains the supplied text
+	 */
+	public static WebElement untilTextPresent(WebDriver driver, By locator, String text, long seconds) {
+		return (WebElement) await(driver, TEXT, locator, text, seconds);
+	}
+
+	/**
+	 * @return the page title once it starts with the supplied text, ignoring case
+	 */
+	public static String untilTitleStartsWith(WebDriver driver, String prefix, long seconds) {
+		return (String) await(driver, TITLE_STARTS_WITH, null, prefix.toLowerCase(), seconds);
+	}
+
+	/**
+	 * @return the page title once it contains the supplied text, ignoring case
+	 */
+	public static String untilTitleContains(WebDriver driver, String text, long seconds) {
+		return (String) await(driver, TITLE_CONTAINS, null, text.toLowerCase(), seconds);
+	}
+
+	private static Object await(WebDriver driver, String kind, By locator, String text, long seconds) {
+		if (null == locator && text.isEmpty()) {
+			return driver.getTitle();
+		}
+		WaitProfiler.Wait wait = WaitProfiler.begin(kind, null == locator ? "'" + text + "'" : locator.toString(), TimeUnit.SECONDS.toMillis(seconds));
+		boolean satisfied = false;
+		try {
+			Object result = await(driver, kind, locator, text, seconds, wait);
+			satisfied = true;
+			return result;
+		} finally {
+			wait.end(satisfied);
+		}
+	}
+
+	private static Object await(WebDriver driver, String kind, By locator, String text, long seconds, WaitProfiler.Wait wait) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		String[] translatedLocator = null == locator ? new String[]{"", ""} : ScriptLocators.translate(locator);
+		if (!(driver instanceof JavascriptExecutor) || null == translatedLocator) {
+			return poll(driver, fallbackCondition(kind, locator, text), seconds, wait);
+		}
+		long scriptTimeoutMillis = DriverTimeouts.scriptTimeoutMillis(driver);
+		boolean raiseScriptTimeout = scriptTimeoutMillis < MAX_SLICE_MILLIS + SCRIPT_TIMEOUT_MARGIN_MILLIS;
+		if (raiseScriptTimeout) {
+			driver.manage().timeouts().setScriptTimeout(MAX_SLICE_MILLIS + SCRIPT_TIMEOUT_MARGIN_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		try {
+			return awaitInPage(driver, kind, locator, text, seconds, deadline, translatedLocator, wait);
+		} finally {
+			if (raiseScriptTimeout) {
+				restoreScriptTimeout(driver, scriptTimeoutMillis);
+			}
+		}
+	}
+
+	private static Object awaitInPage(WebDriver driver, String kind, By locator, String text, long seconds, long deadline, String[] translatedLocator, WaitProfiler.Wait wait) {
+		int failures = 0;
+		long remainingMillis;
+		while ((remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+			long slice = Math.min(remainingMillis, MAX_SLICE_MILLIS);
+			try {
+				wait.poll();
+				Object result = ((JavascriptExecutor) driver).executeAsyncScript(WAIT_SCRIPT, kind, translatedLocator[0], translatedLocator[1], text, slice);
+				if (null != result) {
+					return result;
+				}
+				failures = 0;
+			} catch (ScriptTimeoutException sliceOverran) {
+				logger.debug("Wait script overran its slice", sliceOverran);
+			} catch (WebDriverException scriptFailed) {
+				if (++failures >= MAX_SCRIPT_FAILURES) {
+					logger.debug("Wait script keeps failing, polling instead", scriptFailed);
+					return poll(driver, fallbackCondition(kind, locator, text), TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()), wait);
+				}
+				// Most likely a navigation unloaded the script, start again on the new page
+			}
+		}
+
+		throw new TimeoutException(String.format("Expected condition failed: waiting for %s%s%s (tried for %d second(s) with a page side observer)",
+				kind, null == locator ? "" : " " + locator, null == text ? "" : " '" + text + "'", seconds));
+	}
+
+	private static void restoreScriptTimeout(WebDriver driver, long scriptTimeoutMillis) {
+		try {
+			driver.manage().timeouts().setScriptTimeout(scriptTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (WebDriverException restoreFailed) {
+			// Do not hide why the wait failed, the session has most likely gone
+			logger.warn("Unable to restore the script timeout to " + scriptTimeoutMillis + "ms", restoreFailed);
+		}
+	}
+
+	private static <T> T poll(WebDriver driver, ExpectedCondition<T> condition, long seconds, WaitProfiler.Wait wait) {
+		return new WebDriverWait(driver, Math.max(0, seconds), POLLING_MILLIS).until((ExpectedCondition<T>) polledDriver -> {
+			wait.poll();
+			return condition.apply(polledDriver);
+		});
+	}
+
+	private static ExpectedCondition<?> fallbackCondition(String kind, By locator, String text) {
+		switch (kind) {
+			case VISIBLE:
+				return ExpectedConditions.visibilityOfElementLocated(locator);
+			case TEXT:
+				return (ExpectedCondition<WebElement>) driver -> {
+					WebElement element = driver.findElement(locator);
+					return element.getText().contains(text) ? element : null;
+				};
+			case TITLE_STARTS_WITH:
+				return (ExpectedCondition<String>) driver -> driver.getTitle().toLowerCase().startsWith(text) ? driver.getTitle() : null;
+			case TITLE_CONTAINS:
+				return (ExpectedCondition<String>) driver -> driver.getTitle().toLowerCase().contains(text) ? driver.getTitle() : null;
+			default:
+				return ExpectedConditions.presenceOfElementLocated(locator);
+		}
+	}
+}
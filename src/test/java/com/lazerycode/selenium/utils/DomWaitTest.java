@@ -0,0 +1,79 @@
+package com.lazerycode.selenium.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.testng.annotations.Test;
+
+import com.lazerycode.selenium.config.WaitProfiler;
+
+public class DomWaitTest {
+
+	@Test
+	public void untilVisibleIsProfiledAsOneWaitWhenWebDriverHasTheFinalSay() {
+		StubBrowser browser = new StubBrowser();
+		RemoteWebDriver driver = new RemoteWebDriver(browser, new ImmutableCapabilities());
+		By locator = By.id("untilVisibleIsProfiledAsOneWait");
+
+		assertThat(DomWait.untilVisible(driver, locator, 5)).isNotNull();
+
+		long waits = 0;
+		for (Map<String, Object> callSite : WaitProfiler.summary()) {
+			if (locator.toString().equals(callSite.get("locator"))) {
+				waits += ((Number) callSite.get("waits")).longValue();
+			}
+		}
+		assertThat(browser.commands).contains(DriverCommand.EXECUTE_ASYNC_SCRIPT, DriverCommand.FIND_ELEMENT);
+		assertThat(waits).isEqualTo(1);
+	}
+
+	@Test
+	public void theScriptTimeoutIsNotTouchedWhenItIsLongEnough() {
+		StubBrowser browser = new StubBrowser();
+		RemoteWebDriver driver = new RemoteWebDriver(browser, new ImmutableCapabilities());
+
+		DomWait.untilPresent(driver, By.id("banner"), 5);
+
+		assertThat(browser.commands).containsExactly(DriverCommand.EXECUTE_ASYNC_SCRIPT);
+	}
+
+	/**
+	 * A browser whose page side check finds the element, but which only reports it displayed the second time it is
+	 * asked.
+	 */
+	private static class StubBrowser implements CommandExecutor {
+		private final List<String> commands = new ArrayList<>();
+		private int displayedChecks;
+
+		@Override
+		public Response execute(Command command) {
+			Response response = new Response();
+			response.setSessionId("session");
+			response.setStatus(0);
+			String name = command.getName();
+			if (DriverCommand.NEW_SESSION.equals(name)) {
+				response.setValue(Collections.singletonMap("browserName", "fake"));
+				return response;
+			}
+			commands.add(name);
+			if (DriverCommand.EXECUTE_ASYNC_SCRIPT.equals(name) || DriverCommand.FIND_ELEMENT.equals(name)) {
+				response.setValue(Collections.singletonMap("ELEMENT", "banner"));
+			} else if (DriverCommand.IS_ELEMENT_DISPLAYED.equals(name)) {
+				response.setValue(++displayedChecks > 1);
+			}
+
+			return response;
+		}
+	}
+}
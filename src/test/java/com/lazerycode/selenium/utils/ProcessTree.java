@@ -0,0 +1,115 @@
+package com.lazerycode.selenium.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Kill a process and everything it started.
+ * <p>
+ * Java 8 has no ProcessHandle, so this shells out to pgrep/kill on Unix like systems and wmic/taskkill on Windows.
+ * It is a last resort for driver services and browsers that will not shut down when asked.
+ */
+public class ProcessTree {
+
+	protected final static Logger logger = LogManager.getLogger(ProcessTree.class);
+
+	private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().startsWith("windows");
+	private static final long COMMAND_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Kill every process that was started with the supplied command line argument, along with all of its descendants.
+	 * @param argument a complete argument, e.g. "--port=4444", it will not match "--port=44440"
+	 */
+	public static void killCommandLineArgument(String argument) {
+		List<Long> pids = new ArrayList<>();
+		if (WINDOWS) {
+			String literal = argument.replace("'", "''");
+			for (String line : run("wmic", "process", "where", "CommandLine like '%" + literal + " %' or CommandLine like '%" + literal + "'", "get", "ProcessId")) {
+				addPid(pids, line);
+			}
+		} else {
+			for (String line : run("pgrep", "-f", "--", argument.replaceAll("([\\[\\](){}.*+?^$|\\\\])", "\\\\$1") + "( |$)")) {
+				addPid(pids, line);
+			}
+		}
+		for (Long pid : pids) {
+			kill(pid);
+		}
+	}
+
+	/**
+	 * Kill a process and all of its descendants.
+	 */
+	public static void kill(long pid) {
+		logger.warn("Killing process tree " + pid);
+		if (WINDOWS) {
+			run("taskkill", "/F", "/T", "/PID", Long.toString(pid));
+			return;
+		}
+		Set<Long> tree = new LinkedHashSet<>();
+		collectTree(pid, tree);
+		List<String> command = new ArrayList<>();
+		command.add("kill");
+		command.add("-KILL");
+		for (Long member : tree) {
+			command.add(Long.toString(member));
+		}
+		run(command.toArray(new String[0]));
+	}
+
+	private static void collectTree(long pid, Set<Long> tree) {
+		if (!tree.add(pid)) {
+			return;
+		}
+		List<Long> children = new ArrayList<>();
+		for (String line : run("pgrep", "-P", Long.toString(pid))) {
+			addPid(children, line);
+		}
+		for (Long child : children) {
+			collectTree(child, tree);
+		}
+	}
+
+	private static void addPid(List<Long> pids, String line) {
+		try {
+			pids.add(Long.valueOf(line.trim()));
+		} catch (NumberFormatException ignored) {
+			// Headers and blank lines
+		}
+	}
+
+	private static List<String> run(String... command) {
+		List<String> output = new ArrayList<>();
+		try {
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					output.add(line);
+				}
+			} finally {
+				reader.close();
+			}
+			if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		} catch (IOException ex) {
+			logger.error("Unable to run " + command[0], ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		return output;
+	}
+}
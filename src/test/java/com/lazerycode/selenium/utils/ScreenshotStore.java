@@ -0,0 +1,390 @@
+package com.lazerycode.selenium.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.lazerycode.selenium.config.PerfCounters;
+import com.lazerycode.selenium.config.RunConfig;
+
+/**
+ * Content addressed storage for screen captures.
+ * <p>
+ * Images are identified by a SHA-256 hash of their decoded pixels, so two captures that look the same are stored once
+ * no matter how they were encoded.  Unique images live in objects/ab/abcdef....png under the store directory and
+ * every capture is recorded as a "hash TAB path" line in manifest.tsv.  When hardlinks are enabled the capture is also
+ * linked in at the path the test asked for, so tools that expect the old directory layout keep working.  Without
+ * hardlinks nothing is written at that path, use {@link #locate(File)} to find the image a capture was stored as.
+ * <p>
+ * The store is switched on with -DscreenshotStore=&lt;directory&gt; (and -DscreenshotStoreLinks=true for hardlinks),
+ * when it is switched off {@link #save(File, byte[])} and {@link #save(File, RenderedImage, String)} simply write the
+ * file.
+ */
+public class ScreenshotStore {
+
+	protected final static Logger logger = LogManager.getLogger(ScreenshotStore.class);
+
+	private static final String MANIFEST = "manifest.tsv";
+	private static final Map<File, ScreenshotStore> stores = new ConcurrentHashMap<>();
+
+	private final File objectDirectory;
+	private final File manifest;
+	private final boolean hardlinks;
+	private final Set<String> knownObjects = ConcurrentHashMap.newKeySet();
+	private final Map<String, String> pixelHashByEncodedHash = new ConcurrentHashMap<>();
+	private final Map<File, File> objectByCapture = new ConcurrentHashMap<>();
+	private final AtomicLong captures = new AtomicLong();
+	private final AtomicLong uniqueCaptures = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private Writer manifestWriter;
+	private boolean manifestLoaded;
+
+	ScreenshotStore(File storeDirectory, boolean hardlinks) {
+		this.objectDirectory = new File(storeDirectory, "objects");
+		this.manifest = new File(storeDirectory, MANIFEST);
+		this.hardlinks = hardlinks;
+	}
+
+	/**
+	 * @return the store configured for this suite, or null if captures should be written directly.
+	 */
+	public static ScreenshotStore getConfiguredStore() {
+		RunConfig runConfig = RunConfig.suiteConfig();
+		String storeDirectory = runConfig.get(RunConfig.SCREENSHOT_STORE, "");
+		if (storeDirectory.isEmpty()) {
+			return null;
+		}
+		File root = new File(storeDirectory).getAbsoluteFile();
+
+		return stores.computeIfAbsent(root, directory -> new ScreenshotStore(directory, runConfig.getBoolean(RunConfig.SCREENSHOT_STORE_LINKS)));
+	}
+
+	/**
+	 * Save an encoded PNG capture, through the store when one is configured.
+	 * @param imageFile where the capture would normally be written
+	 * @param png the encoded image, as returned by TakesScreenshot
+	 */
+	public static void save(File imageFile, byte[] png) throws IOException {
+		ScreenshotStore store = getConfiguredStore();
+		if (store == null) {
+			writeFile(imageFile, png);
+		} else {
+			store.store(imageFile, png);
+		}
+	}
+
+	/**
+	 * Save an image, through the store when one is configured.
+	 * @param imageFile where the capture would normally be written
+	 * @param image the image to encode
+	 * @param format the ImageIO format name, e.g. "png"
+	 */
+	public static void save(File imageFile, RenderedImage image, String format) throws IOException {
+		ScreenshotStore store = getConfiguredStore();
+		if (store == null || !(image instanceof BufferedImage)) {
+			ImageIO.write(image, format, imageFile);
+			PerfCounters.fileWritten(imageFile);
+		} else {
+			store.store(imageFile, (BufferedImage) image, format);
+		}
+	}
+
+	/**
+	 * Find the image that was saved for a capture.  When the store is switched off, or hardlinks put the capture at
+	 * the path the test asked for, that is the file itself.
+	 * @param imageFile the path the capture was saved to
+	 * @return the file holding the image, which is imageFile itself if the store does not know it
+	 */
+	public static File locate(File imageFile) throws IOException {
+		ScreenshotStore store = getConfiguredStore();
+		if (store == null || imageFile.exists()) {
+			return imageFile;
+		}
+		File object = store.objectFor(imageFile);
+
+		return object == null ? imageFile : object;
+	}
+
+	/**
+	 * Close the manifest of every store opened during this run.
+	 */
+	public static void closeAll() throws IOException {
+		for (ScreenshotStore store : stores.values()) {
+			store.close();
+			logger.info(store);
+		}
+	}
+
+	/**
+	 * Store an encoded capture.  The bytes are only written if no capture with the same pixels has been stored before.
+	 * @return the pixel hash the capture was stored under
+	 */
+	public String store(File imageFile, byte[] encodedImage) throws IOException {
+		String encodedHash = sha256(encodedImage);
+		String pixelHash = pixelHashByEncodedHash.get(encodedHash);
+		if (pixelHash == null) {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(encodedImage));
+			if (image == null) {
+				throw new IOException("Unable to decode capture for " + imageFile.getPath());
+			}
+			pixelHash = pixelHash(image);
+			pixelHashByEncodedHash.put(encodedHash, pixelHash);
+		}
+		File object = objectFile(pixelHash, extensionOf(imageFile));
+		if (!objectExists(object)) {
+			writeObject(object, encodedImage);
+		}
+		record(imageFile, pixelHash, object);
+
+		return pixelHash;
+	}
+
+	/**
+	 * Store an image.  It is only encoded and written if no capture with the same pixels has been stored before.
+	 * @return the pixel hash the capture was stored under
+	 */
+	public String store(File imageFile, BufferedImage image, String format) throws IOException {
+		String pixelHash = pixelHash(image);
+		File object = objectFile(pixelHash, format);
+		if (!objectExists(object)) {
+			ByteArrayOutputStream encodedImage = new ByteArrayOutputStream();
+			if (!ImageIO.write(image, format, encodedImage)) {
+				throw new IOException("No ImageIO writer for format " + format);
+			}
+			writeObject(object, encodedImage.toByteArray());
+		}
+		record(imageFile, pixelHash, object);
+
+		return pixelHash;
+	}
+
+	/**
+	 * @return the object a capture was stored as, by this run or a previous one, or null if it was never stored here
+	 */
+	public File objectFor(File imageFile) throws IOException {
+		File object = objectByCapture.get(imageFile.getAbsoluteFile());
+		if (object == null) {
+			loadManifest();
+			object = objectByCapture.get(imageFile.getAbsoluteFile());
+		}
+
+		return object;
+	}
+
+	public synchronized void close() throws IOException {
+		if (manifestWriter != null) {
+			manifestWriter.close();
+			manifestWriter = null;
+		}
+	}
+
+	public long getCaptureCount() {
+		return captures.get();
+	}
+
+	public long getUniqueCaptureCount() {
+		return uniqueCaptures.get();
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ScreenshotStore[%s: %d captures, %d unique, %d bytes written]",
+				objectDirectory.getParent(), getCaptureCount(), getUniqueCaptureCount(), getBytesWritten());
+	}
+
+	/**
+	 * Hash the decoded ARGB pixels, prefixed with the image dimensions so that reshaped images never collide.
+	 */
+	static String pixelHash(BufferedImage image) {
+		MessageDigest digest = newDigest();
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] row = new int[width];
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(8, width * 4));
+		buffer.putInt(width).putInt(height);
+		digest.update(buffer.array(), 0, 8);
+		for (int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			buffer.clear();
+			buffer.asIntBuffer().put(row);
+			digest.update(buffer.array(), 0, width * 4);
+		}
+
+		return toHex(digest.digest());
+	}
+
+	private boolean objectExists(File object) {
+		if (knownObjects.contains(object.getName())) {
+			return true;
+		}
+		if (object.exists()) {
+			knownObjects.add(object.getName());
+			return true;
+		}
+		return false;
+	}
+
+	private File objectFile(String pixelHash, String extension) {
+		return new File(new File(objectDirectory, pixelHash.substring(0, 2)), pixelHash + "." + extension);
+	}
+
+	/**
+	 * Write the object to a temporary file and rename it into place, so a half written object is never visible.  An
+	 * atomic rename replaces an existing file on POSIX, so the check that another thread has not got there first and
+	 * the rename happen under the store's lock.
+	 */
+	private void writeObject(File object, byte[] encodedImage) throws IOException {
+		File parent = object.getParentFile();
+		parent.mkdirs();
+		File temporary = File.createTempFile(object.getName(), ".tmp", parent);
+		writeFile(temporary, encodedImage);
+		if (moveIntoPlace(temporary, object)) {
+			uniqueCaptures.incrementAndGet();
+			bytesWritten.addAndGet(encodedImage.length);
+		} else {
+			Files.deleteIfExists(temporary.toPath());
+		}
+		knownObjects.add(object.getName());
+	}
+
+	private synchronized boolean moveIntoPlace(File temporary, File object) throws IOException {
+		if (object.exists()) {
+			return false;
+		}
+		Files.move(temporary.toPath(), object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+		return true;
+	}
+
+	/**
+	 * Read the captures recorded by previous runs, later lines win so a path that was captured again maps to its
+	 * newest image.
+	 */
+	private synchronized void loadManifest() throws IOException {
+		if (manifestLoaded || !manifest.exists()) {
+			return;
+		}
+		manifestLoaded = true;
+		Map<File, File> recorded = new ConcurrentHashMap<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab > 0) {
+					File object = findObject(line.substring(0, tab));
+					if (object != null) {
+						recorded.put(new File(line.substring(tab + 1)).getAbsoluteFile(), object);
+					}
+				}
+			}
+		}
+		recorded.putAll(objectByCapture);
+		objectByCapture.putAll(recorded);
+	}
+
+	private File findObject(String pixelHash) {
+		if (pixelHash.length() < 2) {
+			return null;
+		}
+		File[] objects = new File(objectDirectory, pixelHash.substring(0, 2)).listFiles(
+				(directory, name) -> name.startsWith(pixelHash + ".") && !name.endsWith(".tmp"));
+
+		return objects == null || objects.length == 0 ? null : objects[0];
+	}
+
+	private synchronized void record(File imageFile, String pixelHash, File object) throws IOException {
+		captures.incrementAndGet();
+		objectByCapture.put(imageFile.getAbsoluteFile(), object);
+		if (manifestWriter == null) {
+			manifest.getParentFile().mkdirs();
+			manifestWriter = new OutputStreamWriter(new FileOutputStream(manifest, true), StandardCharsets.UTF_8);
+		}
+		manifestWriter.write(pixelHash + "\t" + imageFile.getPath() + "\n");
+		manifestWriter.flush();
+		if (hardlinks) {
+			link(imageFile.toPath(), object.toPath());
+		}
+		logger.info("Stored " + imageFile.getPath() + " as " + pixelHash);
+	}
+
+	private void link(Path imageFile, Path object) throws IOException {
+		Path parent = imageFile.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		Files.deleteIfExists(imageFile);
+		try {
+			Files.createLink(imageFile, object);
+		} catch (IOException | UnsupportedOperationException linksNotSupported) {
+			logger.debug("Unable to hardlink " + imageFile + ", copying instead", linksNotSupported);
+			Files.copy(object, imageFile, StandardCopyOption.REPLACE_EXISTING);
+			PerfCounters.fileWritten(imageFile.toFile());
+		}
+	}
+
+	private static void writeFile(File file, byte[] contents) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(contents);
+		} finally {
+			stream.close();
+		}
+		PerfCounters.bytesWritten(contents.length);
+	}
+
+	private static String extensionOf(File imageFile) {
+		String name = imageFile.getName();
+		int dot = name.lastIndexOf('.');
+
+		return dot < 0 ? TVTUtil.extention.substring(1) : name.substring(dot + 1).toLowerCase();
+	}
+
+	private static String sha256(byte[] bytes) {
+		return toHex(newDigest().digest(bytes));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,149 @@
+package com.lazerycode.selenium.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ScreenshotStoreTest {
+
+	private File directory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("screenshot-store").toFile();
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void deleteDirectory() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void identicalCapturesAreStoredOnce() throws IOException {
+		ScreenshotStore store = new ScreenshotStore(directory, false);
+		byte[] png = png(image(0xff336699));
+
+		String first = store.store(new File(directory, "first.png"), png);
+		String second = store.store(new File(directory, "second.png"), png);
+		store.store(new File(directory, "third.png"), image(0xff000000), "png");
+		store.close();
+
+		assertThat(second).isEqualTo(first);
+		assertThat(store.getCaptureCount()).isEqualTo(3);
+		assertThat(store.getUniqueCaptureCount()).isEqualTo(2);
+		assertThat(store.getBytesWritten()).isEqualTo(png.length + png(image(0xff000000)).length);
+		assertThat(manifest()).hasSize(3);
+		assertThat(manifest().get(0)).isEqualTo(first + "\t" + new File(directory, "first.png").getPath());
+		assertThat(manifest().get(1)).startsWith(first + "\t");
+	}
+
+	@Test
+	public void capturesWithTheSamePixelsShareAHashWhateverTheirEncoding() throws IOException {
+		ScreenshotStore store = new ScreenshotStore(directory, false);
+		BufferedImage image = image(0xff336699);
+
+		String encoded = store.store(new File(directory, "encoded.png"), png(image));
+		String decoded = store.store(new File(directory, "decoded.png"), image, "png");
+		store.close();
+
+		assertThat(decoded).isEqualTo(encoded);
+		assertThat(store.getUniqueCaptureCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void capturesCanBeFoundByTheirPathWithoutHardlinks() throws IOException {
+		ScreenshotStore store = new ScreenshotStore(directory, false);
+		File capture = new File(directory, "captures/home.png");
+		store.store(capture, png(image(0xff336699)));
+		store.close();
+
+		assertThat(capture).doesNotExist();
+		assertThat(ImageIO.read(store.objectFor(capture)).getRGB(0, 0)).isEqualTo(0xff336699);
+		assertThat(store.objectFor(new File(directory, "captures/other.png"))).isNull();
+	}
+
+	@Test
+	public void capturesFromAPreviousRunAreFoundThroughTheManifest() throws IOException {
+		File capture = new File(directory, "captures/home.png");
+		ScreenshotStore previousRun = new ScreenshotStore(directory, false);
+		previousRun.store(capture, png(image(0xff000000)));
+		previousRun.store(capture, png(image(0xff336699)));
+		previousRun.close();
+
+		ScreenshotStore nextRun = new ScreenshotStore(directory, false);
+
+		assertThat(ImageIO.read(nextRun.objectFor(capture)).getRGB(0, 0)).isEqualTo(0xff336699);
+	}
+
+	@Test
+	public void hardlinksPutTheCaptureAtItsPath() throws IOException {
+		ScreenshotStore store = new ScreenshotStore(directory, true);
+		File capture = new File(directory, "captures/home.png");
+		store.store(capture, png(image(0xff336699)));
+		store.close();
+
+		assertThat(capture).exists().hasBinaryContent(Files.readAllBytes(store.objectFor(capture).toPath()));
+	}
+
+	@Test
+	public void concurrentIdenticalCapturesAreCountedOnce() throws Exception {
+		ScreenshotStore store = new ScreenshotStore(directory, false);
+		byte[] png = png(image(0xff336699));
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> hashes = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				File capture = new File(directory, "capture" + i + ".png");
+				hashes.add(executor.submit((Callable<String>) () -> store.store(capture, png)));
+			}
+			for (Future<String> hash : hashes) {
+				hash.get();
+			}
+		} finally {
+			executor.shutdownNow();
+			store.close();
+		}
+
+		assertThat(store.getCaptureCount()).isEqualTo(32);
+		assertThat(store.getUniqueCaptureCount()).isEqualTo(1);
+		assertThat(store.getBytesWritten()).isEqualTo(png.length);
+	}
+
+	private List<String> manifest() throws IOException {
+		return Files.readAllLines(new File(directory, "manifest.tsv").toPath(), StandardCharsets.UTF_8);
+	}
+
+	private static BufferedImage image(int argb) {
+		BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, argb);
+			}
+		}
+		return image;
+	}
+
+	private static byte[] png(BufferedImage image) throws IOException {
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", png);
+		return png.toByteArray();
+	}
+}
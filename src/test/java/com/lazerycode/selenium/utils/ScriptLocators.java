@@ -0,0 +1,65 @@
+package com.lazerycode.selenium.utils;
+
+import org.openqa.selenium.By;
+
+/**
+ * Look elements up from inside the page, so that scripts can find elements without a findElement round trip each.
+ * <p>
+ * {@link #translate(By)} turns a standard locator into a strategy and value, and {@link #FIND_FUNCTION} declares a
+ * find(how, what) function that scripts can include to resolve them.  Like findElement it returns the first match,
+ * or null if there is none.
+ */
+public class ScriptLocators {
+
+	public static final String FIND_FUNCTION =
+			"function find(how, what) {" +
+			"  switch (how) {" +
+			"    case 'css': return document.querySelector(what);" +
+			"    case 'id': return document.getElementById(what);" +
+			"    case 'name': return document.getElementsByName(what)[0] || null;" +
+			"    case 'class': return document.getElementsByClassName(what)[0] || null;" +
+			"    case 'tag': return document.getElementsByTagName(what)[0] || null;" +
+			"    case 'xpath': return document.evaluate(what, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
+			"  }" +
+			"  var links = document.getElementsByTagName('a');" +
+			"  for (var i = 0; i < links.length; i++) {" +
+			"    var linkText = (links[i].innerText || links[i].textContent || '').trim();" +
+			"    if (how === 'link' ? linkText === what : linkText.indexOf(what) >= 0) { return links[i]; }" +
+			"  }" +
+			"  return null;" +
+			"}";
+
+	/**
+	 * Turn a standard locator into the strategy and value {@link #FIND_FUNCTION} understands, relying on the
+	 * "By.strategy: value" form of By.toString().
+	 * @return null for locators the find function does not understand
+	 */
+	public static String[] translate(By locator) {
+		String description = locator.toString();
+		int separator = description.indexOf(": ");
+		if (!description.startsWith("By.") || separator < 0) {
+			return null;
+		}
+		String value = description.substring(separator + 2);
+		switch (description.substring(3, separator)) {
+			case "cssSelector":
+				return new String[]{"css", value};
+			case "id":
+				return new String[]{"id", value};
+			case "name":
+				return new String[]{"name", value};
+			case "className":
+				return new String[]{"class", value};
+			case "tagName":
+				return new String[]{"tag", value};
+			case "xpath":
+				return new String[]{"xpath", value};
+			case "linkText":
+				return new String[]{"link", value};
+			case "partialLinkText":
+				return new String[]{"partialLink", value};
+			default:
+				return null;
+		}
+	}
+}
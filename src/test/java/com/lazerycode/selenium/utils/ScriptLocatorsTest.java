@@ -0,0 +1,50 @@
+package com.lazerycode.selenium.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ByIdOrName;
+import org.openqa.selenium.support.pagefactory.ByChained;
+import org.testng.annotations.Test;
+
+public class ScriptLocatorsTest {
+
+	@Test
+	public void everyStandardStrategyIsTranslated() {
+		assertThat(ScriptLocators.translate(By.cssSelector("form > input.search"))).containsExactly("css", "form > input.search");
+		assertThat(ScriptLocators.translate(By.id("search"))).containsExactly("id", "search");
+		assertThat(ScriptLocators.translate(By.name("q"))).containsExactly("name", "q");
+		assertThat(ScriptLocators.translate(By.className("button"))).containsExactly("class", "button");
+		assertThat(ScriptLocators.translate(By.tagName("h1"))).containsExactly("tag", "h1");
+		assertThat(ScriptLocators.translate(By.xpath("//a[@href='/']"))).containsExactly("xpath", "//a[@href='/']");
+		assertThat(ScriptLocators.translate(By.linkText("Sign in"))).containsExactly("link", "Sign in");
+		assertThat(ScriptLocators.translate(By.partialLinkText("Sign"))).containsExactly("partialLink", "Sign");
+	}
+
+	@Test
+	public void valuesContainingTheSeparatorAreKeptWhole() {
+		assertThat(ScriptLocators.translate(By.cssSelector("a[title='Note: read me']"))).containsExactly("css", "a[title='Note: read me']");
+		assertThat(ScriptLocators.translate(By.xpath("//*[text()='By.id: x']"))).containsExactly("xpath", "//*[text()='By.id: x']");
+	}
+
+	@Test
+	public void otherLocatorsAreNotTranslated() {
+		assertThat(ScriptLocators.translate(new ByChained(By.id("form"), By.name("q")))).isNull();
+		assertThat(ScriptLocators.translate(new ByIdOrName("q"))).isNull();
+		assertThat(ScriptLocators.translate(new By() {
+			@Override
+			public List<WebElement> findElements(SearchContext context) {
+				return context.findElements(By.id("q"));
+			}
+
+			@Override
+			public String toString() {
+				return "By.custom: q";
+			}
+		})).isNull();
+	}
+}
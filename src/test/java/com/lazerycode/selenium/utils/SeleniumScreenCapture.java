@@ -13,7 +13,6 @@ import java.io.IOException;
 
 import javax.imageio.ImageIO;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.JavascriptExecutor;
@@ -38,9 +37,9 @@ public class SeleniumScreenCapture {
 	 * @param imagePath the full path of the screen capture
 	 */
 	public static void captureWindow(WebDriver driver ,String imagePath) {
-		File screenFile = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
+		byte[] screenImage = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
 		try {
-			FileUtils.copyFile(screenFile, new File(imagePath));
+			ScreenshotStore.save(new File(imagePath), screenImage);
 			logger.info("Captured " + imagePath);
 		} catch (IOException ex) {
 			logger.warn(ex);
@@ -78,7 +77,7 @@ public class SeleniumScreenCapture {
 			mergedCanvas.drawImage(pageTitleImg, (screenImg.getWidth()-pageTitleImg.getWidth())/2, (screenImg.getHeight()-pageTitleImg.getHeight())/2, null);
 			mergedCanvas.dispose();
 			
-			ImageIO.write(screenImg, "png", new File(imagePath));
+			ScreenshotStore.save(new File(imagePath), screenImg, "png");
 			logger.info("Captured " + imagePath);
 		} catch (IOException ex) {
 			logger.warn(ex);
@@ -93,7 +92,7 @@ public class SeleniumScreenCapture {
 		try {
 			screenImg = ImageIO.read(screenFile);
 			mergedImg = mergeTitle2Img(elementWithTitle, screenImg);
-			ImageIO.write(mergedImg, "png", new File(imagePath));
+			ScreenshotStore.save(new File(imagePath), mergedImg, "png");
 			logger.info("Captured " + imagePath);
 		} catch (IOException ex) {
 			logger.warn(ex);
@@ -111,8 +110,7 @@ public class SeleniumScreenCapture {
 	public static void captureElement(WebDriver driver, File imageFile, WebElement element) {
 		RenderedImage elementImage = captureElement(driver, element);
 		try {
-			imageFile.createNewFile();
-			ImageIO.write(elementImage, TVTUtil.extention.substring(1), imageFile);
+			ScreenshotStore.save(imageFile, elementImage, TVTUtil.extention.substring(1));
 			logger.info("Captured " + imageFile.getPath());
 		} catch (IOException ex) {
 			logger.warn(ex);
@@ -4,8 +4,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 public class TVTUtil {
 
@@ -18,6 +16,7 @@ public class TVTUtil {
 	public final static int NAVIGATE_FOWARD = 1;
 	public final static int NAVIGATE_BACK = 2;
 
+	public final static String LOCALE_ENGLISH = "en";
 	public final static String LOCALE_ARABIC = "ar";
 	public final static String LOCALE_CHINESE = "zh-cn";
 	public final static String LOCALE_TAIWAN = "zh-tw";
@@ -30,6 +29,10 @@ public class TVTUtil {
 	public final static String LOCALE_JAPANESE = "ja";
 	public final static String LOCALE_FRENCH = "fr";
 
+	public final static String[] LOCALES = {LOCALE_ENGLISH, LOCALE_ARABIC, LOCALE_CHINESE, LOCALE_TAIWAN,
+			LOCALE_GERMAN, LOCALE_TURKISH, LOCALE_RUSSIAN, LOCALE_DUTCH, LOCALE_KOREAN, LOCALE_ITALIAN,
+			LOCALE_JAPANESE, LOCALE_FRENCH};
+
 	public final static int LOCATERTYPE_ID = 0;
 	public final static int LOCATERTYPE_CLASSNAME = 1;
 	public final static int LOCATERTYPE_TAGNAME = 2;
@@ -71,8 +74,14 @@ public class TVTUtil {
 		waitUntilPresence(driver, cssSelector, 100);
 	}
 
+	/**
+	 * Wait for an element to be present, see {@link DomWait} for how the page reports it without being polled.
+	 */
 	public static void waitUntilPresence(WebDriver driver, By cssSelector, long seconds) {
-		(new WebDriverWait(driver, seconds))
-				.until(ExpectedConditions.presenceOfElementLocated(cssSelector));
+		DomWait.untilPresent(driver, cssSelector, seconds);
+	}
+
+	public static void waitUntilVisible(WebDriver driver, By cssSelector, long seconds) {
+		DomWait.untilVisible(driver, cssSelector, seconds);
 	}
 }
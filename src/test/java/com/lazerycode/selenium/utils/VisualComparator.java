@@ -0,0 +1,366 @@
+package com.lazerycode.selenium.utils;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.lazerycode.selenium.config.PerfCounters;
+
+/**
+ * Compare a new capture against a baseline image.
+ * <p>
+ * Both images are split into square tiles which are compared in parallel.  A tile stops being scanned as soon as one
+ * pixel is found to differ, and {@link #isDifferent(BufferedImage, BufferedImage)} stops every tile as soon as any
+ * difference is found.  Pixels are compared with the same per channel tolerance rules as
+ * {@link AdvScreenCapture#setTolerance(int, int, int, int)}, but the tolerance belongs to the comparator so different
+ * comparisons can run side by side.
+ * <p>
+ * {@link #compare(BufferedImage, BufferedImage)} reports the changed regions (neighbouring changed tiles merged into
+ * one rectangle) and a diff image cropped to the area that changed, changed pixels are red on a faded copy of the
+ * baseline.
+ */
+public class VisualComparator {
+
+	protected final static Logger logger = LogManager.getLogger(VisualComparator.class);
+
+	private static final int DIFF_COLOUR = 0xffff0000;
+	private static final ForkJoinPool comparisonPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private int tileSize = 64;
+	private int toleranceAlpha = 0;
+	private int toleranceRed = 0;
+	private int toleranceGreen = 0;
+	private int toleranceBlue = 0;
+
+	public VisualComparator tileSize(int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("Tile size must be at least 1 pixel");
+		}
+		this.tileSize = tileSize;
+		return this;
+	}
+
+	public VisualComparator tolerance(int alpha, int red, int green, int blue) {
+		this.toleranceAlpha = alpha;
+		this.toleranceRed = red;
+		this.toleranceGreen = green;
+		this.toleranceBlue = blue;
+		return this;
+	}
+
+	/**
+	 * @return true as soon as any tile is found to be different.
+	 */
+	public boolean isDifferent(BufferedImage baseline, BufferedImage capture) {
+		if (baseline.getWidth() != capture.getWidth() || baseline.getHeight() != capture.getHeight()) {
+			return true;
+		}
+		TileGrid grid = new TileGrid(baseline.getWidth(), baseline.getHeight());
+		AtomicBoolean different = new AtomicBoolean(false);
+		inParallel(grid.count(), tile -> {
+			if (!different.get() && tileIsDifferent(baseline, capture, grid.bounds(tile), different)) {
+				different.set(true);
+			}
+		});
+		return different.get();
+	}
+
+	/**
+	 * Compare two saved images, either of which may have been saved through the {@link ScreenshotStore}.
+	 */
+	public Result compare(File baseline, File capture) throws IOException {
+		BufferedImage baselineImage = ImageIO.read(ScreenshotStore.locate(baseline));
+		BufferedImage captureImage = ImageIO.read(ScreenshotStore.locate(capture));
+		if (baselineImage == null || captureImage == null) {
+			throw new IOException("Unable to read " + (baselineImage == null ? baseline : capture));
+		}
+		return compare(baselineImage, captureImage);
+	}
+
+	public Result compare(BufferedImage baseline, BufferedImage capture) {
+		int width = Math.min(baseline.getWidth(), capture.getWidth());
+		int height = Math.min(baseline.getHeight(), capture.getHeight());
+		TileGrid grid = new TileGrid(width, height);
+		boolean[] changedTiles = new boolean[grid.count()];
+		inParallel(grid.count(), tile -> changedTiles[tile] = tileIsDifferent(baseline, capture, grid.bounds(tile), null));
+
+		List<Rectangle> regions = grid.mergeChangedTiles(changedTiles);
+		int fullWidth = Math.max(baseline.getWidth(), capture.getWidth());
+		int fullHeight = Math.max(baseline.getHeight(), capture.getHeight());
+		if (width < fullWidth) {
+			regions.add(new Rectangle(width, 0, fullWidth - width, fullHeight));
+		}
+		if (height < fullHeight) {
+			regions.add(new Rectangle(0, height, width, fullHeight - height));
+		}
+
+		int changedTileCount = 0;
+		for (boolean changed : changedTiles) {
+			if (changed) {
+				changedTileCount++;
+			}
+		}
+		if (regions.isEmpty()) {
+			return new Result(regions, changedTileCount, null, null);
+		}
+
+		Rectangle changedArea = new Rectangle(regions.get(0));
+		for (Rectangle region : regions) {
+			changedArea = changedArea.union(region);
+		}
+		BufferedImage diffImage = createDiffImage(baseline, capture, changedArea, width, height, grid, changedTiles);
+		return new Result(regions, changedTileCount, diffImage, changedArea.getLocation());
+	}
+
+	/**
+	 * Compare every image in the baseline directory with the image of the same name in the capture directory,
+	 * writing a diff image for every capture that changed.
+	 * @return the comparison result for each image, keyed by file name.  Images missing from the capture directory are
+	 * not included.
+	 */
+	public Map<String, Result> compareDirectories(File baselineDirectory, File captureDirectory, File diffDirectory) throws IOException {
+		Map<String, Result> results = new LinkedHashMap<>();
+		File[] baselines = baselineDirectory.listFiles((directory, name) -> name.toLowerCase().endsWith(TVTUtil.extention));
+		if (baselines == null) {
+			return results;
+		}
+		diffDirectory.mkdirs();
+		for (File baseline : baselines) {
+			File capture = new File(captureDirectory, baseline.getName());
+			if (!capture.exists()) {
+				logger.warn("No capture for baseline " + baseline.getPath());
+				continue;
+			}
+			Result result = compare(baseline, capture);
+			if (result.isDifferent()) {
+				result.writeDiffImage(new File(diffDirectory, baseline.getName()));
+				logger.info(baseline.getName() + " changed in " + result.getChangedRegions());
+			}
+			results.put(baseline.getName(), result);
+		}
+		return results;
+	}
+
+	private boolean tileIsDifferent(BufferedImage baseline, BufferedImage capture, Rectangle tile, AtomicBoolean stop) {
+		int[] baselineRow = new int[tile.width];
+		int[] captureRow = new int[tile.width];
+		for (int y = tile.y; y < tile.y + tile.height; y++) {
+			if (stop != null && stop.get()) {
+				return false;
+			}
+			readRow(baseline, tile.x, y, tile.width, baselineRow);
+			readRow(capture, tile.x, y, tile.width, captureRow);
+			for (int x = 0; x < tile.width; x++) {
+				if (baselineRow[x] != captureRow[x]
+						&& AdvScreenCapture.isDifferent(baselineRow[x], captureRow[x], toleranceAlpha, toleranceRed, toleranceGreen, toleranceBlue)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private BufferedImage createDiffImage(BufferedImage baseline, BufferedImage capture, Rectangle area, int comparedWidth, int comparedHeight, TileGrid grid, boolean[] changedTiles) {
+		BufferedImage diffImage = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+		int[] baselineRow = new int[area.width];
+		int[] captureRow = new int[area.width];
+		int[] diffRow = new int[area.width];
+		for (int y = area.y; y < area.y + area.height; y++) {
+			int baselineWidth = Math.max(0, Math.min(area.width, baseline.getWidth() - area.x));
+			boolean baselineRowExists = y < baseline.getHeight() && baselineWidth > 0;
+			if (baselineRowExists) {
+				readRow(baseline, area.x, y, baselineWidth, baselineRow);
+			}
+			int captureWidth = Math.max(0, Math.min(area.width, comparedWidth - area.x));
+			boolean inComparedArea = y < comparedHeight;
+			if (inComparedArea && captureWidth > 0) {
+				readRow(capture, area.x, y, captureWidth, captureRow);
+			}
+			for (int x = 0; x < area.width; x++) {
+				int imageX = area.x + x;
+				if (!inComparedArea || imageX >= comparedWidth) {
+					diffRow[x] = DIFF_COLOUR;
+				} else if (changedTiles[grid.tileAt(imageX, y)]
+						&& AdvScreenCapture.isDifferent(baselineRow[x], captureRow[x], toleranceAlpha, toleranceRed, toleranceGreen, toleranceBlue)) {
+					diffRow[x] = DIFF_COLOUR;
+				} else {
+					diffRow[x] = baselineRowExists && x < baselineWidth ? fade(baselineRow[x]) : 0;
+				}
+			}
+			diffImage.getRaster().setDataElements(0, y - area.y, area.width, 1, diffRow);
+		}
+		return diffImage;
+	}
+
+	/**
+	 * Read part of a row as ARGB pixels.  Int packed images are copied straight out of the raster, which is several
+	 * times faster than going through the colour model.
+	 */
+	private static void readRow(BufferedImage image, int x, int y, int width, int[] row) {
+		int type = image.getType();
+		if (type == BufferedImage.TYPE_INT_ARGB) {
+			image.getRaster().getDataElements(x, y, width, 1, row);
+		} else if (type == BufferedImage.TYPE_INT_RGB) {
+			image.getRaster().getDataElements(x, y, width, 1, row);
+			for (int i = 0; i < width; i++) {
+				row[i] |= 0xff000000;
+			}
+		} else {
+			image.getRGB(x, y, width, 1, row, 0, width);
+		}
+	}
+
+	private static int fade(int pixel) {
+		int red = 0xff - (0xff - ((pixel >> 16) & 0xff)) / 4;
+		int green = 0xff - (0xff - ((pixel >> 8) & 0xff)) / 4;
+		int blue = 0xff - (0xff - (pixel & 0xff)) / 4;
+		return 0xff000000 | red << 16 | green << 8 | blue;
+	}
+
+	private interface TileTask {
+		void compare(int tile);
+	}
+
+	private static void inParallel(int tiles, TileTask task) {
+		try {
+			comparisonPool.submit(() -> IntStream.range(0, tiles).parallel().forEach(task::compare)).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private class TileGrid {
+		private final int width, height, columns, rows;
+
+		private TileGrid(int width, int height) {
+			this.width = width;
+			this.height = height;
+			this.columns = (width + tileSize - 1) / tileSize;
+			this.rows = (height + tileSize - 1) / tileSize;
+		}
+
+		private int count() {
+			return columns * rows;
+		}
+
+		private int tileAt(int x, int y) {
+			return (y / tileSize) * columns + x / tileSize;
+		}
+
+		private Rectangle bounds(int tile) {
+			int x = (tile % columns) * tileSize;
+			int y = (tile / columns) * tileSize;
+			return new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+		}
+
+		/**
+		 * Flood fill the grid so that touching changed tiles are reported as one region.
+		 */
+		private List<Rectangle> mergeChangedTiles(boolean[] changedTiles) {
+			List<Rectangle> regions = new ArrayList<>();
+			boolean[] visited = new boolean[changedTiles.length];
+			Deque<Integer> queue = new ArrayDeque<>();
+			for (int start = 0; start < changedTiles.length; start++) {
+				if (!changedTiles[start] || visited[start]) {
+					continue;
+				}
+				Rectangle region = null;
+				visited[start] = true;
+				queue.add(start);
+				while (!queue.isEmpty()) {
+					int tile = queue.poll();
+					region = region == null ? bounds(tile) : region.union(bounds(tile));
+					int column = tile % columns;
+					int row = tile / columns;
+					visit(changedTiles, visited, queue, column > 0 ? tile - 1 : -1);
+					visit(changedTiles, visited, queue, column < columns - 1 ? tile + 1 : -1);
+					visit(changedTiles, visited, queue, row > 0 ? tile - columns : -1);
+					visit(changedTiles, visited, queue, row < rows - 1 ? tile + columns : -1);
+				}
+				regions.add(region);
+			}
+			return regions;
+		}
+
+		private void visit(boolean[] changedTiles, boolean[] visited, Deque<Integer> queue, int tile) {
+			if (tile >= 0 && changedTiles[tile] && !visited[tile]) {
+				visited[tile] = true;
+				queue.add(tile);
+			}
+		}
+	}
+
+	/**
+	 * The outcome of comparing a capture with its baseline.
+	 */
+	public static class Result {
+		private final List<Rectangle> changedRegions;
+		private final int changedTileCount;
+		private final BufferedImage diffImage;
+		private final Point diffOrigin;
+
+		private Result(List<Rectangle> changedRegions, int changedTileCount, BufferedImage diffImage, Point diffOrigin) {
+			this.changedRegions = Collections.unmodifiableList(changedRegions);
+			this.changedTileCount = changedTileCount;
+			this.diffImage = diffImage;
+			this.diffOrigin = diffOrigin;
+		}
+
+		public boolean isDifferent() {
+			return !changedRegions.isEmpty();
+		}
+
+		/**
+		 * @return the changed areas, in baseline image coordinates
+		 */
+		public List<Rectangle> getChangedRegions() {
+			return changedRegions;
+		}
+
+		public int getChangedTileCount() {
+			return changedTileCount;
+		}
+
+		/**
+		 * @return the diff image cropped to the changed area, or null when nothing changed
+		 */
+		public BufferedImage getDiffImage() {
+			return diffImage;
+		}
+
+		/**
+		 * @return where the top left corner of the diff image sits in the baseline image, or null when nothing changed
+		 */
+		public Point getDiffOrigin() {
+			return diffOrigin;
+		}
+
+		public void writeDiffImage(File imageFile) throws IOException {
+			if (diffImage != null) {
+				ImageIO.write(diffImage, "png", imageFile);
+				PerfCounters.fileWritten(imageFile);
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.lazerycode.selenium.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class VisualComparatorTest {
+
+	private static final int BLACK = 0xff000000;
+	private static final int FADED_BLACK = 0xffc0c0c0;
+	private static final int DIFF_RED = 0xffff0000;
+
+	@Test
+	public void identicalImagesAreNotDifferent() {
+		VisualComparator.Result result = new VisualComparator().tileSize(2).compare(image(8, 8, BLACK), image(8, 8, BLACK));
+
+		assertThat(new VisualComparator().isDifferent(image(8, 8, BLACK), image(8, 8, BLACK))).isFalse();
+		assertThat(result.isDifferent()).isFalse();
+		assertThat(result.getChangedTileCount()).isZero();
+		assertThat(result.getDiffImage()).isNull();
+		assertThat(result.getDiffOrigin()).isNull();
+	}
+
+	@Test
+	public void partialTilesAtTheEdgesAreCompared() {
+		BufferedImage capture = image(5, 3, BLACK);
+		capture.setRGB(4, 2, 0xffffffff);
+
+		VisualComparator.Result result = new VisualComparator().tileSize(2).compare(image(5, 3, BLACK), capture);
+
+		assertThat(new VisualComparator().tileSize(2).isDifferent(image(5, 3, BLACK), capture)).isTrue();
+		assertThat(result.getChangedRegions()).containsExactly(new Rectangle(4, 2, 1, 1));
+		assertThat(result.getChangedTileCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void touchingChangedTilesAreMergedIntoOneRegion() {
+		BufferedImage capture = image(8, 8, BLACK);
+		capture.setRGB(1, 1, 0xffffffff);
+		capture.setRGB(2, 0, 0xffffffff);
+		capture.setRGB(7, 7, 0xffffffff);
+
+		VisualComparator.Result result = new VisualComparator().tileSize(2).compare(image(8, 8, BLACK), capture);
+
+		assertThat(result.getChangedRegions()).containsExactlyInAnyOrder(new Rectangle(0, 0, 4, 2), new Rectangle(6, 6, 2, 2));
+		assertThat(result.getChangedTileCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void tilesThatOnlyTouchAtACornerAreSeparateRegions() {
+		BufferedImage capture = image(4, 4, BLACK);
+		capture.setRGB(0, 0, 0xffffffff);
+		capture.setRGB(2, 2, 0xffffffff);
+
+		VisualComparator.Result result = new VisualComparator().tileSize(2).compare(image(4, 4, BLACK), capture);
+
+		assertThat(result.getChangedRegions()).containsExactlyInAnyOrder(new Rectangle(0, 0, 2, 2), new Rectangle(2, 2, 2, 2));
+	}
+
+	@Test
+	public void theDiffImageIsCroppedToTheChangedAreaWithChangedPixelsInRed() {
+		BufferedImage capture = image(8, 8, BLACK);
+		capture.setRGB(5, 5, 0xffffffff);
+
+		VisualComparator.Result result = new VisualComparator().tileSize(2).compare(image(8, 8, BLACK), capture);
+		BufferedImage diff = result.getDiffImage();
+
+		assertThat(result.getDiffOrigin()).isEqualTo(new Point(4, 4));
+		assertThat(diff.getWidth()).isEqualTo(2);
+		assertThat(diff.getHeight()).isEqualTo(2);
+		assertThat(diff.getRGB(1, 1)).isEqualTo(DIFF_RED);
+		assertThat(diff.getRGB(0, 0)).isEqualTo(FADED_BLACK);
+		assertThat(diff.getRGB(1, 0)).isEqualTo(FADED_BLACK);
+	}
+
+	@Test
+	public void imagesOfDifferentSizesDifferWhereOnlyOneOfThemHasPixels() {
+		VisualComparator comparator = new VisualComparator().tileSize(4);
+
+		VisualComparator.Result wider = comparator.compare(image(8, 8, BLACK), image(10, 8, BLACK));
+		VisualComparator.Result taller = comparator.compare(image(8, 8, BLACK), image(8, 10, BLACK));
+
+		assertThat(comparator.isDifferent(image(8, 8, BLACK), image(10, 8, BLACK))).isTrue();
+		assertThat(wider.getChangedRegions()).containsExactly(new Rectangle(8, 0, 2, 8));
+		assertThat(wider.getDiffOrigin()).isEqualTo(new Point(8, 0));
+		assertThat(wider.getDiffImage().getRGB(1, 7)).isEqualTo(DIFF_RED);
+		assertThat(taller.getChangedRegions()).containsExactly(new Rectangle(0, 8, 8, 2));
+		assertThat(taller.getChangedTileCount()).isZero();
+	}
+
+	@Test
+	public void toleranceMatchesAdvScreenCapture() {
+		int[] pixels = {0xff808080, 0xff838080, 0xff808580, 0xff808086, 0xf0808080, 0xfa7d7b7a, 0x00000000, 0xffffffff};
+		int[][] tolerances = {{0, 0, 0, 0}, {3, 3, 3, 3}, {5, 5, 5, 5}, {0, 10, 0, 0}, {15, 0, 5, 6}};
+		for (int[] tolerance : tolerances) {
+			VisualComparator comparator = new VisualComparator().tolerance(tolerance[0], tolerance[1], tolerance[2], tolerance[3]);
+			for (int baseline : pixels) {
+				for (int capture : pixels) {
+					boolean expected = AdvScreenCapture.isDifferent(baseline, capture, tolerance[0], tolerance[1], tolerance[2], tolerance[3]);
+
+					assertThat(comparator.isDifferent(image(1, 1, baseline), image(1, 1, capture)))
+							.as("%08x against %08x with tolerance %d/%d/%d/%d", baseline, capture, tolerance[0], tolerance[1], tolerance[2], tolerance[3])
+							.isEqualTo(expected);
+					assertThat(comparator.compare(image(1, 1, baseline), image(1, 1, capture)).isDifferent()).isEqualTo(expected);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void aDifferenceInTheFirstRowStopsTheScan() {
+		AtomicInteger rowsRead = new AtomicInteger();
+		BufferedImage baseline = countingImage(64, 64, rowsRead);
+		BufferedImage capture = countingImage(64, 64, rowsRead);
+		capture.setRGB(0, 0, 0xffffffff);
+
+		assertThat(new VisualComparator().tileSize(64).isDifferent(baseline, capture)).isTrue();
+		assertThat(rowsRead.get()).isEqualTo(2);
+	}
+
+	private static BufferedImage image(int width, int height, int argb) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		fill(image, argb);
+		return image;
+	}
+
+	/**
+	 * An image that is not int packed, so every row the comparator reads goes through getRGB and is counted.
+	 */
+	private static BufferedImage countingImage(int width, int height, AtomicInteger rowsRead) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR) {
+			@Override
+			public int[] getRGB(int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+				rowsRead.addAndGet(h);
+				return super.getRGB(startX, startY, w, h, rgbArray, offset, scansize);
+			}
+		};
+		fill(image, BLACK);
+		return image;
+	}
+
+	private static void fill(BufferedImage image, int argb) {
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, argb);
+			}
+		}
+	}
+}